@@ -0,0 +1,268 @@
+package net.smackem.nutfx.core;
+
+/**
+ * A controller with many procs, like the controller of a larger application.
+ */
+class LargeController {
+    int count;
+
+    @NutMethod("add-robot")
+    void addRobot() {
+        this.count++;
+    }
+
+    @NutMethod("add-line")
+    void addLine(@NutParam("x") int x,
+                 @NutParam("y") int y) {
+        this.count++;
+    }
+
+    @NutMethod("add-circle")
+    void addCircle(@NutParam("name") String name,
+                   @NutParam("force") boolean force) {
+        this.count++;
+    }
+
+    @NutMethod("add-layer")
+    void addLayer(@NutParam("angle") double angle) {
+        this.count++;
+    }
+
+    @NutMethod("add-point")
+    void addPoint(@NutParam("point") SmallController.Point point) {
+        this.count++;
+    }
+
+    @NutMethod("add-group")
+    void addGroup() {
+        this.count++;
+    }
+
+    @NutMethod("remove-robot")
+    void removeRobot(@NutParam("x") int x,
+                     @NutParam("y") int y) {
+        this.count++;
+    }
+
+    @NutMethod("remove-line")
+    void removeLine(@NutParam("name") String name,
+                    @NutParam("force") boolean force) {
+        this.count++;
+    }
+
+    @NutMethod("remove-circle")
+    void removeCircle(@NutParam("angle") double angle) {
+        this.count++;
+    }
+
+    @NutMethod("remove-layer")
+    void removeLayer(@NutParam("point") SmallController.Point point) {
+        this.count++;
+    }
+
+    @NutMethod("remove-point")
+    void removePoint() {
+        this.count++;
+    }
+
+    @NutMethod("remove-group")
+    void removeGroup(@NutParam("x") int x,
+                     @NutParam("y") int y) {
+        this.count++;
+    }
+
+    @NutMethod("move-robot")
+    void moveRobot(@NutParam("name") String name,
+                   @NutParam("force") boolean force) {
+        this.count++;
+    }
+
+    @NutMethod("move-line")
+    void moveLine(@NutParam("angle") double angle) {
+        this.count++;
+    }
+
+    @NutMethod("move-circle")
+    void moveCircle(@NutParam("point") SmallController.Point point) {
+        this.count++;
+    }
+
+    @NutMethod("move-layer")
+    void moveLayer() {
+        this.count++;
+    }
+
+    @NutMethod("move-point")
+    void movePoint(@NutParam("x") int x,
+                   @NutParam("y") int y) {
+        this.count++;
+    }
+
+    @NutMethod("move-group")
+    void moveGroup(@NutParam("name") String name,
+                   @NutParam("force") boolean force) {
+        this.count++;
+    }
+
+    @NutMethod("rotate-robot")
+    void rotateRobot(@NutParam("angle") double angle) {
+        this.count++;
+    }
+
+    @NutMethod("rotate-line")
+    void rotateLine(@NutParam("point") SmallController.Point point) {
+        this.count++;
+    }
+
+    @NutMethod("rotate-circle")
+    void rotateCircle() {
+        this.count++;
+    }
+
+    @NutMethod("rotate-layer")
+    void rotateLayer(@NutParam("x") int x,
+                     @NutParam("y") int y) {
+        this.count++;
+    }
+
+    @NutMethod("rotate-point")
+    void rotatePoint(@NutParam("name") String name,
+                     @NutParam("force") boolean force) {
+        this.count++;
+    }
+
+    @NutMethod("rotate-group")
+    void rotateGroup(@NutParam("angle") double angle) {
+        this.count++;
+    }
+
+    @NutMethod("scale-robot")
+    void scaleRobot(@NutParam("point") SmallController.Point point) {
+        this.count++;
+    }
+
+    @NutMethod("scale-line")
+    void scaleLine() {
+        this.count++;
+    }
+
+    @NutMethod("scale-circle")
+    void scaleCircle(@NutParam("x") int x,
+                     @NutParam("y") int y) {
+        this.count++;
+    }
+
+    @NutMethod("scale-layer")
+    void scaleLayer(@NutParam("name") String name,
+                    @NutParam("force") boolean force) {
+        this.count++;
+    }
+
+    @NutMethod("scale-point")
+    void scalePoint(@NutParam("angle") double angle) {
+        this.count++;
+    }
+
+    @NutMethod("scale-group")
+    void scaleGroup(@NutParam("point") SmallController.Point point) {
+        this.count++;
+    }
+
+    @NutMethod("select-robot")
+    void selectRobot() {
+        this.count++;
+    }
+
+    @NutMethod("select-line")
+    void selectLine(@NutParam("x") int x,
+                    @NutParam("y") int y) {
+        this.count++;
+    }
+
+    @NutMethod("select-circle")
+    void selectCircle(@NutParam("name") String name,
+                      @NutParam("force") boolean force) {
+        this.count++;
+    }
+
+    @NutMethod("select-layer")
+    void selectLayer(@NutParam("angle") double angle) {
+        this.count++;
+    }
+
+    @NutMethod("select-point")
+    void selectPoint(@NutParam("point") SmallController.Point point) {
+        this.count++;
+    }
+
+    @NutMethod("select-group")
+    void selectGroup() {
+        this.count++;
+    }
+
+    @NutMethod("show-robot")
+    void showRobot(@NutParam("x") int x,
+                   @NutParam("y") int y) {
+        this.count++;
+    }
+
+    @NutMethod("show-line")
+    void showLine(@NutParam("name") String name,
+                  @NutParam("force") boolean force) {
+        this.count++;
+    }
+
+    @NutMethod("show-circle")
+    void showCircle(@NutParam("angle") double angle) {
+        this.count++;
+    }
+
+    @NutMethod("show-layer")
+    void showLayer(@NutParam("point") SmallController.Point point) {
+        this.count++;
+    }
+
+    @NutMethod("show-point")
+    void showPoint() {
+        this.count++;
+    }
+
+    @NutMethod("show-group")
+    void showGroup(@NutParam("x") int x,
+                   @NutParam("y") int y) {
+        this.count++;
+    }
+
+    @NutMethod("hide-robot")
+    void hideRobot(@NutParam("name") String name,
+                   @NutParam("force") boolean force) {
+        this.count++;
+    }
+
+    @NutMethod("hide-line")
+    void hideLine(@NutParam("angle") double angle) {
+        this.count++;
+    }
+
+    @NutMethod("hide-circle")
+    void hideCircle(@NutParam("point") SmallController.Point point) {
+        this.count++;
+    }
+
+    @NutMethod("hide-layer")
+    void hideLayer() {
+        this.count++;
+    }
+
+    @NutMethod("hide-point")
+    void hidePoint(@NutParam("x") int x,
+                   @NutParam("y") int y) {
+        this.count++;
+    }
+
+    @NutMethod("hide-group")
+    void hideGroup(@NutParam("name") String name,
+                   @NutParam("force") boolean force) {
+        this.count++;
+    }
+}
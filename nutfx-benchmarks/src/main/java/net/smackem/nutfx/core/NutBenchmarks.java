@@ -0,0 +1,30 @@
+package net.smackem.nutfx.core;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the {@link GCProfiler}, so that each benchmark reports its throughput and
+ * allocation rate ({@code gc.alloc.rate.norm} is the number of bytes allocated per operation).
+ * Accepts the usual JMH command line options, e.g. a regex selecting the benchmarks to run:
+ * <pre>
+ * java -jar nutfx-benchmarks/target/benchmarks.jar NutProcIndexBenchmark -rf json
+ * </pre>
+ */
+public final class NutBenchmarks {
+    private NutBenchmarks() {
+        throw new IllegalAccessError();
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        final var options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
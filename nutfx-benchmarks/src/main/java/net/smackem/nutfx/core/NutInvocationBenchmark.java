@@ -0,0 +1,55 @@
+package net.smackem.nutfx.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link NutInvocation#invoke(Object)} of parsed commands, without parsing,
+ * with and without a registered {@link NutMetricsRecorder}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class NutInvocationBenchmark {
+    @Param({"short", "positional", "converter", "long", "pipeline"})
+    public String command;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private SmallController controller;
+    private NutInvocation invocation;
+
+    @Setup
+    public void setup() {
+        this.controller = new SmallController();
+        this.invocation = new NutProcParser(this.controller).parse(NutProcParserBenchmark.source(this.command));
+        NutMetrics.register(this.metrics ? new NutMetricsRecorder() : null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        NutMetrics.register(null);
+    }
+
+    @Benchmark
+    public Object invoke() throws InvocationTargetException {
+        return this.invocation.invoke(this.controller);
+    }
+}
@@ -0,0 +1,66 @@
+package net.smackem.nutfx.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares replaying a macro of 10,000 commands with parsing and invoking the same commands.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class NutMacroBenchmark {
+    private static final int STEPS = 10_000;
+
+    private SmallController controller;
+    private NutProcParser parser;
+    private List<String> sources;
+    private NutMacro macro;
+
+    @Setup
+    public void setup() {
+        this.controller = new SmallController();
+        this.parser = new NutProcParser(this.controller);
+        this.sources = new ArrayList<>(STEPS);
+        final var recorder = new NutMacroRecorder();
+        recorder.start();
+        for (int i = 0; i < STEPS; i++) {
+            final String source = i % 2 == 0
+                    ? "test-params %d 'step %d' true".formatted(i, i)
+                    : "draw %d 20 110 220 'label %d' -color='dark red' -width=2.5 -dashed".formatted(i, i);
+            this.sources.add(source);
+            recorder.record(this.parser.parse(source));
+        }
+        this.macro = recorder.stop("setup");
+    }
+
+    @Benchmark
+    public Object replay() throws InvocationTargetException {
+        return this.macro.replay(this.controller);
+    }
+
+    @Benchmark
+    public Object parseAndInvoke() throws InvocationTargetException {
+        Object value = null;
+        for (final String source : this.sources) {
+            value = this.parser.parse(source).invoke(this.controller);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,52 @@
+package net.smackem.nutfx.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the construction of {@link NutProcParser}s: {@link #construct()} for a class whose catalog is
+ * already cached (the common case), {@link #collectProcs()} for the first parser of a class.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class NutProcCatalogBenchmark {
+    @Param({"small", "large"})
+    public String controller;
+
+    private Object controllerInstance;
+
+    @Setup
+    public void setup() {
+        this.controllerInstance = switch (this.controller) {
+            case "small" -> new SmallController();
+            case "large" -> new LargeController();
+            default -> throw new IllegalArgumentException("unknown controller: " + this.controller);
+        };
+    }
+
+    @Benchmark
+    public NutProcParser construct() {
+        return new NutProcParser(this.controllerInstance);
+    }
+
+    @Benchmark
+    public List<NutProc> collectProcs() {
+        return NutProcCatalog.collectProcs(this.controllerInstance.getClass());
+    }
+}
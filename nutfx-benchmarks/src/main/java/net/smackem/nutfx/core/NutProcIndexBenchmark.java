@@ -0,0 +1,74 @@
+package net.smackem.nutfx.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures autocomplete matching in large catalogs of procs named like {@code moveRobotLayer}.
+ * Each operation is one keystroke in a field showing up to ten entries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class NutProcIndexBenchmark {
+    private static final String[] WORDS = {
+            "add", "remove", "move", "rotate", "scale", "select", "show", "hide", "draw", "fill",
+            "robot", "line", "circle", "layer", "point", "group", "text", "image", "path", "shape",
+    };
+    private static final int LIMIT = 10;
+
+    @Param({"1000", "100000"})
+    public int catalogSize;
+
+    @Param({"mo", "moveRo", "mrl"})
+    public String query;
+
+    private NutProcIndex index;
+
+    @Setup
+    public void setup() {
+        final NutProc baseProc = new NutProcParser(new SmallController()).nutProcs().get("test");
+        final var random = new Random(4711);
+        this.index = new NutProcIndex();
+        for (int i = 0; this.index.size() < this.catalogSize; i++) {
+            final var name = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+            final int wordCount = 1 + random.nextInt(3);
+            for (int j = 0; j < wordCount; j++) {
+                final String word = WORDS[random.nextInt(WORDS.length)];
+                name.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            }
+            this.index.add(baseProc.alias(name.append(i).toString()));
+        }
+    }
+
+    @Benchmark
+    public List<NutProc> searchPrefix() {
+        return this.index.searchPrefix(this.query, false, LIMIT);
+    }
+
+    @Benchmark
+    public List<NutProc> search() {
+        return this.index.search(this.query, false, LIMIT);
+    }
+
+    @Benchmark
+    public List<NutProc> searchFuzzy() {
+        return this.index.searchFuzzy(this.query, LIMIT);
+    }
+}
@@ -0,0 +1,69 @@
+package net.smackem.nutfx.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link NutProcParser#parse(String)}, including the conversion of the arguments,
+ * and the ANTLR-based reference parser for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class NutProcParserBenchmark {
+    @Param({"short", "positional", "named", "converter", "long", "pipeline"})
+    public String command;
+
+    private NutProcParser parser;
+    private NutProcParser cachingParser;
+    private String source;
+
+    @Setup
+    public void setup() {
+        this.parser = new NutProcParser(new SmallController());
+        this.cachingParser = new NutProcParser(new SmallController());
+        this.cachingParser.setParseCacheSize(16);
+        this.source = source(this.command);
+    }
+
+    static String source(String command) {
+        return switch (command) {
+            case "short" -> "test";
+            case "positional" -> "test-params 123 'hello' -b";
+            case "named" -> "test-params -s='hello' -n=123 -b=true";
+            case "converter" -> "get-pointmag -point='100;150'";
+            case "long" -> "draw 10 20 110 220 'a long label for a line' -color='dark red' -width=2.5 -dashed";
+            case "pipeline" -> "range 100 | square | sum";
+            default -> throw new IllegalArgumentException("unknown command: " + command);
+        };
+    }
+
+    @Benchmark
+    public NutInvocation parse() {
+        return this.parser.parse(this.source);
+    }
+
+    @Benchmark
+    public NutInvocation parseCached() {
+        return this.cachingParser.parse(this.source);
+    }
+
+    @Benchmark
+    public NutInvocation parseWithAntlr() {
+        return this.parser.parseWithAntlr(this.source);
+    }
+}
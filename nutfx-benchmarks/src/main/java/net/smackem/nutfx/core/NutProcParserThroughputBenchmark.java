@@ -0,0 +1,65 @@
+package net.smackem.nutfx.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of one {@link NutProcParser} shared by one thread and by as many threads as there
+ * are cores. With per-thread parsing state, the throughput of all threads together should grow about
+ * linearly with the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class NutProcParserThroughputBenchmark {
+    @Param({"positional", "long", "pipeline"})
+    public String command;
+
+    private NutProcParser parser;
+    private String source;
+
+    @Setup
+    public void setup() {
+        this.parser = new NutProcParser(new SmallController());
+        this.source = NutProcParserBenchmark.source(this.command);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public NutInvocation parseOneThread() {
+        return this.parser.parse(this.source);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public NutInvocation parseAllThreads() {
+        return this.parser.parse(this.source);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public NutInvocation parseWithAntlrOneThread() {
+        return this.parser.parseWithAntlr(this.source);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public NutInvocation parseWithAntlrAllThreads() {
+        return this.parser.parseWithAntlr(this.source);
+    }
+}
@@ -0,0 +1,57 @@
+package net.smackem.nutfx.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to the first command in a fresh JVM, without warm-up (the ANTLR caches are built by the
+ * first parse), and after {@link NutProcParser#warmUp()} has run at startup. The ANTLR-based parser handles
+ * the commands the fast parser cannot handle, mostly erroneous ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 10, jvmArgsAppend = "--enable-preview")
+public class NutStartupBenchmark {
+    @Param({"none", "warmUp"})
+    public String startup;
+
+    private NutProcParser parser;
+    private String source;
+
+    @Setup
+    public void setup() {
+        if (this.startup.equals("none")) {
+            // suppress the background warm-up started by the parser
+            NutExecution.setBackgroundExecutor(ignored -> {});
+        }
+        this.parser = new NutProcParser(new SmallController());
+        if (this.startup.equals("warmUp")) {
+            this.parser.warmUp();
+        }
+        this.source = "draw 10 20 110 220 'a label' -color='dark red' -width=2.5 -dashed";
+    }
+
+    @Benchmark
+    public NutInvocation firstCommand() {
+        return this.parser.parse(this.source);
+    }
+
+    @Benchmark
+    public NutInvocation firstCommandWithAntlr() {
+        return this.parser.parseWithAntlr(this.source);
+    }
+}
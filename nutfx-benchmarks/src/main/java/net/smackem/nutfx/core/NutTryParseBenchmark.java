@@ -0,0 +1,60 @@
+package net.smackem.nutfx.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link NutProcParser#tryParse(String)} with {@link NutProcParser#parse(String)} on valid and invalid
+ * commands. On invalid commands, {@code parse} throws after parsing with ANTLR, while {@code tryParse}
+ * collects the diagnostics without exceptions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class NutTryParseBenchmark {
+    @Param({"valid", "unknownParameter", "unrecognizedCommand", "syntaxError"})
+    public String command;
+
+    private NutProcParser parser;
+    private String source;
+
+    @Setup
+    public void setup() {
+        this.parser = new NutProcParser(new SmallController());
+        this.source = switch (this.command) {
+            case "valid" -> "draw 10 20 110 220 'a label' -color='dark red' -width=2.5 -dashed";
+            case "unknownParameter" -> "draw 10 20 110 220 'a label' -colour='dark red' -width=2.5 -dashed";
+            case "unrecognizedCommand" -> "drow 10 20 110 220 'a label' -color='dark red' -width=2.5 -dashed";
+            case "syntaxError" -> "draw 10 20 110 220 'a label' -color= -width=2.5 -dashed";
+            default -> throw new IllegalArgumentException("unknown command: " + this.command);
+        };
+    }
+
+    @Benchmark
+    public Object parse() {
+        try {
+            return this.parser.parse(this.source);
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public NutParseResult tryParse() {
+        return this.parser.tryParse(this.source);
+    }
+}
@@ -0,0 +1,73 @@
+package net.smackem.nutfx.core;
+
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A controller with a handful of procs, covering all kinds of parameters.
+ */
+class SmallController {
+    String string;
+    long sum;
+
+    @NutMethod
+    void test() {
+        this.string = "done";
+    }
+
+    @NutMethod("test-params")
+    void testParams(@NutParam("n") int n,
+                    @NutParam("s") String s,
+                    @NutParam("b") boolean b) {
+        this.string = s;
+        this.sum += n;
+    }
+
+    @NutMethod("get-pointmag")
+    void getPointMagnitude(@NutParam("point") Point p) {
+        this.sum += p.x + p.y;
+    }
+
+    @NutMethod
+    void draw(@NutParam("x1") int x1,
+              @NutParam("y1") int y1,
+              @NutParam("x2") int x2,
+              @NutParam("y2") int y2,
+              @NutParam("label") String label,
+              @NutParam("color") String color,
+              @NutParam("width") double width,
+              @NutParam("dashed") boolean dashed) {
+        this.string = label;
+        this.sum += x1 + y1 + x2 + y2;
+    }
+
+    @NutMethod
+    Stream<Integer> range(@NutParam("n") int n) {
+        return IntStream.range(0, n).boxed();
+    }
+
+    @NutMethod
+    int square(@NutPipeInput int x) {
+        return x * x;
+    }
+
+    @NutMethod
+    long sum(@NutPipeInput Stream<Integer> values) {
+        return values.mapToLong(Integer::longValue).sum();
+    }
+
+    static final class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        public static Point parse(String s) {
+            final int separator = s.indexOf(';');
+            return new Point(Integer.parseInt(s.substring(0, separator)), Integer.parseInt(s.substring(separator + 1)));
+        }
+    }
+}
@@ -5,23 +5,49 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import net.smackem.nutfx.core.NutCommandHistory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Path;
 
 /**
  * JavaFX App
  */
 public class App extends Application {
 
+    private static final Logger log = LoggerFactory.getLogger(App.class);
     private static Scene scene;
+    private static NutCommandHistory history;
 
     @Override
     public void start(Stage stage) throws IOException {
+        final Path historyFile = Path.of(System.getProperty("user.home"), ".nutfx_history");
+        try {
+            history = new NutCommandHistory(historyFile);
+        } catch (IOException e) {
+            log.warn("could not open command history {}", historyFile, e);
+        }
         scene = new Scene(loadFXML("primary"), 640, 480);
         stage.setScene(scene);
         stage.show();
     }
 
+    @Override
+    public void stop() throws IOException {
+        if (history != null) {
+            history.close();
+        }
+    }
+
+    /**
+     * @return The command history shared by all views or {@code null} if it could not be opened.
+     */
+    static NutCommandHistory history() {
+        return history;
+    }
+
     static void setRoot(String fxml) throws IOException {
         scene.setRoot(loadFXML(fxml));
     }
@@ -0,0 +1,130 @@
+package net.smackem.nutfx.controls;
+
+import net.smackem.nutfx.core.NutProc;
+import net.smackem.nutfx.core.NutProcIndex;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * A {@link SortedSet} view of a {@link NutProcIndex}, so that modifications of
+ * {@link NutTextField#getEntries()} update the index incrementally.
+ * <p>
+ * Iterators work on a snapshot of the index and support {@link Iterator#remove()}.
+ * The sub-set views are unmodifiable snapshots.
+ */
+class NutProcIndexSet extends AbstractSet<NutProc> implements SortedSet<NutProc> {
+    private final Supplier<NutProcIndex> index;
+
+    NutProcIndexSet(Supplier<NutProcIndex> index) {
+        this.index = index;
+    }
+
+    @Override
+    public boolean add(NutProc proc) {
+        return this.index.get().add(proc);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends NutProc> procs) {
+        return this.index.get().addAll(List.copyOf(procs));
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof NutProc && this.index.get().remove((NutProc) o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof NutProc && this.index.get().contains((NutProc) o);
+    }
+
+    @Override
+    public void clear() {
+        this.index.get().clear();
+    }
+
+    @Override
+    public int size() {
+        return this.index.get().size();
+    }
+
+    @Override
+    public Iterator<NutProc> iterator() {
+        final Iterator<NutProc> snapshot = this.index.get().procs().iterator();
+        return new Iterator<>() {
+            NutProc current;
+
+            @Override
+            public boolean hasNext() {
+                return snapshot.hasNext();
+            }
+
+            @Override
+            public NutProc next() {
+                this.current = snapshot.next();
+                return this.current;
+            }
+
+            @Override
+            public void remove() {
+                if (this.current == null) {
+                    throw new IllegalStateException();
+                }
+                NutProcIndexSet.this.remove(this.current);
+                this.current = null;
+            }
+        };
+    }
+
+    @Override
+    public Comparator<? super NutProc> comparator() {
+        return null;
+    }
+
+    @Override
+    public SortedSet<NutProc> subSet(NutProc fromElement, NutProc toElement) {
+        return Collections.unmodifiableSortedSet(snapshot().subSet(fromElement, toElement));
+    }
+
+    @Override
+    public SortedSet<NutProc> headSet(NutProc toElement) {
+        return Collections.unmodifiableSortedSet(snapshot().headSet(toElement));
+    }
+
+    @Override
+    public SortedSet<NutProc> tailSet(NutProc fromElement) {
+        return Collections.unmodifiableSortedSet(snapshot().tailSet(fromElement));
+    }
+
+    @Override
+    public NutProc first() {
+        final List<NutProc> procs = this.index.get().procs();
+        if (procs.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return procs.get(0);
+    }
+
+    @Override
+    public NutProc last() {
+        final List<NutProc> procs = this.index.get().procs();
+        if (procs.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return procs.get(procs.size() - 1);
+    }
+
+    private TreeSet<NutProc> snapshot() {
+        return new TreeSet<>(this.index.get().procs());
+    }
+}
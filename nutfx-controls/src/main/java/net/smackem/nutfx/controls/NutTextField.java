@@ -1,33 +1,59 @@
 package net.smackem.nutfx.controls;
 
+import javafx.animation.PauseTransition;
+import javafx.beans.InvalidationListener;
 import javafx.beans.Observable;
+import javafx.beans.WeakInvalidationListener;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.geometry.Side;
-import javafx.scene.control.ContextMenu;
-import javafx.scene.control.CustomMenuItem;
+import javafx.css.PseudoClass;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
+import javafx.scene.control.Tooltip;
 import javafx.scene.control.skin.TextFieldSkin;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
+import javafx.stage.Popup;
+import javafx.util.Duration;
+import net.smackem.nutfx.core.NutCommandHistory;
+import net.smackem.nutfx.core.NutDiagnostic;
+import net.smackem.nutfx.core.NutExecution;
+import net.smackem.nutfx.core.NutFuzzyMatcher;
+import net.smackem.nutfx.core.NutParseResult;
+import net.smackem.nutfx.core.NutParseSession;
 import net.smackem.nutfx.core.NutProc;
+import net.smackem.nutfx.core.NutProcIndex;
+import net.smackem.nutfx.core.NutProcParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * This class is a TextField which implements an "autocomplete" functionality,
  * based on a supplied list of entries.<p>
  * <p>
  * If the entered text matches a part of any of the supplied entries these are
- * going to be displayed in a popup. Further the matching part of the entry is
- * going to be displayed in a special style, defined by
+ * going to be displayed in a popup, a virtualized list that shows
+ * {@link #getVisibleEntries() visibleEntries} at a time and scrolls through
+ * the others. Further the matching part of the entry is going to be
+ * displayed in a special style, defined by
  * {@link #textOccurrenceStyle textOccurenceStyle}. The maximum number of
  * displayed entries in the popup is defined by
  * {@link #maxEntries maxEntries}.<br>
@@ -50,6 +76,24 @@ import java.util.regex.Pattern;
  * listView.itemsProperty().bind(filteredEntries);
  * </code>
  * </pre>
+ * <p>
+ * If {@link #isFuzzy() fuzzy} matching is enabled, entries match if they contain the characters of the
+ * entered text in order, e.g. {@code nr} matches {@code newRobot}. The entries are then ranked by a
+ * {@link NutFuzzyMatcher} instead of being ordered by name.
+ * <p>
+ * Filtering runs on the {@link NutExecution#backgroundExecutor() background executor}, after the text has
+ * not changed for the {@link #getFilterDelay() filter delay}. Each change of the text invalidates the
+ * filtering in progress, so only the result for the latest text is published to
+ * {@link #getFilteredEntries() filteredEntries} and the popup.
+ * <p>
+ * If a {@link #setParser(NutProcParser) parser} is set, the text is validated on each change, using
+ * a {@link NutParseSession} that re-scans only the edited part of the text. While the text is invalid, the
+ * field has the pseudo class {@code :invalid} and a tooltip listing the errors.
+ * <p>
+ * If a {@link #setHistory(NutCommandHistory) history} is set, Up and Down recall the previous and next
+ * entries, Down past the latest entry restoring the text being edited. Ctrl+R replaces the text with the
+ * latest entry containing it, pressing Ctrl+R again recalls the next older match. Entries are added to the
+ * history by the owner of the field, usually in its {@link #onActionProperty() action handler}.
  *
  * @author Caleb Brinkman
  * @author Fabian Ochmann
@@ -57,13 +101,33 @@ import java.util.regex.Pattern;
  */
 public class NutTextField extends TextField {
     private static final Logger log = LoggerFactory.getLogger(NutTextField.class);
+    private static final PseudoClass INVALID = PseudoClass.getPseudoClass("invalid");
+    private static final double CELL_HEIGHT = 24;
+    private static final KeyCombination REVERSE_SEARCH = new KeyCodeCombination(KeyCode.R, KeyCombination.SHORTCUT_DOWN);
     private final ObjectProperty<NutProc> lastSelectedItem = new SimpleObjectProperty<>();
-    private final SortedSet<NutProc> entries = new TreeSet<>();
+    private final SortedSet<NutProc> entries = new NutProcIndexSet(() -> this.index);
     private final ObservableList<NutProc> filteredEntries = FXCollections.observableArrayList();
-    private final ContextMenu entriesPopup;
+    private final Popup entriesPopup = new Popup();
+    private final ListView<NutProc> entriesList = new ListView<>(this.filteredEntries);
+    private final ObjectProperty<Highlighter> highlighter = new SimpleObjectProperty<>();
+    private final PauseTransition filterDelay = new PauseTransition(Duration.millis(100));
+    private final AtomicLong filterGeneration = new AtomicLong();
+    private String pendingFilterText;
+    private NutProcIndex index;
+    private final ReadOnlyObjectWrapper<NutParseResult> parseResult = new ReadOnlyObjectWrapper<>();
+    private final Tooltip diagnosticsTooltip = new Tooltip();
+    private NutProcParser parser;
+    private NutParseSession parseSession;
+    private NutCommandHistory history;
+    private int historyIndex = -1;
+    private String historyDraft;
+    private String historyQuery;
+    private boolean recalling;
     private boolean caseSensitive;
+    private boolean fuzzy = true;
     private boolean popupHidden;
-    private int maxEntries = 10;
+    private int maxEntries = 1000;
+    private int visibleEntries = 10;
     private String textOccurrenceStyle = """
                                          -fx-font-weight: bold;
                                          -fx-fill: red;
@@ -75,17 +139,35 @@ public class NutTextField extends TextField {
      * @param entrySet the entries to contain
      */
     public NutTextField(Collection<NutProc> entrySet) {
+        this(new NutProcIndex());
         if (entrySet != null) {
             this.entries.addAll(entrySet);
+            this.filteredEntries.setAll(this.entries);
         }
+    }
+
+    /**
+     * Construct a new AutoCompleteTextField whose entries are the procs of the given index,
+     * which may be shared with other fields.
+     *
+     * @param index the index of entries
+     */
+    public NutTextField(NutProcIndex index) {
+        this.index = Objects.requireNonNull(index);
         this.filteredEntries.addAll(this.entries);
-        this.entriesPopup = new ContextMenu();
+        this.entriesList.setFixedCellSize(CELL_HEIGHT);
+        this.entriesList.setFocusTraversable(false);
+        this.entriesList.setCellFactory(ignored -> new EntryCell());
+        this.entriesPopup.getContent().add(this.entriesList);
+        this.entriesPopup.setAutoHide(true);
+        this.filterDelay.setOnFinished(ignored -> startFiltering());
         textProperty().addListener(this::onTextChanged);
         focusedProperty().addListener(this::onFocusChanged);
+        addEventFilter(KeyEvent.KEY_PRESSED, this::onKeyPressed);
     }
 
     public NutTextField() {
-        this(null);
+        this(new NutProcIndex());
     }
 
     /**
@@ -103,6 +185,38 @@ public class NutTextField extends TextField {
         this.caseSensitive = caseSensitive;
     }
 
+    /**
+     * Indicates whether the entered text is matched as an abbreviation (e.g. {@code nr} for {@code newRobot})
+     * rather than as a substring. Fuzzy matching is never case sensitive. <br>
+     * Default: true
+     */
+    public boolean isFuzzy() {
+        return this.fuzzy;
+    }
+
+    /**
+     * see {@link #isFuzzy()}
+     */
+    public void setFuzzy(boolean fuzzy) {
+        this.fuzzy = fuzzy;
+    }
+
+    /**
+     * The time the text must stay unchanged before the entries are filtered, so that a burst of
+     * keystrokes is filtered only once. {@link Duration#ZERO} filters on every change. <br>
+     * Default: 100ms
+     */
+    public Duration getFilterDelay() {
+        return this.filterDelay.getDuration();
+    }
+
+    /**
+     * see {@link #getFilterDelay()}
+     */
+    public void setFilterDelay(Duration filterDelay) {
+        this.filterDelay.setDuration(Objects.requireNonNull(filterDelay));
+    }
+
     /**
      * The CSS style that should be applied on the parts in the popup that match
      * the entered text. <br>
@@ -151,7 +265,7 @@ public class NutTextField extends TextField {
 
     /**
      * The maximum Number of entries displayed in the popup.<br>
-     * Default: 10
+     * Default: 1000
      */
     public int getMaxEntries() {
         return this.maxEntries;
@@ -165,7 +279,23 @@ public class NutTextField extends TextField {
     }
 
     /**
-     * Get the existing set of autocomplete entries.
+     * The number of entries visible in the popup without scrolling.<br>
+     * Default: 10
+     */
+    public int getVisibleEntries() {
+        return this.visibleEntries;
+    }
+
+    /**
+     * see {@link #getVisibleEntries()}
+     */
+    public void setVisibleEntries(int visibleEntries) {
+        this.visibleEntries = visibleEntries;
+    }
+
+    /**
+     * Get the existing set of autocomplete entries. This is a view of the {@link #getIndex() index}:
+     * modifying the set updates the index.
      *
      * @return The existing autocomplete entries.
      */
@@ -173,85 +303,414 @@ public class NutTextField extends TextField {
         return this.entries;
     }
 
+    /**
+     * The index the autocomplete entries are searched in. An index can be shared by multiple fields.
+     */
+    public NutProcIndex getIndex() {
+        return this.index;
+    }
+
+    /**
+     * see {@link #getIndex()}
+     */
+    public void setIndex(NutProcIndex index) {
+        this.index = Objects.requireNonNull(index);
+        this.filteredEntries.setAll(this.entries);
+    }
+
+    /**
+     * The parser used to validate the text while it is being edited. {@code null} disables validation.<br>
+     * Default: null
+     */
+    public NutProcParser getParser() {
+        return this.parser;
+    }
+
+    /**
+     * see {@link #getParser()}
+     */
+    public void setParser(NutProcParser parser) {
+        this.parser = parser;
+        this.parseSession = parser != null ? new NutParseSession(parser) : null;
+        validate(getText());
+    }
+
+    /**
+     * The history recalled with Up, Down and Ctrl+R. {@code null} disables these key bindings.<br>
+     * Default: null
+     */
+    public NutCommandHistory getHistory() {
+        return this.history;
+    }
+
+    /**
+     * see {@link #getHistory()}
+     */
+    public void setHistory(NutCommandHistory history) {
+        this.history = history;
+        resetHistoryNavigation();
+    }
+
+    /**
+     * The result of validating the current text or {@code null} if no {@link #getParser() parser} is set.
+     */
+    public NutParseResult getParseResult() {
+        return this.parseResult.get();
+    }
+
+    public ReadOnlyObjectProperty<NutParseResult> parseResultProperty() {
+        return this.parseResult.getReadOnlyProperty();
+    }
+
     public NutProc getLastSelectedObject() {
         return this.lastSelectedItem.get();
     }
 
-    public ContextMenu getEntryMenu() {
+    public Popup getEntryPopup() {
         return this.entriesPopup;
     }
 
     private void onTextChanged(ObservableValue<? extends String> prop, String old, String val) {
+        validate(val);
+        if (this.recalling) {
+            // a recalled entry is a complete command, there is nothing to complete
+            this.filterGeneration.incrementAndGet();
+            this.filterDelay.stop();
+            this.entriesPopup.hide();
+            return;
+        }
+        resetHistoryNavigation();
+        // a result computed for the previous text must not be published anymore
+        this.filterGeneration.incrementAndGet();
+        this.filterDelay.stop();
         if (this.entries.isEmpty()) {
             this.entriesPopup.hide();
             return;
         }
         if (val == null || val.length() == 0) {
-            this.filteredEntries.clear();
-            this.filteredEntries.addAll(this.entries);
             this.entriesPopup.hide();
+            scheduleFiltering("");
             return;
         }
-        final List<NutProc> searchResult = new LinkedList<>();
         final String[] tokens = val.split("\\s");
         if (tokens.length == 0 || tokens[0].length() == 0) {
             return;
         }
-        val = tokens[0];
-        final Pattern pattern = Pattern.compile("^.*" + val + ".*",
-                this.caseSensitive ? 0 : Pattern.CASE_INSENSITIVE);
-        for (final NutProc entry : this.entries) {
-            if (pattern.matcher(entry.name()).matches()) {
-                searchResult.add(entry);
-            }
+        scheduleFiltering(tokens[0]);
+    }
+
+    private void scheduleFiltering(String text) {
+        this.pendingFilterText = text;
+        if (getFilterDelay().lessThanOrEqualTo(Duration.ZERO)) {
+            startFiltering();
+        } else {
+            this.filterDelay.playFromStart();
         }
-        this.filteredEntries.clear();
-        this.filteredEntries.addAll(searchResult);
+    }
+
+    private void startFiltering() {
+        final long generation = this.filterGeneration.get();
+        final var filter = new Filter(this.index, this.pendingFilterText, this.fuzzy, this.caseSensitive,
+                isPopupHidden(), getMaxEntries());
+        CompletableFuture
+                .supplyAsync(() -> isStale(generation) ? null : filter.run(),
+                        NutExecution.backgroundExecutor())
+                .thenAcceptAsync(procs -> {
+                    if (procs != null && isStale(generation) == false) {
+                        publish(procs, filter);
+                    }
+                }, NutExecution.fxExecutor())
+                .exceptionally(e -> {
+                    log.error("filtering entries failed", e);
+                    return null;
+                });
+    }
+
+    private boolean isStale(long generation) {
+        return this.filterGeneration.get() != generation;
+    }
+
+    private void publish(List<NutProc> procs, Filter filter) {
+        // the popup lists the filtered entries, so its cells are updated in the same pulse
+        this.highlighter.set(new Highlighter(filter));
+        this.filteredEntries.setAll(procs);
         //Only show popup if not in filter mode
-        if (isPopupHidden() == false) {
-            populatePopup(searchResult, val);
-            if (this.entriesPopup.isShowing() == false) {
-                this.entriesPopup.show(NutTextField.this, Side.BOTTOM, 0, 0);
-            }
+        if (filter.popupHidden || filter.text.isEmpty()) {
+            return;
         }
+        if (procs.isEmpty()) {
+            this.entriesPopup.hide();
+            return;
+        }
+        showPopup();
+    }
+
+    private void showPopup() {
+        final int rows = Math.min(this.filteredEntries.size(), getVisibleEntries());
+        final double insets = this.entriesList.getInsets().getTop() + this.entriesList.getInsets().getBottom();
+        this.entriesList.setPrefSize(getWidth(), rows * CELL_HEIGHT + Math.max(insets, 2));
+        this.entriesList.scrollTo(0);
+        if (this.entriesPopup.isShowing()) {
+            return;
+        }
+        final Bounds bounds = localToScreen(getBoundsInLocal());
+        if (bounds != null) {
+            this.entriesPopup.show(this, bounds.getMinX(), bounds.getMaxY());
+        }
+    }
+
+    private void validate(String text) {
+        if (this.parseSession == null) {
+            this.parseResult.set(null);
+            pseudoClassStateChanged(INVALID, false);
+            setTooltip(null);
+            return;
+        }
+        final NutParseResult result = this.parseSession.update(text != null ? text : "");
+        this.parseResult.set(result);
+        final boolean invalid = result.diagnostics().isEmpty() == false;
+        pseudoClassStateChanged(INVALID, invalid);
+        if (invalid) {
+            this.diagnosticsTooltip.setText(result.diagnostics().stream()
+                    .map(NutDiagnostic::message)
+                    .collect(Collectors.joining("\n")));
+        }
+        setTooltip(invalid ? this.diagnosticsTooltip : null);
+    }
+
+    private void onKeyPressed(KeyEvent event) {
+        if (this.history == null) {
+            return;
+        }
+        if (event.getCode() == KeyCode.UP && event.isShortcutDown() == false) {
+            recallPrevious();
+        } else if (event.getCode() == KeyCode.DOWN && event.isShortcutDown() == false) {
+            recallNext();
+        } else if (REVERSE_SEARCH.match(event)) {
+            searchBackwards();
+        } else {
+            return;
+        }
+        event.consume();
+    }
+
+    private void recallPrevious() {
+        final int size = this.history.size();
+        if (this.historyIndex < 0) {
+            this.historyIndex = size;
+            this.historyDraft = getText();
+        }
+        if (this.historyIndex > 0) {
+            this.historyIndex--;
+            recall(this.history.get(this.historyIndex));
+        }
+    }
+
+    private void recallNext() {
+        if (this.historyIndex < 0) {
+            return;
+        }
+        this.historyIndex++;
+        if (this.historyIndex < this.history.size()) {
+            recall(this.history.get(this.historyIndex));
+            return;
+        }
+        final String draft = this.historyDraft;
+        resetHistoryNavigation();
+        recall(draft);
+    }
+
+    private void searchBackwards() {
+        if (this.historyQuery == null) {
+            this.historyQuery = getText() != null ? getText() : "";
+            this.historyDraft = getText();
+            this.historyIndex = this.history.size();
+        }
+        final String current = getText();
+        int index = this.historyIndex;
+        do {
+            // skip older occurrences of the entry shown
+            index = this.history.search(this.historyQuery, Math.max(index, 0));
+        } while (index >= 0 && this.history.get(index).equals(current));
+        if (index >= 0) {
+            this.historyIndex = index;
+            recall(this.history.get(index));
+        }
+    }
+
+    private void recall(String text) {
+        this.recalling = true;
+        try {
+            setText(text);
+        } finally {
+            this.recalling = false;
+        }
+        end();
+    }
+
+    private void resetHistoryNavigation() {
+        this.historyIndex = -1;
+        this.historyDraft = null;
+        this.historyQuery = null;
     }
 
     private void onFocusChanged(Observable observable) {
         this.entriesPopup.hide();
     }
 
-    private void populatePopup(List<NutProc> searchResult, String text) {
-        final List<CustomMenuItem> menuItems = new LinkedList<>();
-        int count = Math.min(searchResult.size(), getMaxEntries());
-        for (int i = 0; i < count; i++) {
-            final NutProc itemObject = searchResult.get(i);
-            final String result = itemObject.toString();
-            final int occurrence;
-            if (isCaseSensitive()) {
-                occurrence = itemObject.name().indexOf(text);
-            } else {
-                occurrence = itemObject.name().toLowerCase().indexOf(text.toLowerCase());
-            }
-            if (occurrence < 0) {
-                continue;
+    /**
+     * @return The positions of the first occurrence of {@code text} in {@code name} or {@code null}.
+     */
+    private static int[] occurrencePositions(String name, String text, boolean caseSensitive) {
+        final int occurrence;
+        if (caseSensitive) {
+            occurrence = name.indexOf(text);
+        } else {
+            occurrence = name.toLowerCase().indexOf(text.toLowerCase());
+        }
+        if (occurrence < 0) {
+            return null;
+        }
+        final int[] positions = new int[text.length()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = occurrence + i;
+        }
+        return positions;
+    }
+
+    /**
+     * The settings of a filter operation, captured on the FX thread and evaluated on the background executor.
+     */
+    private static final class Filter {
+        final NutProcIndex index;
+        final String text;
+        final boolean fuzzy;
+        final boolean caseSensitive;
+        final boolean popupHidden;
+        final int maxEntries;
+
+        Filter(NutProcIndex index, String text, boolean fuzzy, boolean caseSensitive, boolean popupHidden,
+               int maxEntries) {
+            this.index = index;
+            this.text = text;
+            this.fuzzy = fuzzy;
+            this.caseSensitive = caseSensitive;
+            this.popupHidden = popupHidden;
+            this.maxEntries = maxEntries;
+        }
+
+        /**
+         * @return The matching procs, at most {@link #getMaxEntries() maxEntries} if shown in the popup.
+         */
+        List<NutProc> run() {
+            if (this.text.isEmpty()) {
+                return this.index.procs();
             }
-            //Part before occurrence (might be empty)
-            final Text pre = new Text(result.substring(0, occurrence));
-            //Part of (first) occurrence
-            final Text in = new Text(result.substring(occurrence, occurrence + text.length()));
-            in.setStyle(getTextOccurrenceStyle());
-            //Part after occurrence
-            final Text post = new Text(result.substring(occurrence + text.length()));
-            final TextFlow entryFlow = new TextFlow(pre, in, post);
-            final CustomMenuItem item = new CustomMenuItem(entryFlow, true);
-            item.setDisable(true);
-            item.setOnAction(e -> {
-                this.lastSelectedItem.set(itemObject);
-                this.entriesPopup.hide();
+            // the popup shows at most maxEntries, but in filter mode all matches are needed
+            final int limit = this.popupHidden ? Integer.MAX_VALUE : this.maxEntries;
+            return this.fuzzy
+                    ? this.index.searchFuzzy(this.text, limit)
+                    : this.index.search(this.text, this.caseSensitive, limit);
+        }
+    }
+
+    /**
+     * Finds the characters to highlight in the names of the procs matched by a {@link Filter}.
+     * Used on the FX thread only, for the visible cells of the popup.
+     */
+    private static final class Highlighter {
+        final String text;
+        final boolean caseSensitive;
+        final NutFuzzyMatcher matcher;
+
+        Highlighter(Filter filter) {
+            this.text = filter.text;
+            this.caseSensitive = filter.caseSensitive;
+            this.matcher = filter.fuzzy ? new NutFuzzyMatcher(filter.text) : null;
+        }
+
+        /**
+         * @return The ascending positions of the matched characters or {@code null}.
+         */
+        int[] positions(String name) {
+            return this.matcher != null
+                    ? this.matcher.matchPositions(name)
+                    : occurrencePositions(name, this.text, this.caseSensitive);
+        }
+    }
+
+    /**
+     * A cell of the popup. Cells are recycled while scrolling and filtering: a cell keeps its {@link Text}
+     * nodes and only changes their content, so updating the popup allocates no nodes once it has been shown.
+     */
+    private final class EntryCell extends ListCell<NutProc> {
+        private final TextFlow flow = new TextFlow();
+        private final InvalidationListener highlighterListener = ignored -> render();
+
+        EntryCell() {
+            NutTextField.this.highlighter.addListener(new WeakInvalidationListener(this.highlighterListener));
+            setOnMouseClicked(e -> {
+                if (isEmpty() == false) {
+                    NutTextField.this.lastSelectedItem.set(getItem());
+                    NutTextField.this.entriesPopup.hide();
+                }
             });
-            menuItems.add(item);
         }
-        this.entriesPopup.getItems().clear();
-        this.entriesPopup.getItems().addAll(menuItems);
+
+        @Override
+        protected void updateItem(NutProc item, boolean empty) {
+            super.updateItem(item, empty);
+            render();
+        }
+
+        private void render() {
+            final NutProc proc = getItem();
+            if (isEmpty() || proc == null) {
+                setGraphic(null);
+                return;
+            }
+            // the display string is computed once per proc, see NutProc#toString()
+            final String display = proc.toString();
+            final Highlighter highlighter = NutTextField.this.highlighter.get();
+            final int[] positions = highlighter != null ? highlighter.positions(proc.name()) : null;
+            int runCount = 0;
+            int start = 0;
+            if (positions != null) {
+                int i = 0;
+                while (i < positions.length) {
+                    final int runStart = positions[i];
+                    int runEnd = runStart + 1;
+                    while (++i < positions.length && positions[i] == runEnd) {
+                        runEnd++;
+                    }
+                    if (runStart > start) {
+                        setRun(runCount++, display.substring(start, runStart), false);
+                    }
+                    setRun(runCount++, display.substring(runStart, runEnd), true);
+                    start = runEnd;
+                }
+            }
+            if (start < display.length()) {
+                setRun(runCount++, display.substring(start), false);
+            }
+            final ObservableList<Node> runs = this.flow.getChildren();
+            if (runs.size() > runCount) {
+                runs.remove(runCount, runs.size());
+            }
+            setGraphic(this.flow);
+        }
+
+        private void setRun(int index, String text, boolean highlighted) {
+            final List<Node> runs = this.flow.getChildren();
+            final Text run;
+            if (index < runs.size()) {
+                run = (Text) runs.get(index);
+            } else {
+                run = new Text();
+                runs.add(run);
+            }
+            run.setText(text);
+            run.setStyle(highlighted ? getTextOccurrenceStyle() : null);
+        }
     }
 }
\ No newline at end of file
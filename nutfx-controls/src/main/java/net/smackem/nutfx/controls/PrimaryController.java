@@ -1,16 +1,19 @@
 package net.smackem.nutfx.controls;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import net.smackem.nutfx.core.NutMethod;
 import net.smackem.nutfx.core.NutParam;
 import net.smackem.nutfx.core.NutProcParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class PrimaryController {
 
+    private static final Logger log = LoggerFactory.getLogger(PrimaryController.class);
+
     private final NutProcParser parser;
 
     @FXML
@@ -29,18 +32,41 @@ public class PrimaryController {
     @FXML
     private void initialize() {
         this.nutInputText.getEntries().addAll(this.parser.nutProcs().values());
+        this.nutInputText.setParser(this.parser);
+        this.nutInputText.setHistory(App.history());
     }
 
     @FXML
-    private void handleNutInput(ActionEvent actionEvent) throws InvocationTargetException {
+    private void handleNutInput(ActionEvent actionEvent) {
         final var source = this.nutInputText.getText();
         if (source.isBlank()) {
             return;
         }
-        final var invocation = parser.parse(source);
+        final var parseResult = this.parser.tryParse(source);
+        if (parseResult.isValid() == false) {
+            log.warn("invalid command '{}': {}", source, parseResult.diagnostics());
+            return;
+        }
+        final var invocation = parseResult.toInvocation();
         if (invocation != null) {
-            invocation.invoke(this);
             this.nutInputText.setText("");
+            invocation.invokeAsync(this).exceptionally(e -> {
+                log.error("error executing '{}'", source, e);
+                return null;
+            });
+            addToHistory(source);
+        }
+    }
+
+    private void addToHistory(String source) {
+        final var history = this.nutInputText.getHistory();
+        if (history == null) {
+            return;
+        }
+        try {
+            history.add(source);
+        } catch (RuntimeException e) {
+            log.warn("could not add '{}' to the command history", source, e);
         }
     }
 
@@ -1,7 +1,11 @@
 grammar Nut;
 
+nutPipeline
+    : nutProc ('|' nutProc)* EOF
+    ;
+
 nutProc
-    : Ident positionalParameter* namedParameter* EOF
+    : Ident positionalParameter* namedParameter*
     ;
 
 positionalParameter
@@ -20,6 +24,10 @@ value
     ;
 
 Ident
+    : Segment ('.' Segment)*
+    ;
+
+fragment Segment
     : ('a' .. 'z' | 'A' .. 'Z' | '_') ('a' .. 'z' | 'A' .. 'Z' | '_' | '-' | '0' .. '9') *
     ;
 
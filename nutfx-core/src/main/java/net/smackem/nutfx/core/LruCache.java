@@ -0,0 +1,45 @@
+package net.smackem.nutfx.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, thread-safe map that evicts the least recently used entry when full.
+ */
+final class LruCache<K, V> {
+    private final int maxSize;
+    private final LinkedHashMap<K, V> map;
+
+    LruCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > LruCache.this.maxSize;
+            }
+        };
+    }
+
+    int maxSize() {
+        return this.maxSize;
+    }
+
+    synchronized V get(K key) {
+        return this.map.get(key);
+    }
+
+    synchronized void put(K key, V value) {
+        this.map.put(key, value);
+    }
+
+    synchronized int size() {
+        return this.map.size();
+    }
+
+    synchronized void clear() {
+        this.map.clear();
+    }
+}
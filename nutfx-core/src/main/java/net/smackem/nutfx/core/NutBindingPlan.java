@@ -0,0 +1,161 @@
+package net.smackem.nutfx.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Precompiled binding of arguments to the parameters of a {@link NutProc}, computed once per proc.
+ * <p>
+ * The arguments of an invocation are kept in a flat array with one slot per method parameter, so that
+ * they can be passed to the {@link NutInvoker} as they are. Parameter names are resolved with a
+ * hash table whose size and hash multiplier are chosen so that each name gets its own table entry - a
+ * lookup then costs one hash and one comparison. Only names with equal {@link String#hashCode()} collide,
+ * which is resolved by linear probing.
+ */
+final class NutBindingPlan {
+    private static final int MAX_EXTRA_BITS = 2;
+    private static final int MAX_SEEDS = 64;
+    private static final int DEFAULT_MULTIPLIER = 0x9E3779B9;
+
+    private final List<NutProcParameter<?>> parameters;
+    private final int[] parameterSlots;
+    private final int[] requiredParameters;
+    private final Object[] template;
+    private final int[] table;
+    private final int multiplier;
+    private final int shift;
+    private final int mask;
+
+    NutBindingPlan(List<NutProcParameter<?>> parameters, int pipeInputIndex) {
+        this.parameters = parameters;
+        final int parameterCount = parameters.size();
+        this.parameterSlots = new int[parameterCount];
+        this.template = new Object[parameterCount + (pipeInputIndex >= 0 ? 1 : 0)];
+        final int[] requiredParameters = new int[parameterCount];
+        int requiredCount = 0;
+        for (int i = 0; i < parameterCount; i++) {
+            // the pipe input parameter is not in the list, but takes a slot
+            final int slot = pipeInputIndex >= 0 && i >= pipeInputIndex ? i + 1 : i;
+            this.parameterSlots[i] = slot;
+            final NutProcParameter<?> parameter = parameters.get(i);
+            if (parameter.isOptional()) {
+                continue;
+            }
+            if (parameter.type() == ParameterType.BOOLEAN) {
+                this.template[slot] = false;
+            } else {
+                requiredParameters[requiredCount++] = i;
+            }
+        }
+        this.requiredParameters = Arrays.copyOf(requiredParameters, requiredCount);
+        // the table has at least twice as many entries as there are names, so probing always ends
+        int minBits = 1;
+        while ((1 << minBits) < parameterCount * 2) {
+            minBits++;
+        }
+        int[] table = null;
+        int bits = minBits;
+        int multiplier = DEFAULT_MULTIPLIER;
+        search:
+        for (int b = minBits; b <= minBits + MAX_EXTRA_BITS; b++) {
+            for (int seed = 0; seed < MAX_SEEDS; seed++) {
+                final int m = DEFAULT_MULTIPLIER + 2 * seed;
+                table = buildTable(b, m, false);
+                if (table != null) {
+                    bits = b;
+                    multiplier = m;
+                    break search;
+                }
+            }
+        }
+        if (table == null) {
+            table = buildTable(bits, multiplier, true);
+        }
+        this.table = table;
+        this.multiplier = multiplier;
+        this.shift = 32 - bits;
+        this.mask = table.length - 1;
+    }
+
+    /**
+     * @return The table or {@code null} if names collide and {@code probe} is {@code false}.
+     */
+    private int[] buildTable(int bits, int multiplier, boolean probe) {
+        final int[] table = new int[1 << bits];
+        Arrays.fill(table, -1);
+        for (int i = 0; i < this.parameters.size(); i++) {
+            int entry = (this.parameters.get(i).name().hashCode() * multiplier) >>> (32 - bits);
+            while (table[entry] >= 0) {
+                if (probe == false) {
+                    return null;
+                }
+                entry = (entry + 1) & (table.length - 1);
+            }
+            table[entry] = i;
+        }
+        return table;
+    }
+
+    /**
+     * @return The index of the parameter with the given name or -1.
+     */
+    int indexOf(String name) {
+        for (int entry = entry(name.hashCode()); ; entry = (entry + 1) & this.mask) {
+            final int index = this.table[entry];
+            if (index < 0 || this.parameters.get(index).name().equals(name)) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * @return The index of the parameter named like the region {@code start..end} of {@code source} or -1.
+     */
+    int indexOf(String source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        for (int entry = entry(hash); ; entry = (entry + 1) & this.mask) {
+            final int index = this.table[entry];
+            if (index < 0) {
+                return -1;
+            }
+            final String name = this.parameters.get(index).name();
+            if (name.length() == end - start && source.regionMatches(start, name, 0, name.length())) {
+                return index;
+            }
+        }
+    }
+
+    private int entry(int hash) {
+        return (hash * this.multiplier) >>> this.shift;
+    }
+
+    /**
+     * @return The slot of the parameter with the given index in the argument array.
+     */
+    int slot(int parameterIndex) {
+        return this.parameterSlots[parameterIndex];
+    }
+
+    /**
+     * @return A new argument array holding the default arguments: {@code false} for required booleans,
+     *      {@code null} for all others.
+     */
+    Object[] newArguments() {
+        return this.template.clone();
+    }
+
+    /**
+     * @return The index of the first required parameter without argument or -1 if all are present.
+     */
+    int findMissingArgument(Object[] arguments) {
+        for (final int index : this.requiredParameters) {
+            if (arguments[this.parameterSlots[index]] == null) {
+                return index;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,489 @@
+package net.smackem.nutfx.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A persistent history of executed commands, like the history of a shell.
+ * <p>
+ * Commands are appended to a memory-mapped log file, so adding a command costs no system call. Opening the
+ * history only maps the file and reads its header: the commands are read when they are first queried, so the
+ * startup time does not grow with the size of the history. Once the log holds twice the
+ * {@link #maxEntries() maximum number of entries}, it is compacted on {@link NutExecution#backgroundExecutor()}:
+ * duplicates are dropped in favor of the latest occurrence and only the latest entries are kept. If compacting
+ * fails, e.g. because the platform does not allow to replace a mapped file, the history keeps using the current
+ * log and tries again after another {@link #maxEntries()} commands.
+ * <p>
+ * {@link #search(String, int) Reverse searches} look up the trigrams of the query in an inverted index and
+ * verify only the entries listed for the rarest trigram, so searching does not scan the whole history.
+ * <p>
+ * The history is thread-safe.
+ */
+public final class NutCommandHistory implements Closeable {
+    /**
+     * The default value of {@link #maxEntries()}.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    // header: magic, record count, end of the last record, start of the last record
+    private static final int MAGIC = 0x4e555448;
+    private static final int COUNT_OFFSET = 4;
+    private static final int END_OFFSET = 8;
+    private static final int LAST_OFFSET = 12;
+    private static final int HEADER_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int GRAM_LENGTH = 3;
+
+    private final Path file;
+    private final int maxEntries;
+    private final Object compactionLock = new Object();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int count;
+    private int end;
+    private List<String> entries;
+    private Map<Long, Posting> grams;
+    private int compactionThreshold;
+    private boolean compactionScheduled;
+
+    /**
+     * Opens the history stored in {@code file} or creates the file if it does not exist, keeping
+     * {@link #DEFAULT_MAX_ENTRIES} entries.
+     */
+    public NutCommandHistory(Path file) throws IOException {
+        this(file, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Opens the history stored in {@code file} or creates the file if it does not exist, keeping
+     * at least {@code maxEntries} entries.
+     */
+    public NutCommandHistory(Path file, int maxEntries) throws IOException {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.file = Objects.requireNonNull(file);
+        this.maxEntries = maxEntries;
+        this.compactionThreshold = 2 * maxEntries;
+        open();
+    }
+
+    /**
+     * @return The number of entries kept when the history is compacted.
+     */
+    public int maxEntries() {
+        return this.maxEntries;
+    }
+
+    /**
+     * Appends {@code command} to the history, unless it is blank or equal to the latest entry.
+     */
+    public void add(String command) {
+        Objects.requireNonNull(command);
+        if (addEntry(command.strip())) {
+            scheduleCompaction();
+        }
+    }
+
+    /**
+     * @return {@code true} if the log is due to be compacted.
+     */
+    private synchronized boolean addEntry(String entry) {
+        assertOpen();
+        if (entry.isEmpty() || (this.count > 0 && entry.equals(latest()))) {
+            return false;
+        }
+        try {
+            append(entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (this.count < this.compactionThreshold || this.compactionScheduled) {
+            return false;
+        }
+        this.compactionScheduled = true;
+        return true;
+    }
+
+    private void scheduleCompaction() {
+        try {
+            NutExecution.backgroundExecutor().execute(() -> {
+                try {
+                    compact();
+                } catch (IOException | RuntimeException e) {
+                    synchronized (this) {
+                        this.compactionThreshold = this.count + this.maxEntries;
+                    }
+                } finally {
+                    synchronized (this) {
+                        this.compactionScheduled = false;
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                this.compactionScheduled = false;
+            }
+        }
+    }
+
+    /**
+     * @return The number of entries in the history.
+     */
+    public synchronized int size() {
+        assertOpen();
+        return this.count;
+    }
+
+    /**
+     * @return The entry at {@code index}, the oldest entry being at index 0.
+     */
+    public synchronized String get(int index) {
+        assertOpen();
+        return entries().get(index);
+    }
+
+    /**
+     * Searches the history backwards for an entry containing {@code text}, ignoring case.
+     *
+     * @param text The text to search for.
+     * @param before The index to start searching before - {@link #size()} to search the whole history.
+     * @return The index of the latest matching entry before {@code before} or -1 if there is none.
+     */
+    public synchronized int search(String text, int before) {
+        Objects.requireNonNull(text);
+        assertOpen();
+        final List<String> entries = entries();
+        final int start = Math.min(before, entries.size()) - 1;
+        final String lowerCaseText = toLowerCase(text);
+        if (lowerCaseText.length() < GRAM_LENGTH) {
+            for (int index = start; index >= 0; index--) {
+                if (toLowerCase(entries.get(index)).contains(lowerCaseText)) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+        final Posting posting = rarestPosting(lowerCaseText);
+        if (posting == null) {
+            return -1;
+        }
+        for (int i = posting.lastIndexBefore(start + 1); i >= 0; i--) {
+            final int index = posting.ids[i];
+            if (toLowerCase(entries.get(index)).contains(lowerCaseText)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Drops duplicate entries in favor of their latest occurrence and all but the latest
+     * {@link #maxEntries()} entries, rewriting the log file. Commands can be added while the new log is written.
+     * If it cannot replace the current log, the history keeps using the current log.
+     */
+    public void compact() throws IOException {
+        synchronized (this.compactionLock) {
+            final List<String> entries;
+            synchronized (this) {
+                assertOpen();
+                entries = new ArrayList<>(entries());
+            }
+            final List<String> latest = latestDistinct(entries);
+            final Map<Long, Posting> grams = new HashMap<>();
+            for (int index = 0; index < latest.size(); index++) {
+                indexEntry(grams, index, latest.get(index));
+            }
+            // write a new log next to the old one and replace it, so the history survives a crash
+            final Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+            write(temp, latest);
+            synchronized (this) {
+                if (this.channel == null) {
+                    Files.deleteIfExists(temp);
+                    return;
+                }
+                try {
+                    Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    Files.deleteIfExists(temp);
+                    throw e;
+                }
+                final List<String> added = new ArrayList<>(this.entries.subList(entries.size(), this.entries.size()));
+                final FileChannel replaced = this.channel;
+                try {
+                    open();
+                } finally {
+                    // the mapping of the replaced log is released when it is collected
+                    replaced.close();
+                }
+                this.entries = new ArrayList<>(latest);
+                this.grams = grams;
+                for (final String entry : added) {
+                    append(entry);
+                }
+                this.compactionThreshold = 2 * this.maxEntries;
+            }
+        }
+    }
+
+    private List<String> latestDistinct(List<String> entries) {
+        final Set<String> seen = new HashSet<>();
+        final List<String> compacted = new ArrayList<>();
+        for (int index = entries.size() - 1; index >= 0 && compacted.size() < this.maxEntries; index--) {
+            final String entry = entries.get(index);
+            if (seen.add(entry)) {
+                compacted.add(entry);
+            }
+        }
+        final List<String> latest = new ArrayList<>(compacted.size());
+        for (int index = compacted.size() - 1; index >= 0; index--) {
+            latest.add(compacted.get(index));
+        }
+        return latest;
+    }
+
+    private static void write(Path file, List<String> entries) throws IOException {
+        final byte[][] records = new byte[entries.size()][];
+        int size = HEADER_SIZE;
+        int last = 0;
+        for (int i = 0; i < records.length; i++) {
+            records[i] = entries.get(i).getBytes(StandardCharsets.UTF_8);
+            last = size;
+            size += Integer.BYTES + records[i].length;
+        }
+        final ByteBuffer content = ByteBuffer.allocate(size);
+        content.putInt(MAGIC).putInt(records.length).putInt(size).putInt(last);
+        for (final byte[] record : records) {
+            content.putInt(record.length).put(record);
+        }
+        content.flip();
+        try (final FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (content.hasRemaining()) {
+                out.write(content);
+            }
+            out.force(true);
+        }
+    }
+
+    /**
+     * Writes the pending changes to the file and closes it.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.channel == null) {
+            return;
+        }
+        this.buffer.force();
+        this.channel.close();
+        this.channel = null;
+        this.buffer = null;
+        this.entries = null;
+        this.grams = null;
+    }
+
+    /**
+     * Opens and maps the log file. Leaves the history unchanged if that fails.
+     */
+    private void open() throws IOException {
+        final FileChannel channel = FileChannel.open(this.file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final MappedByteBuffer buffer;
+        final int end;
+        try {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("command history file is too large: " + this.file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+            if (size == 0) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(COUNT_OFFSET, 0);
+                buffer.putInt(END_OFFSET, HEADER_SIZE);
+            } else if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("not a command history file: " + this.file);
+            }
+            end = buffer.getInt(END_OFFSET);
+            if (end < HEADER_SIZE || end > buffer.capacity()) {
+                throw new IOException("corrupt command history file: " + this.file);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.channel = channel;
+        this.buffer = buffer;
+        this.count = buffer.getInt(COUNT_OFFSET);
+        this.end = end;
+        this.entries = null;
+        this.grams = null;
+    }
+
+    private void append(String entry) throws IOException {
+        final byte[] record = entry.getBytes(StandardCharsets.UTF_8);
+        final int required = this.end + Integer.BYTES + record.length;
+        if (required > this.buffer.capacity()) {
+            // mapping beyond the end of the file grows the file
+            final long capacity = Math.max(2L * this.buffer.capacity(), required);
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IOException("command history file is too large: " + this.file);
+            }
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        final int position = this.end;
+        this.buffer.putInt(position, record.length);
+        this.buffer.put(position + Integer.BYTES, record);
+        // publish the record only after it has been written completely
+        this.end = required;
+        this.count++;
+        this.buffer.putInt(END_OFFSET, this.end);
+        this.buffer.putInt(COUNT_OFFSET, this.count);
+        this.buffer.putInt(LAST_OFFSET, position);
+        if (this.entries != null) {
+            this.entries.add(entry);
+            indexEntry(this.grams, this.entries.size() - 1, entry);
+        }
+    }
+
+    private String latest() {
+        if (this.entries != null) {
+            return this.entries.get(this.entries.size() - 1);
+        }
+        // the header locates the latest record, so repeated commands are dropped without reading all records
+        final int position = this.buffer.getInt(LAST_OFFSET);
+        final int length = this.buffer.getInt(position);
+        return decode(position + Integer.BYTES, length);
+    }
+
+    /**
+     * @return The entries, read from the log file on first access.
+     */
+    private List<String> entries() {
+        if (this.entries == null) {
+            final List<String> entries = new ArrayList<>(this.count);
+            int position = HEADER_SIZE;
+            while (position < this.end && entries.size() < this.count) {
+                final int length = this.buffer.getInt(position);
+                if (length < 0 || position + Integer.BYTES + length > this.end) {
+                    break;
+                }
+                entries.add(decode(position + Integer.BYTES, length));
+                position += Integer.BYTES + length;
+            }
+            // ignore a partially written record
+            this.end = position;
+            this.count = entries.size();
+            index(entries);
+        }
+        return this.entries;
+    }
+
+    private void index(List<String> entries) {
+        this.entries = new ArrayList<>(entries);
+        this.grams = new HashMap<>();
+        for (int index = 0; index < entries.size(); index++) {
+            indexEntry(this.grams, index, entries.get(index));
+        }
+    }
+
+    private static void indexEntry(Map<Long, Posting> grams, int index, String entry) {
+        final String lowerCaseEntry = toLowerCase(entry);
+        for (int i = 0; i + GRAM_LENGTH <= lowerCaseEntry.length(); i++) {
+            grams.computeIfAbsent(gramKey(lowerCaseEntry, i), ignored -> new Posting()).add(index);
+        }
+    }
+
+    /**
+     * @return The posting of the rarest trigram of {@code lowerCaseText} or {@code null} if one of them is
+     * not contained in any entry.
+     */
+    private Posting rarestPosting(String lowerCaseText) {
+        Posting rarest = null;
+        for (int i = 0; i + GRAM_LENGTH <= lowerCaseText.length(); i++) {
+            final Posting posting = this.grams.get(gramKey(lowerCaseText, i));
+            if (posting == null) {
+                return null;
+            }
+            if (rarest == null || posting.size < rarest.size) {
+                rarest = posting;
+            }
+        }
+        return rarest;
+    }
+
+    private String decode(int position, int length) {
+        final byte[] bytes = new byte[length];
+        this.buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void assertOpen() {
+        if (this.channel == null) {
+            throw new IllegalStateException("command history is closed");
+        }
+    }
+
+    /**
+     * Packs three chars into a long.
+     */
+    private static long gramKey(String s, int start) {
+        long key = 0;
+        for (int i = 0; i < GRAM_LENGTH; i++) {
+            key = (key << 16) | s.charAt(start + i);
+        }
+        return key;
+    }
+
+    private static String toLowerCase(String s) {
+        final var sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            sb.append(Character.toLowerCase(s.charAt(i)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The ascending indices of the entries containing a trigram.
+     */
+    private static final class Posting {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            // an entry containing the trigram more than once is listed once
+            if (this.size > 0 && this.ids[this.size - 1] == id) {
+                return;
+            }
+            if (this.size == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, 2 * this.size);
+            }
+            this.ids[this.size++] = id;
+        }
+
+        /**
+         * @return The position of the last id less than {@code id} or -1.
+         */
+        int lastIndexBefore(int id) {
+            final int position = Arrays.binarySearch(this.ids, 0, this.size, id);
+            return (position >= 0 ? position : -position - 1) - 1;
+        }
+    }
+}
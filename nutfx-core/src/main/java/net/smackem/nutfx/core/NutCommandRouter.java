@@ -0,0 +1,211 @@
+package net.smackem.nutfx.core;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Routes commands to the procs of many controllers, e.g. one per window or plugin, optionally under a namespace:
+ * the proc {@code new} of a controller registered under the namespace {@code robot} is invoked as
+ * {@code robot.new}.
+ * <p>
+ * Controllers can be registered and unregistered at any time, from any thread. The procs of all controllers are
+ * kept in an immutable map that is replaced on each change, so that parsing never blocks and always sees a
+ * consistent set of procs. The invocations parsed by the router are bound to their controllers and are invoked
+ * with {@link NutInvocation#invoke()}, which also allows pipelines across controllers.
+ */
+public final class NutCommandRouter {
+    private final Map<Object, Registration> registrations = new IdentityHashMap<>();
+    private final Map<String, NutProc> macros = new HashMap<>();
+    private final Parser parser = new Parser();
+
+    /**
+     * Registers the procs of {@code controller} under their own names.
+     *
+     * @throws IllegalArgumentException if the controller is already registered or a proc name is taken.
+     */
+    public void register(Object controller) {
+        register("", controller);
+    }
+
+    /**
+     * Registers the procs of {@code controller} as {@code namespace.name}.
+     *
+     * @param namespace A valid identifier, which may contain dots itself, or the empty string for no namespace.
+     * @throws IllegalArgumentException if the namespace is invalid, the controller is already registered or
+     *      a proc name is taken.
+     */
+    public synchronized void register(String namespace, Object controller) {
+        Objects.requireNonNull(namespace);
+        Objects.requireNonNull(controller);
+        if (namespace.isEmpty() == false && NutFastParser.isIdent(namespace) == false) {
+            throw new IllegalArgumentException("invalid namespace: " + namespace);
+        }
+        if (this.registrations.containsKey(controller)) {
+            throw new IllegalArgumentException("controller is already registered");
+        }
+        final Map<String, NutProc> procMap = this.parser.nutProcs();
+        final var registration = new Registration(namespace);
+        for (final NutProc proc : NutProcCatalog.forClass(controller.getClass()).procMap().values()) {
+            final String name = namespace.isEmpty() ? proc.name() : namespace + "." + proc.name();
+            if (procMap.containsKey(name)) {
+                throw new IllegalArgumentException("there already exists a proc named " + name);
+            }
+            registration.procs.add(proc.bind(name, controller));
+        }
+        this.registrations.put(controller, registration);
+        publish();
+    }
+
+    /**
+     * Removes the procs of {@code controller}, including their aliases and the macros invoking them.
+     *
+     * @return {@code true} if the controller has been registered.
+     */
+    public synchronized boolean unregister(Object controller) {
+        if (this.registrations.remove(controller) == null) {
+            return false;
+        }
+        removeMacrosBoundTo(controller);
+        publish();
+        return true;
+    }
+
+    public synchronized boolean isRegistered(Object controller) {
+        return this.registrations.containsKey(controller);
+    }
+
+    /**
+     * @return The namespace the controller is registered under, {@code ""} for none,
+     *      or {@code null} if it is not registered.
+     */
+    public synchronized String namespaceOf(Object controller) {
+        final Registration registration = this.registrations.get(controller);
+        return registration != null ? registration.namespace : null;
+    }
+
+    /**
+     * @return A snapshot of the procs of all registered controllers, by qualified name.
+     */
+    public Map<String, NutProc> nutProcs() {
+        return this.parser.nutProcs();
+    }
+
+    /**
+     * @return A parser that always reflects the registered controllers, e.g. for input controls or
+     *      {@link NutParseSession}s. Its aliases are bound to the controller of the aliased proc and
+     *      removed with it. Its {@link NutProcParser#defineMacro(NutMacro) macros} must consist of procs
+     *      parsed by the router.
+     */
+    public NutProcParser parser() {
+        return this.parser;
+    }
+
+    public NutInvocation parse(String source) {
+        return this.parser.parse(source);
+    }
+
+    /**
+     * Parses and invokes {@code source} on the controllers of its procs.
+     */
+    public Object invoke(String source) throws InvocationTargetException {
+        return parse(source).invoke();
+    }
+
+    private synchronized NutProc createAlias(NutProc proc, String aliasName) {
+        Objects.requireNonNull(proc);
+        Objects.requireNonNull(aliasName);
+        if (this.parser.nutProcs().get(proc.name()) != proc) {
+            throw new IllegalArgumentException("the given proc is not present in this router's context!");
+        }
+        if (this.parser.nutProcs().containsKey(aliasName)) {
+            throw new IllegalArgumentException("there already exists a proc with the given aliasName");
+        }
+        final NutProc alias = proc.alias(aliasName);
+        final Registration registration = this.registrations.get(proc.controller());
+        if (registration != null) {
+            registration.procs.add(alias);
+        } else {
+            // the proc of a macro is bound to the macro, so the alias is removed along with it
+            this.macros.put(aliasName, alias);
+        }
+        publish();
+        return alias;
+    }
+
+    private synchronized NutProc defineMacro(NutMacro macro) {
+        Objects.requireNonNull(macro);
+        if (macro.proc().controller() == null) {
+            throw new IllegalArgumentException("macro contains procs not bound to a controller");
+        }
+        final NutProc existing = this.parser.nutProcs().get(macro.name());
+        if (existing != null && NutMacro.isMacro(existing) == false) {
+            throw new IllegalArgumentException("there already exists a proc named " + macro.name());
+        }
+        this.macros.put(macro.name(), macro.proc());
+        publish();
+        return macro.proc();
+    }
+
+    /**
+     * Removes the macros invoking procs of {@code controller}, and the macros invoking those, which would
+     * otherwise keep invoking the controller and keep it reachable.
+     */
+    private void removeMacrosBoundTo(Object controller) {
+        final List<Object> removed = new ArrayList<>();
+        removed.add(controller);
+        for (int i = 0; i < removed.size(); i++) {
+            final Object target = removed.get(i);
+            final Iterator<NutProc> procs = this.macros.values().iterator();
+            while (procs.hasNext()) {
+                // the procs of macros defined on the router are bound to their macro
+                final var macro = (NutMacro) procs.next().controller();
+                if (macro.isBoundTo(target)) {
+                    procs.remove();
+                    removed.add(macro);
+                }
+            }
+        }
+    }
+
+    private void publish() {
+        final Map<String, NutProc> procMap = new HashMap<>(this.macros);
+        for (final Registration registration : this.registrations.values()) {
+            for (final NutProc proc : registration.procs) {
+                procMap.put(proc.name(), proc);
+            }
+        }
+        this.parser.setProcMap(Collections.unmodifiableMap(procMap));
+    }
+
+    private static final class Registration {
+        final String namespace;
+        final List<NutProc> procs = new ArrayList<>();
+
+        Registration(String namespace) {
+            this.namespace = namespace;
+        }
+    }
+
+    private final class Parser extends NutProcParser {
+        Parser() {
+            super(Map.of());
+        }
+
+        @Override
+        public NutProc createAlias(NutProc proc, String aliasName) {
+            return NutCommandRouter.this.createAlias(proc, aliasName);
+        }
+
+        @Override
+        public NutProc defineMacro(NutMacro macro) {
+            return NutCommandRouter.this.defineMacro(macro);
+        }
+    }
+}
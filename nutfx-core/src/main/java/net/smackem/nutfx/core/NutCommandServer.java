@@ -0,0 +1,585 @@
+package net.smackem.nutfx.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * A headless endpoint that executes Nut commands sent by other local processes, e.g. test rigs,
+ * over a loopback socket or a pair of byte channels like stdin and stdout.
+ * <p>
+ * The protocol is line based, UTF-8 encoded: the client sends one command per line. For each non-blank line,
+ * the server answers with one line, in the order of the commands: {@code ok}, followed by a blank and the value
+ * returned by the proc if it is not {@code null}, or {@code error}, followed by a blank and the error message.
+ * Line breaks in values and messages are replaced by blanks.
+ * <p>
+ * All socket clients are served by a single selector thread reading into direct buffers. The lines received
+ * by one read form a batch, which is parsed and invoked by a single task on the
+ * {@link #setDispatchExecutor(Executor) dispatch executor} - the thread that parses interactive input, so
+ * that converters never run on the selector thread. If the executor rejects a batch, each of its commands is
+ * answered with an error. A client is not read from while one of its batches is
+ * in flight or too many of its responses are waiting to be sent, so each client is served in order and
+ * holds a bounded amount of memory.
+ * <p>
+ * Since Java 14 has no Unix domain socket channels, the server listens on the loopback interface only,
+ * which is open to all local users and to web pages in local browsers. Socket clients therefore have to send
+ * a secret token as their first line, which {@link #bind(int, Path)} writes to a file only the owner can read.
+ */
+public final class NutCommandServer implements Closeable {
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int MAX_QUEUED_OUTPUT = 1024 * 1024;
+    private static final int TOKEN_SIZE = 32;
+    private static final List<String> HTTP_METHODS = List.of(
+            "GET ", "HEAD ", "POST ", "PUT ", "DELETE ", "CONNECT ", "OPTIONS ", "TRACE ", "PATCH ");
+
+    private final NutProcParser parser;
+    private final Object controller;
+    private final Queue<Connection> pendingUpdates = new ConcurrentLinkedQueue<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private volatile Executor dispatchExecutor;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Path tokenFile;
+    private byte[] token;
+
+    /**
+     * Creates a server invoking the commands parsed by {@code parser} on {@code controller}.
+     */
+    public NutCommandServer(NutProcParser parser, Object controller) {
+        this.parser = Objects.requireNonNull(parser);
+        this.controller = Objects.requireNonNull(controller);
+    }
+
+    /**
+     * Creates a server invoking the commands on the controllers registered with {@code router}.
+     */
+    public NutCommandServer(NutCommandRouter router) {
+        this.parser = Objects.requireNonNull(router).parser();
+        this.controller = null;
+    }
+
+    /**
+     * Gets the executor that invokes the commands.<br>
+     * Default: {@link NutExecution#fxExecutor()} or, if it fails because there is no JavaFX toolkit,
+     * a single daemon thread shared by all servers.
+     */
+    public Executor getDispatchExecutor() {
+        final Executor executor = this.dispatchExecutor;
+        return executor != null ? executor : DefaultDispatchExecutor.INSTANCE;
+    }
+
+    /**
+     * see {@link #getDispatchExecutor()}. Pass {@code null} to restore the default.
+     */
+    public void setDispatchExecutor(Executor executor) {
+        this.dispatchExecutor = executor;
+    }
+
+    /**
+     * Starts listening on the loopback interface, serving all clients on a single daemon thread.
+     * <p>
+     * Generates a new secret token and writes it to {@code tokenFile}, replacing an existing file. Clients must
+     * send the token as their first line, otherwise they are disconnected. On file systems with POSIX permissions,
+     * the file is created readable by the owner only; elsewhere it inherits the permissions of its directory,
+     * which should therefore be private to the user. The file is deleted by {@link #close()}.
+     *
+     * @param port The port to listen on or {@code 0} for any free port.
+     * @param tokenFile The file to write the token to.
+     * @return The address the server listens on.
+     * @throws IllegalStateException if the server is already listening.
+     */
+    public synchronized InetSocketAddress bind(int port, Path tokenFile) throws IOException {
+        Objects.requireNonNull(tokenFile);
+        if (this.serverChannel != null) {
+            throw new IllegalStateException("server is already listening");
+        }
+        final String token = newToken();
+        writeTokenFile(tokenFile, token);
+        final Selector selector;
+        final ServerSocketChannel serverChannel;
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+        } catch (IOException e) {
+            Files.deleteIfExists(tokenFile);
+            throw e;
+        }
+        try {
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            Files.deleteIfExists(tokenFile);
+            throw e;
+        }
+        this.selector = selector;
+        this.serverChannel = serverChannel;
+        this.tokenFile = tokenFile;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        final var thread = new Thread(() -> select(selector), "nut-command-server");
+        thread.setDaemon(true);
+        thread.start();
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Serves the commands read from {@code input}, writing the responses to {@code output}, until the end of
+     * {@code input} is reached. Blocks the calling thread, which must not be the dispatch thread, e.g.
+     * {@code server.serve(Channels.newChannel(System.in), Channels.newChannel(System.out))}.
+     */
+    public void serve(ReadableByteChannel input, WritableByteChannel output) throws IOException {
+        Objects.requireNonNull(input);
+        Objects.requireNonNull(output);
+        final var lines = new LineDecoder();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        boolean endOfInput = false;
+        while (endOfInput == false) {
+            endOfInput = input.read(buffer) < 0;
+            buffer.flip();
+            final List<String> batch = lines.decode(buffer, endOfInput);
+            buffer.compact();
+            if (batch.isEmpty()) {
+                continue;
+            }
+            final String response = dispatch(CompletableFuture.completedFuture(null), batch).join();
+            final ByteBuffer bytes = StandardCharsets.UTF_8.encode(response);
+            while (bytes.hasRemaining()) {
+                output.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Stops listening, closes all client connections and deletes the token file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.serverChannel == null) {
+            return;
+        }
+        this.serverChannel.close();
+        this.selector.close();
+        for (final Connection connection : this.connections) {
+            connection.close();
+        }
+        this.serverChannel = null;
+        this.selector = null;
+        Files.deleteIfExists(this.tokenFile);
+        this.tokenFile = null;
+    }
+
+    private static String newToken() {
+        final byte[] bytes = new byte[TOKEN_SIZE];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static void writeTokenFile(Path file, String token) throws IOException {
+        Files.deleteIfExists(file);
+        final Set<OpenOption> options = Set.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        // created with restricted permissions, so that no other user can open it before they are set
+        final FileAttribute<?>[] attributes = file.getFileSystem().supportedFileAttributeViews().contains("posix")
+                ? new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")) }
+                : new FileAttribute<?>[0];
+        try (final SeekableByteChannel channel = Files.newByteChannel(file, options, attributes)) {
+            final ByteBuffer bytes = StandardCharsets.UTF_8.encode(token + '\n');
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    private boolean isToken(String line) {
+        return line != null && MessageDigest.isEqual(this.token, line.trim().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean isHttpRequestLine(String line) {
+        if (line == null) {
+            return false;
+        }
+        for (final String method : HTTP_METHODS) {
+            if (line.startsWith(method)) {
+                return true;
+            }
+        }
+        return line.contains(" HTTP/");
+    }
+
+    private void select(Selector selector) {
+        try {
+            while (selector.isOpen()) {
+                selector.select();
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        handle(selector, key);
+                    } catch (IOException ignored) {
+                        // failed to accept a client
+                    }
+                }
+                Connection connection;
+                while ((connection = this.pendingUpdates.poll()) != null) {
+                    connection.updateInterest();
+                }
+            }
+        } catch (IOException | ClosedSelectorException ignored) {
+            // closed
+        }
+    }
+
+    private void handle(Selector selector, SelectionKey key) throws IOException {
+        if (key.isValid() == false) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            final SocketChannel channel = ((ServerSocketChannel) key.channel()).accept();
+            if (channel != null) {
+                channel.configureBlocking(false);
+                final var connection = new Connection(channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                this.connections.add(connection);
+            }
+            return;
+        }
+        final var connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.write();
+            }
+        } catch (IOException e) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Parses and invokes {@code batch} on the dispatch executor once {@code previous} is done.
+     *
+     * @return The response lines, an error for each command if the batch could not be executed.
+     */
+    private CompletableFuture<String> dispatch(CompletableFuture<?> previous, List<String> batch) {
+        return previous
+                .thenApplyAsync(ignored -> execute(parse(batch)), getDispatchExecutor())
+                .exceptionally(e -> errors(batch.size(), e instanceof CompletionException && e.getCause() != null
+                        ? e.getCause()
+                        : e));
+    }
+
+    private static String errors(int count, Throwable error) {
+        return ("error " + message(error) + '\n').repeat(count);
+    }
+
+    private List<Command> parse(List<String> lines) {
+        final List<Command> commands = new ArrayList<>(lines.size());
+        for (final String line : lines) {
+            if (line == null) {
+                commands.add(new Command(null, new IllegalArgumentException("line too long")));
+                continue;
+            }
+            try {
+                commands.add(new Command(this.parser.parse(line), null));
+            } catch (RuntimeException e) {
+                commands.add(new Command(null, e));
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * Invokes the commands of a batch on the dispatch thread.
+     *
+     * @return The response lines.
+     */
+    private String execute(List<Command> commands) {
+        final var response = new StringBuilder();
+        for (final Command command : commands) {
+            Throwable error = command.error;
+            Object value = null;
+            if (error == null) {
+                try {
+                    value = this.controller != null
+                            ? command.invocation.invoke(this.controller)
+                            : command.invocation.invoke();
+                } catch (InvocationTargetException e) {
+                    error = e.getCause() != null ? e.getCause() : e;
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+            }
+            if (error != null) {
+                response.append("error ").append(message(error));
+            } else {
+                response.append("ok");
+                if (value != null) {
+                    response.append(' ').append(singleLine(String.valueOf(value)));
+                }
+            }
+            response.append('\n');
+        }
+        return response.toString();
+    }
+
+    private static String message(Throwable error) {
+        return singleLine(error.getMessage() != null ? error.getMessage() : error.getClass().getName());
+    }
+
+    private static String singleLine(String s) {
+        return s.replace('\r', ' ').replace('\n', ' ');
+    }
+
+    private static final class Command {
+        final NutInvocation invocation;
+        final Throwable error;
+
+        Command(NutInvocation invocation, Throwable error) {
+            this.invocation = invocation;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Runs tasks on the JavaFX Application Thread, or on a single daemon thread if there is no JavaFX toolkit,
+     * so that the server also works headless.
+     */
+    private static final class DefaultDispatchExecutor implements Executor {
+        static final Executor INSTANCE = new DefaultDispatchExecutor();
+
+        private final Executor headlessExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            final var thread = new Thread(runnable, "nut-command-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        @Override
+        public void execute(Runnable task) {
+            try {
+                NutExecution.fxExecutor().execute(task);
+            } catch (IllegalStateException e) {
+                // the JavaFX toolkit has not been started
+                this.headlessExecutor.execute(task);
+            }
+        }
+    }
+
+    /**
+     * Decodes UTF-8 bytes and splits them into lines, carrying incomplete lines over to the next call.
+     */
+    private static final class LineDecoder {
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer chars = CharBuffer.allocate(READ_BUFFER_SIZE);
+        private final StringBuilder line = new StringBuilder();
+        private boolean overlong;
+
+        /**
+         * @return The non-blank lines completed by {@code bytes}, {@code null} for lines exceeding
+         *      {@link #MAX_LINE_LENGTH}. Bytes of an incomplete character are left in {@code bytes}.
+         */
+        List<String> decode(ByteBuffer bytes, boolean endOfInput) {
+            final List<String> lines = new ArrayList<>();
+            while (true) {
+                this.chars.clear();
+                final boolean underflow = this.decoder.decode(bytes, this.chars, endOfInput).isUnderflow();
+                this.chars.flip();
+                while (this.chars.hasRemaining()) {
+                    final char ch = this.chars.get();
+                    if (ch == '\n') {
+                        endLine(lines);
+                    } else if (ch != '\r') {
+                        append(ch);
+                    }
+                }
+                if (underflow) {
+                    break;
+                }
+            }
+            if (endOfInput) {
+                endLine(lines);
+            }
+            return lines;
+        }
+
+        private void append(char ch) {
+            if (this.line.length() < MAX_LINE_LENGTH) {
+                this.line.append(ch);
+            } else {
+                this.overlong = true;
+            }
+        }
+
+        private void endLine(List<String> lines) {
+            if (this.overlong) {
+                // answered with an error instead of being executed truncated
+                lines.add(null);
+            } else if (this.line.toString().isBlank() == false) {
+                lines.add(this.line.toString());
+            }
+            this.line.setLength(0);
+            this.overlong = false;
+        }
+    }
+
+    /**
+     * A client connected to the socket. Read and written by the selector thread only.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        private final LineDecoder lines = new LineDecoder();
+        private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+        private CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+        private boolean authenticated;
+        private boolean endOfInput;
+        private volatile boolean busy;
+        private volatile boolean finished;
+        SelectionKey key;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() throws IOException {
+            final boolean endOfInput = this.channel.read(this.input) < 0;
+            this.input.flip();
+            final List<String> batch = this.lines.decode(this.input, endOfInput);
+            this.input.compact();
+            if (this.authenticated == false && batch.isEmpty() == false) {
+                final String line = batch.remove(0);
+                if (isHttpRequestLine(line)) {
+                    // e.g. a web page posting to localhost
+                    close();
+                    return;
+                }
+                if (isToken(line) == false) {
+                    this.output.add(StandardCharsets.UTF_8.encode("error unauthorized\n"));
+                    this.endOfInput = true;
+                    this.finished = true;
+                    updateInterest();
+                    return;
+                }
+                this.authenticated = true;
+            }
+            if (batch.isEmpty() == false) {
+                this.busy = true;
+                this.pending = dispatch(this.pending, batch)
+                        .thenAccept(response -> this.output.add(StandardCharsets.UTF_8.encode(response)))
+                        .whenComplete((ignored, e) -> {
+                            this.busy = false;
+                            requestUpdate();
+                        });
+            }
+            if (endOfInput) {
+                // answer the pending commands, then close
+                this.endOfInput = true;
+                this.pending = this.pending.whenComplete((ignored, e) -> {
+                    this.finished = true;
+                    requestUpdate();
+                });
+            }
+            updateInterest();
+        }
+
+        void write() throws IOException {
+            ByteBuffer bytes;
+            while ((bytes = this.output.peek()) != null) {
+                this.channel.write(bytes);
+                if (bytes.hasRemaining()) {
+                    break;
+                }
+                this.output.poll();
+            }
+            updateInterest();
+        }
+
+        void updateInterest() {
+            if (this.key.isValid() == false) {
+                return;
+            }
+            int ops = this.key.interestOps();
+            if (this.output.isEmpty()) {
+                if (this.finished) {
+                    close();
+                    return;
+                }
+                ops &= ~SelectionKey.OP_WRITE;
+            } else {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            // the client waits in the socket buffers while its commands are executed or answered
+            if (this.endOfInput || this.busy || queuedOutput() > MAX_QUEUED_OUTPUT) {
+                ops &= ~SelectionKey.OP_READ;
+            } else {
+                ops |= SelectionKey.OP_READ;
+            }
+            this.key.interestOps(ops);
+        }
+
+        private long queuedOutput() {
+            long size = 0;
+            for (final ByteBuffer bytes : this.output) {
+                size += bytes.remaining();
+            }
+            return size;
+        }
+
+        void close() {
+            NutCommandServer.this.connections.remove(this);
+            this.key.cancel();
+            try {
+                this.channel.close();
+            } catch (IOException ignored) {
+                // nothing left to do
+            }
+        }
+
+        private void requestUpdate() {
+            final Selector selector = this.key.selector();
+            NutCommandServer.this.pendingUpdates.add(this);
+            selector.wakeup();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package net.smackem.nutfx.core;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An error found in command source text, spanning the characters from {@link #start()} (inclusive)
+ * to {@link #end()} (exclusive).
+ */
+public final class NutDiagnostic {
+    private final int start;
+    private final int end;
+    private final Code code;
+    private final String message;
+
+    NutDiagnostic(int start, int end, Code code, String message) {
+        this.start = start;
+        this.end = end;
+        this.code = Objects.requireNonNull(code);
+        this.message = Objects.requireNonNull(message);
+    }
+
+    public int start() {
+        return this.start;
+    }
+
+    public int end() {
+        return this.end;
+    }
+
+    /**
+     * @return The kind of error, e.g. to handle errors without looking at the message.
+     */
+    public Code code() {
+        return this.code;
+    }
+
+    public String message() {
+        return this.message;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final NutDiagnostic that = (NutDiagnostic) o;
+        return this.start == that.start && this.end == that.end && this.code == that.code
+               && this.message.equals(that.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.start, this.end, this.code, this.message);
+    }
+
+    @Override
+    public String toString() {
+        return "pos %d-%d: %s".formatted(this.start, this.end, this.message);
+    }
+
+    /**
+     * @return A message listing all {@code diagnostics} of {@code source}, each with its line (starting at 1)
+     *      and its position in the line (starting at 0), e.g. {@code line 2, pos 7: unknown parameter: q}.
+     */
+    static String describe(String source, List<NutDiagnostic> diagnostics) {
+        final var sb = new StringBuilder();
+        for (final NutDiagnostic diagnostic : diagnostics) {
+            int line = 1;
+            int lineStart = 0;
+            for (int i = 0; i < diagnostic.start; i++) {
+                if (source.charAt(i) == '\n') {
+                    line++;
+                    lineStart = i + 1;
+                }
+            }
+            if (sb.length() > 0) {
+                sb.append("; ");
+            }
+            sb.append("line %d, pos %d: %s".formatted(line, diagnostic.start - lineStart, diagnostic.message));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The kinds of errors.
+     */
+    public enum Code {
+        /**
+         * The text does not match the grammar, e.g. an unterminated string or a missing parameter name.
+         */
+        SYNTAX_ERROR,
+        /**
+         * There is no proc of the given name.
+         */
+        UNRECOGNIZED_COMMAND,
+        /**
+         * The proc has no parameter of the given name.
+         */
+        UNKNOWN_PARAMETER,
+        /**
+         * There are more positional arguments than parameters.
+         */
+        TOO_MANY_ARGUMENTS,
+        /**
+         * A required argument or the value of a named argument is missing.
+         */
+        MISSING_ARGUMENT,
+        /**
+         * A value has the wrong type or has been rejected by the converter of the parameter.
+         */
+        INVALID_VALUE,
+        /**
+         * A stage of a pipeline produces no output or does not accept pipe input.
+         */
+        INVALID_PIPE,
+    }
+}
@@ -1,33 +1,79 @@
 package net.smackem.nutfx.core;
 
+import net.smackem.nutfx.core.NutDiagnostic.Code;
 import net.smackem.nutfx.lang.NutBaseVisitor;
 import net.smackem.nutfx.lang.NutParser;
 import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.TerminalNode;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
+/**
+ * Emits the invocations of a parse tree. Errors do not stop the visitor: each one is collected as a
+ * {@link NutDiagnostic}, and the stage or argument in error is skipped.
+ */
 public class NutEmittingVisitor extends NutBaseVisitor<Void> {
     private final Map<String, NutProc> availableCommands;
+    private final List<NutDiagnostic> diagnostics = new ArrayList<>();
+    private NutInvocation head;
     private NutInvocation invocation;
+    private NutInvocation previous;
     private int positionalParameterIndex;
 
     public NutEmittingVisitor(Map<String, NutProc> availableCommands) {
         this.availableCommands = Objects.requireNonNull(availableCommands);
     }
 
+    /**
+     * @return The invocation of the first proc of the pipeline, which links to the following stages,
+     *      or {@code null} if there are {@link #diagnostics() errors}.
+     */
     public NutInvocation invocation() {
-        return this.invocation;
+        return this.diagnostics.isEmpty() ? this.head : null;
+    }
+
+    /**
+     * @return The errors found while visiting, in the order of the source text.
+     */
+    public List<NutDiagnostic> diagnostics() {
+        return this.diagnostics;
     }
 
     @Override
     public Void visitNutProc(NutParser.NutProcContext ctx) {
-        final String ident = ctx.Ident().getText();
-        final NutProc recognizedNutProc = this.availableCommands.get(ident);
+        final TerminalNode identNode = ctx.Ident();
+        final String ident = identNode != null ? identNode.getText() : null;
+        final NutProc recognizedNutProc = ident != null ? this.availableCommands.get(ident) : null;
+        // the previous stage may have been skipped
+        final NutInvocation previous = this.invocation != null ? this.invocation : this.previous;
+        this.invocation = null;
+        this.positionalParameterIndex = 0;
         if (recognizedNutProc == null) {
-            logError(ctx, String.format("unrecognized command: %s", ident));
+            // a missing identifier has been reported by the parser
+            if (ident != null && identNode.getSymbol().getTokenIndex() >= 0) {
+                addDiagnostic(ctx, Code.UNRECOGNIZED_COMMAND, "unrecognized command: " + ident);
+            }
+            return null;
+        }
+        if (previous != null) {
+            if (previous.proc().returnType() == void.class) {
+                addDiagnostic(ctx, Code.INVALID_PIPE, "command produces no output to pipe: " + previous.proc().name());
+            }
+            if (recognizedNutProc.acceptsPipeInput() == false) {
+                addDiagnostic(ctx, Code.INVALID_PIPE, "command does not accept pipe input: " + ident);
+            }
         }
         this.invocation = new NutInvocation(recognizedNutProc);
+        this.previous = this.invocation;
+        if (previous != null) {
+            previous.setNext(this.invocation);
+        } else {
+            this.head = this.invocation;
+        }
         return super.visitNutProc(ctx);
     }
 
@@ -35,47 +81,78 @@ public class NutEmittingVisitor extends NutBaseVisitor<Void> {
     public Void visitPositionalParameter(NutParser.PositionalParameterContext ctx) {
         final var parameters = this.invocation.proc().parameters();
         if (this.positionalParameterIndex >= parameters.size()) {
-            logError(ctx, "too many positional parameters");
+            addDiagnostic(ctx, Code.TOO_MANY_ARGUMENTS, "too many positional parameters");
         } else {
             final var parameter = parameters.get(this.positionalParameterIndex);
+            bind(this.positionalParameterIndex, ctx, ctx.value(), parameter);
             this.positionalParameterIndex++;
-            this.invocation.put(parameter.name(), parseValue(ctx.value(), parameter));
         }
         return super.visitPositionalParameter(ctx);
     }
 
     @Override
     public Void visitNamedParameter(NutParser.NamedParameterContext ctx) {
-        final var parameter = this.invocation.proc().parameters().stream()
-                .filter(p -> Objects.equals(p.name(), ctx.Ident().getText()))
-                .findFirst()
-                .orElse(null);
-        if (parameter == null) {
-            logError(ctx, "unknown parameter: " + ctx.Ident().getText());
+        final NutProc proc = this.invocation.proc();
+        if (ctx.Ident() == null) {
+            return null;
+        }
+        final int index = proc.bindingPlan().indexOf(ctx.Ident().getText());
+        if (index < 0) {
+            addDiagnostic(ctx, Code.UNKNOWN_PARAMETER, "unknown parameter: " + ctx.Ident().getText());
         } else {
-            this.invocation.put(parameter.name(), parseValue(ctx.value(), parameter));
+            bind(index, ctx, ctx.value(), proc.parameters().get(index));
         }
         return super.visitNamedParameter(ctx);
     }
 
+    private void bind(int index, ParserRuleContext parameterCtx, NutParser.ValueContext ctx,
+                      NutProcParameter<?> parameter) {
+        if (ctx == null && parameter.type() != ParameterType.BOOLEAN) {
+            addDiagnostic(parameterCtx, Code.MISSING_ARGUMENT, "missing value for parameter: " + parameter.name());
+            return;
+        }
+        final Object value;
+        try {
+            value = parseValue(ctx, parameter);
+        } catch (RuntimeException e) {
+            addDiagnostic(ctx, Code.INVALID_VALUE, "invalid value for parameter %s: %s"
+                    .formatted(parameter.name(), e.getMessage()));
+            return;
+        }
+        if (value == null) {
+            addDiagnostic(ctx, Code.INVALID_VALUE, "%s value expected for parameter: %s"
+                    .formatted(parameter.type() == ParameterType.INTEGER ? "integer" : "float", parameter.name()));
+            return;
+        }
+        this.invocation.put(index, value);
+    }
+
+    /**
+     * @return The converted value or {@code null} if the value has the wrong type.
+     */
     private Object parseValue(NutParser.ValueContext ctx, NutProcParameter<?> parameter) {
         return switch (parameter.type()) {
-            case STRING -> trimStringDelimiters(ctx.getText());
-            case INTEGER -> Integer.parseInt(ctx.Integer().getText());
-            case DOUBLE -> Double.parseDouble(ctx.Float().getText());
+            case STRING -> unquote(ctx);
+            case INTEGER -> ctx.Integer() != null ? (Object) Integer.parseInt(ctx.Integer().getText()) : null;
+            case DOUBLE -> ctx.Float() != null ? (Object) Double.parseDouble(ctx.Float().getText()) : null;
             case BOOLEAN -> ctx == null || ctx.getText().isBlank() || Boolean.parseBoolean(ctx.getText());
-            case ENUM, CUSTOM -> parameter.converter().apply(trimStringDelimiters(ctx.getText()));
+            case ENUM, CUSTOM -> parameter.converter().apply(unquote(ctx));
         };
     }
 
-    private void logError(ParserRuleContext ctx, String message) {
-        throw new RuntimeException(String.format("line %d, pos %d: %s",
-                ctx.getStart().getLine(),
-                ctx.getStart().getCharPositionInLine(),
-                message));
+    private void addDiagnostic(ParserRuleContext ctx, Code code, String message) {
+        final Token start = ctx.getStart();
+        final Token stop = ctx.getStop();
+        final int startIndex = start.getStartIndex();
+        final int endIndex = stop != null && stop.getStopIndex() >= startIndex ? stop.getStopIndex() + 1 : startIndex;
+        this.diagnostics.add(new NutDiagnostic(startIndex, endIndex, code, message));
     }
 
-    private static String trimStringDelimiters(String s) {
-        return s.replaceAll("^[\"']|[\"']$", "");
+    /**
+     * @return The text of the value without string delimiters.
+     */
+    private static String unquote(NutParser.ValueContext ctx) {
+        final String text = ctx.getText();
+        return NutValueDecoder.unquote(text, 0, text.length());
     }
 }
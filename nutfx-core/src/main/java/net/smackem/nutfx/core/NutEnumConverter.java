@@ -0,0 +1,77 @@
+package net.smackem.nutfx.core;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Converts constant names to enum constants through a precomputed hash map instead of calling {@code valueOf}
+ * reflectively. If lenient, names are also matched ignoring case and by unique prefix.
+ */
+final class NutEnumConverter<T> implements Function<String, T> {
+    private static final Object AMBIGUOUS = new Object();
+
+    private final Class<T> enumClass;
+    private final Map<String, T> byName;
+    private final TreeMap<String, Object> byLowerCaseName;
+
+    NutEnumConverter(Class<T> enumClass, boolean lenient) {
+        if (enumClass.isEnum() == false) {
+            throw new IllegalArgumentException("specified class '" + enumClass + "' is not an enum");
+        }
+        this.enumClass = enumClass;
+        final T[] constants = enumClass.getEnumConstants();
+        this.byName = new HashMap<>(constants.length * 2);
+        this.byLowerCaseName = lenient ? new TreeMap<>() : null;
+        for (final T constant : constants) {
+            final String name = ((Enum<?>) constant).name();
+            this.byName.put(name, constant);
+            if (lenient) {
+                // constants differing only in case cannot be told apart ignoring case
+                this.byLowerCaseName.merge(name.toLowerCase(Locale.ROOT), constant, (a, b) -> AMBIGUOUS);
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code name} does not denote a constant.
+     */
+    @Override
+    public T apply(String name) {
+        Objects.requireNonNull(name, "Name is null");
+        final T constant = this.byName.get(name);
+        if (constant != null) {
+            return constant;
+        }
+        if (this.byLowerCaseName != null) {
+            final T match = findLenient(name.toLowerCase(Locale.ROOT));
+            if (match != null) {
+                return match;
+            }
+        }
+        throw new IllegalArgumentException("No enum constant " + this.enumClass.getCanonicalName() + "." + name);
+    }
+
+    private T findLenient(String lowerCaseName) {
+        if (lowerCaseName.isEmpty()) {
+            return null;
+        }
+        final Object exact = this.byLowerCaseName.get(lowerCaseName);
+        if (exact != null) {
+            return exact != AMBIGUOUS ? this.enumClass.cast(exact) : null;
+        }
+        // names starting with the prefix are adjacent in the sorted map
+        final Map.Entry<String, Object> first = this.byLowerCaseName.ceilingEntry(lowerCaseName);
+        if (first == null || first.getKey().startsWith(lowerCaseName) == false || first.getValue() == AMBIGUOUS) {
+            return null;
+        }
+        final String next = this.byLowerCaseName.higherKey(first.getKey());
+        if (next != null && next.startsWith(lowerCaseName)) {
+            return null;
+        }
+        return this.enumClass.cast(first.getValue());
+    }
+}
@@ -0,0 +1,77 @@
+package net.smackem.nutfx.core;
+
+import javafx.application.Platform;
+
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The executors used by {@link NutInvocation#invokeAsync(Object)} and other asynchronous work of the
+ * input controls, e.g. filtering autocomplete entries.
+ */
+public final class NutExecution {
+    private static volatile Executor backgroundExecutor;
+    private static volatile Executor fxExecutor = Platform::runLater;
+
+    private NutExecution() {
+        throw new IllegalAccessError();
+    }
+
+    /**
+     * Gets the executor that runs {@link NutMethod#background() background} procs.
+     * <p>
+     * Default: an executor starting a virtual thread per task if the runtime supports virtual threads,
+     * otherwise a cached pool of daemon threads.
+     */
+    public static Executor backgroundExecutor() {
+        final Executor executor = backgroundExecutor;
+        return executor != null ? executor : DefaultBackgroundExecutor.INSTANCE;
+    }
+
+    /**
+     * see {@link #backgroundExecutor()}. Pass {@code null} to restore the default.
+     */
+    public static void setBackgroundExecutor(Executor executor) {
+        backgroundExecutor = executor;
+    }
+
+    /**
+     * Gets the executor that runs tasks on the JavaFX Application Thread.<br>
+     * Default: {@link Platform#runLater(Runnable)}
+     */
+    public static Executor fxExecutor() {
+        return fxExecutor;
+    }
+
+    /**
+     * see {@link #fxExecutor()}. Useful to run without a JavaFX toolkit, e.g. in tests.
+     */
+    public static void setFxExecutor(Executor executor) {
+        fxExecutor = Objects.requireNonNull(executor);
+    }
+
+    static boolean isFxThread() {
+        return Platform.isFxApplicationThread();
+    }
+
+    private static class DefaultBackgroundExecutor {
+        static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            try {
+                final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException | UnsupportedOperationException ignored) {
+                // no virtual threads in this runtime
+            }
+            return Executors.newCachedThreadPool(runnable -> {
+                final var thread = new Thread(runnable, "nut-background");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package net.smackem.nutfx.core;
+
+import net.smackem.nutfx.core.NutDiagnostic.Code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written scanner and recursive-descent parser for the Nut grammar ({@code Nut.g4}).
+ * <p>
+ * This is an optimistic fast path: it handles well-formed commands and produces exactly the
+ * {@link NutInvocation} the ANTLR-based {@link NutEmittingVisitor} would produce. Values rejected by their
+ * converters are reported as {@link NutDiagnostic}s, like the reference implementation does. For anything
+ * else - syntax errors, unknown commands or parameters, mismatched value types - it gives up by returning
+ * {@code null}, and the caller is expected to re-parse the source with the ANTLR reference implementation
+ * or a {@link NutParseSession}, which then reports the error.
+ * <p>
+ * Parsing and binding are separate passes, like with the reference implementation (tree first, then visitor):
+ * a converter is never called for a source that turns out to be syntactically invalid, and never twice.
+ */
+final class NutFastParser {
+    static final int IDENT = 1;
+    static final int INTEGER = 2;
+    static final int FLOAT = 3;
+    static final int STRING = 4;
+    static final int DASH = 5;
+    static final int EQUALS = 6;
+    static final int PIPE = 7;
+    static final int EOF = 8;
+
+    private static final int STAGE_SIZE = 4;
+    private static final ThreadLocal<NutFastParser> INSTANCES = ThreadLocal.withInitial(NutFastParser::new);
+
+    private String source;
+    private boolean busy;
+    private int[] kinds = new int[16];
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int tokenCount;
+
+    // parse results: per pipeline stage the token indices of the ident and the first named parameter,
+    // the number of positional parameters and the index of the token following the stage
+    private int[] stages = new int[STAGE_SIZE * 4];
+    private int stageCount;
+    private final List<NutDiagnostic> diagnostics = new ArrayList<>();
+
+    private NutFastParser() {
+    }
+
+    /**
+     * @param requireArguments Whether to report missing required arguments, like {@link NutParseSession}.
+     * @return The result, invalid if a value has been rejected, or {@code null} if {@code source} must be
+     *      parsed by the reference implementation.
+     */
+    static NutParseResult tryParse(String source, Map<String, NutProc> procs, boolean requireArguments) {
+        final NutFastParser parser = acquire(source);
+        try {
+            if (parser.scan() == false || parser.parse() == false) {
+                return null;
+            }
+            final NutInvocation invocation = parser.bind(procs, requireArguments);
+            return invocation != null ? parser.result(invocation) : null;
+        } finally {
+            parser.release();
+        }
+    }
+
+    /**
+     * Creates the result of a cached {@code invocation} of {@code source} without binding anything again,
+     * reporting missing required arguments.
+     *
+     * @return The result or {@code null} if {@code source} must be parsed by the reference implementation.
+     */
+    static NutParseResult resultOf(String source, NutInvocation invocation) {
+        final NutFastParser parser = acquire(source);
+        try {
+            if (parser.scan() == false || parser.parse() == false) {
+                return null;
+            }
+            NutInvocation stage = invocation;
+            for (int i = 0; i < parser.stageCount; i++) {
+                if (stage == null) {
+                    return null;
+                }
+                parser.checkRequired(stage, i);
+                stage = stage.next();
+            }
+            return stage == null ? parser.result(invocation) : null;
+        } finally {
+            parser.release();
+        }
+    }
+
+    /**
+     * @return {@code true} if {@code source} is syntactically valid. Binds nothing, e.g. to warm up.
+     */
+    static boolean isWellFormed(String source) {
+        final NutFastParser parser = acquire(source);
+        try {
+            return parser.scan() && parser.parse();
+        } finally {
+            parser.release();
+        }
+    }
+
+    private static NutFastParser acquire(String source) {
+        // the token buffers are reused per thread, unless parse is called from a converter while binding
+        NutFastParser parser = INSTANCES.get();
+        if (parser.busy) {
+            parser = new NutFastParser();
+        }
+        parser.busy = true;
+        parser.source = source;
+        parser.tokenCount = 0;
+        parser.stageCount = 0;
+        parser.diagnostics.clear();
+        return parser;
+    }
+
+    private void release() {
+        this.source = null;
+        this.busy = false;
+    }
+
+    /*
+     * scanner - mirrors the lexer rules of Nut.g4
+     */
+
+    private boolean scan() {
+        final String s = this.source;
+        final int length = s.length();
+        int pos = 0;
+        while (pos < length) {
+            final char ch = s.charAt(pos);
+            final int start = pos;
+            if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n') {
+                pos++;
+                continue;
+            }
+            if (ch == '/') {
+                if (pos + 1 >= length || s.charAt(pos + 1) != '/') {
+                    return false;
+                }
+                pos += 2;
+                while (pos < length && s.charAt(pos) != '\r' && s.charAt(pos) != '\n') {
+                    pos++;
+                }
+                continue;
+            }
+            final int kind;
+            if (isIdentStart(ch)) {
+                pos = scanIdent(s, pos, length);
+                kind = IDENT;
+            } else if (isDigit(ch)) {
+                pos++;
+                while (pos < length && isDigit(s.charAt(pos))) {
+                    pos++;
+                }
+                // Float is [0-9]+ '.' [0-9]+? - the non-greedy fraction matches exactly one digit
+                if (pos + 1 < length && s.charAt(pos) == '.' && isDigit(s.charAt(pos + 1))) {
+                    pos += 2;
+                    kind = FLOAT;
+                } else {
+                    kind = INTEGER;
+                }
+            } else if (ch == '"' || ch == '\'') {
+                final int close = s.indexOf(ch, pos + 1);
+                if (close < 0) {
+                    return false;
+                }
+                pos = close + 1;
+                kind = STRING;
+            } else if (ch == '-') {
+                pos++;
+                kind = DASH;
+            } else if (ch == '=') {
+                pos++;
+                kind = EQUALS;
+            } else if (ch == '|') {
+                pos++;
+                kind = PIPE;
+            } else {
+                return false;
+            }
+            addToken(kind, start, pos);
+        }
+        addToken(EOF, length, length);
+        return true;
+    }
+
+    private void addToken(int kind, int start, int end) {
+        if (this.tokenCount == this.kinds.length) {
+            final int capacity = this.tokenCount * 2;
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.ends = Arrays.copyOf(this.ends, capacity);
+        }
+        this.kinds[this.tokenCount] = kind;
+        this.starts[this.tokenCount] = start;
+        this.ends[this.tokenCount] = end;
+        this.tokenCount++;
+    }
+
+    static boolean isIdentStart(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '_';
+    }
+
+    static boolean isIdentPart(char ch) {
+        return isIdentStart(ch) || isDigit(ch) || ch == '-';
+    }
+
+    /**
+     * Identifiers consist of segments separated by single dots, like {@code robot.left.new}: a dot only
+     * belongs to the identifier if another segment follows.
+     *
+     * @return The end of the identifier starting at {@code pos}, which must be an {@link #isIdentStart(char)}.
+     */
+    static int scanIdent(String s, int pos, int length) {
+        pos++;
+        while (true) {
+            while (pos < length && isIdentPart(s.charAt(pos))) {
+                pos++;
+            }
+            if (pos + 1 < length && s.charAt(pos) == '.' && isIdentStart(s.charAt(pos + 1))) {
+                pos += 2;
+            } else {
+                return pos;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if {@code s} is a single identifier, e.g. a valid proc name or namespace.
+     */
+    static boolean isIdent(String s) {
+        return s.isEmpty() == false && isIdentStart(s.charAt(0)) && scanIdent(s, 0, s.length()) == s.length();
+    }
+
+    static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    /*
+     * parser - nutPipeline : nutProc ('|' nutProc)* EOF
+     *          nutProc : Ident positionalParameter* namedParameter*
+     */
+
+    private boolean parse() {
+        int index = 0;
+        while (true) {
+            if (this.kinds[index] != IDENT) {
+                return false;
+            }
+            final int identIndex = index;
+            index++;
+            while (isValue(this.kinds[index])) {
+                index++;
+            }
+            addStage(identIndex, index - identIndex - 1, index);
+            while (this.kinds[index] == DASH) {
+                index++;
+                if (this.kinds[index] != IDENT) {
+                    return false;
+                }
+                index++;
+                if (this.kinds[index] == EQUALS) {
+                    index++;
+                    if (isValue(this.kinds[index]) == false) {
+                        return false;
+                    }
+                    index++;
+                }
+            }
+            this.stages[(this.stageCount - 1) * STAGE_SIZE + 3] = index;
+            if (this.kinds[index] != PIPE) {
+                return this.kinds[index] == EOF;
+            }
+            index++;
+        }
+    }
+
+    private void addStage(int identIndex, int positionalCount, int namedStart) {
+        if (this.stageCount * STAGE_SIZE == this.stages.length) {
+            this.stages = Arrays.copyOf(this.stages, this.stages.length * 2);
+        }
+        this.stages[this.stageCount * STAGE_SIZE] = identIndex;
+        this.stages[this.stageCount * STAGE_SIZE + 1] = positionalCount;
+        this.stages[this.stageCount * STAGE_SIZE + 2] = namedStart;
+        this.stageCount++;
+    }
+
+    /**
+     * @return Per stage the start of its ident and the end of its last token.
+     */
+    private int[] stageBounds() {
+        final int[] bounds = new int[this.stageCount * 2];
+        for (int stage = 0; stage < this.stageCount; stage++) {
+            bounds[stage * 2] = this.starts[this.stages[stage * STAGE_SIZE]];
+            bounds[stage * 2 + 1] = this.ends[this.stages[stage * STAGE_SIZE + 3] - 1];
+        }
+        return bounds;
+    }
+
+    private NutParseResult result(NutInvocation invocation) {
+        return NutParseResult.of(invocation, stageBounds(), this.diagnostics);
+    }
+
+    static boolean isValue(int kind) {
+        return kind == STRING || kind == INTEGER || kind == FLOAT || kind == IDENT;
+    }
+
+    /*
+     * binder - mirrors NutEmittingVisitor
+     */
+
+    private NutInvocation bind(Map<String, NutProc> procs, boolean requireArguments) {
+        // check all stages before converting any value, so that no converter is called twice
+        final NutProc[] stageProcs = new NutProc[this.stageCount];
+        for (int stage = 0; stage < this.stageCount; stage++) {
+            final NutProc proc = procs.get(text(this.stages[stage * STAGE_SIZE]));
+            if (proc == null || isCompatible(proc, stage) == false) {
+                return null;
+            }
+            if (stage > 0 && (stageProcs[stage - 1].returnType() == void.class || proc.acceptsPipeInput() == false)) {
+                return null;
+            }
+            stageProcs[stage] = proc;
+        }
+        final NutMetrics metrics = NutMetrics.registered();
+        NutInvocation head = null;
+        NutInvocation previous = null;
+        for (int stage = 0; stage < this.stageCount; stage++) {
+            final NutInvocation invocation = metrics != null
+                    ? bindStage(stageProcs[stage], stage, metrics)
+                    : bindStage(stageProcs[stage], stage);
+            if (requireArguments) {
+                checkRequired(invocation, stage);
+            }
+            if (previous != null) {
+                previous.setNext(invocation);
+            } else {
+                head = invocation;
+            }
+            previous = invocation;
+        }
+        return head;
+    }
+
+    private boolean isCompatible(NutProc proc, int stage) {
+        final var parameters = proc.parameters();
+        final int identIndex = this.stages[stage * STAGE_SIZE];
+        final int positionalCount = this.stages[stage * STAGE_SIZE + 1];
+        if (positionalCount > parameters.size()) {
+            return false;
+        }
+        for (int i = 0; i < positionalCount; i++) {
+            if (isCompatible(parameters.get(i), identIndex + 1 + i) == false) {
+                return false;
+            }
+        }
+        for (int index = this.stages[stage * STAGE_SIZE + 2]; this.kinds[index] == DASH; index = nextNamed(index)) {
+            final int parameterIndex = findParameter(proc, index + 1);
+            if (parameterIndex < 0 || isCompatible(parameters.get(parameterIndex), valueIndex(index)) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private NutInvocation bindStage(NutProc proc, int stage, NutMetrics metrics) {
+        final long start = System.nanoTime();
+        final int diagnosticCount = this.diagnostics.size();
+        final NutInvocation invocation = bindStage(proc, stage);
+        metrics.record(NutMetrics.Phase.BIND, proc, System.nanoTime() - start,
+                this.diagnostics.size() > diagnosticCount);
+        return invocation;
+    }
+
+    private NutInvocation bindStage(NutProc proc, int stage) {
+        final var parameters = proc.parameters();
+        final int identIndex = this.stages[stage * STAGE_SIZE];
+        final int positionalCount = this.stages[stage * STAGE_SIZE + 1];
+        final var invocation = new NutInvocation(proc);
+        for (int i = 0; i < positionalCount; i++) {
+            bind(invocation, i, identIndex + 1 + i);
+        }
+        for (int index = this.stages[stage * STAGE_SIZE + 2]; this.kinds[index] == DASH; index = nextNamed(index)) {
+            bind(invocation, findParameter(proc, index + 1), valueIndex(index));
+        }
+        return invocation;
+    }
+
+    private void bind(NutInvocation invocation, int parameterIndex, int valueIndex) {
+        final NutProcParameter<?> parameter = invocation.proc().parameters().get(parameterIndex);
+        final Object value;
+        try {
+            value = convert(parameter, valueIndex);
+        } catch (RuntimeException e) {
+            // isCompatible has ruled out a missing value, so valueIndex is a token
+            this.diagnostics.add(new NutDiagnostic(this.starts[valueIndex], this.ends[valueIndex], Code.INVALID_VALUE,
+                    "invalid value for parameter %s: %s".formatted(parameter.name(), e.getMessage())));
+            return;
+        }
+        invocation.put(parameterIndex, value);
+    }
+
+    /**
+     * Reports the required parameters of {@code stage} that have no argument, like {@link NutParseSession}.
+     */
+    private void checkRequired(NutInvocation invocation, int stage) {
+        final NutProc proc = invocation.proc();
+        final Object[] slots = invocation.argumentSlots();
+        final int identIndex = this.stages[stage * STAGE_SIZE];
+        for (int i = 0; i < proc.parameters().size(); i++) {
+            final NutProcParameter<?> parameter = proc.parameters().get(i);
+            if (parameter.isOptional() == false
+                && parameter.type() != ParameterType.BOOLEAN
+                && slots[proc.bindingPlan().slot(i)] == null) {
+                this.diagnostics.add(new NutDiagnostic(this.starts[identIndex], this.ends[identIndex],
+                        Code.MISSING_ARGUMENT, "missing required parameter: " + parameter.name()));
+            }
+        }
+    }
+
+    /**
+     * @return the index of the value token of the named parameter starting at {@code dashIndex} or -1.
+     */
+    private int valueIndex(int dashIndex) {
+        return this.kinds[dashIndex + 2] == EQUALS ? dashIndex + 3 : -1;
+    }
+
+    private int nextNamed(int dashIndex) {
+        return this.kinds[dashIndex + 2] == EQUALS ? dashIndex + 4 : dashIndex + 2;
+    }
+
+    /**
+     * @return The index of the parameter named by the ident token at {@code identIndex} or -1.
+     */
+    private int findParameter(NutProc proc, int identIndex) {
+        return proc.bindingPlan().indexOf(this.source, this.starts[identIndex], this.ends[identIndex]);
+    }
+
+    /**
+     * @return {@code false} if the reference implementation would fail to convert the value
+     *      (with a {@link NullPointerException}, for a missing value or a token of the wrong kind).
+     */
+    private boolean isCompatible(NutProcParameter<?> parameter, int valueIndex) {
+        if (valueIndex < 0) {
+            return parameter.type() == ParameterType.BOOLEAN;
+        }
+        return switch (parameter.type()) {
+            case INTEGER -> this.kinds[valueIndex] == INTEGER;
+            case DOUBLE -> this.kinds[valueIndex] == FLOAT;
+            default -> true;
+        };
+    }
+
+    private Object convert(NutProcParameter<?> parameter, int valueIndex) {
+        return switch (parameter.type()) {
+            case STRING -> unquotedText(valueIndex);
+            case INTEGER -> NutValueDecoder.parseInt(this.source, this.starts[valueIndex], this.ends[valueIndex]);
+            case DOUBLE -> NutValueDecoder.parseDouble(this.source, this.starts[valueIndex], this.ends[valueIndex]);
+            case BOOLEAN -> valueIndex < 0
+                    || NutValueDecoder.parseBoolean(this.source, this.starts[valueIndex], this.ends[valueIndex]);
+            case ENUM, CUSTOM -> parameter.converter().apply(unquotedText(valueIndex));
+        };
+    }
+
+    private String text(int index) {
+        return this.source.substring(this.starts[index], this.ends[index]);
+    }
+
+    private String unquotedText(int index) {
+        return this.kinds[index] == STRING
+                ? this.source.substring(this.starts[index] + 1, this.ends[index] - 1)
+                : text(index);
+    }
+}
@@ -0,0 +1,263 @@
+package net.smackem.nutfx.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * Scores command names against an abbreviation typed by the user, e.g. {@code nr} for {@code newRobot}.
+ * <p>
+ * A name matches if it contains the characters of the query in order (case-insensitively). Among all ways to
+ * match, the best one is chosen by dynamic programming: matches at word boundaries (start of the name, after
+ * {@code -}, {@code _}, {@code .} or a blank, camelCase humps, the first digit of a number) and consecutive
+ * matches score higher, while skipped characters cost a little. Before scoring, names are rejected by
+ * comparing character bitmasks - a name can only match if it contains every character of the query.
+ * <p>
+ * A matcher is bound to one query and is not thread-safe, since it reuses its scoring buffers.
+ */
+public final class NutFuzzyMatcher {
+    /**
+     * The score of a name that does not match.
+     */
+    public static final int NO_MATCH = Integer.MIN_VALUE;
+
+    private static final int MATCH = 16;
+    private static final int BOUNDARY = 24;
+    private static final int FIRST_CHAR = 8;
+    private static final int CONSECUTIVE = 12;
+    private static final int SAME_CASE = 1;
+    private static final int GAP = 1;
+    private static final int NONE = Integer.MIN_VALUE / 2;
+
+    private static final Comparator<Scored> WORST_FIRST = Comparator
+            .comparingInt((Scored scored) -> scored.score)
+            .thenComparing((Scored scored) -> scored.proc.name(), Comparator.reverseOrder());
+
+    private final String query;
+    private final long queryMask;
+    private int[] matchRow = new int[32];
+    private int[] bestRow = new int[32];
+
+    public NutFuzzyMatcher(String query) {
+        this.query = Objects.requireNonNull(query);
+        this.queryMask = charMask(query);
+    }
+
+    public String query() {
+        return this.query;
+    }
+
+    /**
+     * @return The score of the proc's name or {@link #NO_MATCH}. Uses the bitmask precomputed by the proc.
+     */
+    public int score(NutProc proc) {
+        if ((proc.nameMask() & this.queryMask) != this.queryMask) {
+            return NO_MATCH;
+        }
+        return scoreCandidate(proc.name());
+    }
+
+    /**
+     * @return The score of {@code candidate} or {@link #NO_MATCH}. Higher scores are better matches.
+     */
+    public int score(CharSequence candidate) {
+        if ((charMask(candidate) & this.queryMask) != this.queryMask) {
+            return NO_MATCH;
+        }
+        return scoreCandidate(candidate);
+    }
+
+    /**
+     * @return The indices of the characters of {@code candidate} matched by the best match,
+     *      e.g. to highlight them, or {@code null} if {@code candidate} does not match.
+     */
+    public int[] matchPositions(CharSequence candidate) {
+        final int m = this.query.length();
+        final int n = candidate.length();
+        if (m == 0) {
+            return new int[0];
+        }
+        if (m > n || (charMask(candidate) & this.queryMask) != this.queryMask) {
+            return null;
+        }
+        final int[] match = new int[m * n];
+        final int[] best = new int[m * n];
+        for (int i = 0; i < m; i++) {
+            fillRow(candidate, i, match, best, (i - 1) * n, i * n, i > 0);
+        }
+        if (best[m * n - 1] <= NONE) {
+            return null;
+        }
+        // walk back from the end, finding the positions the best scores came from
+        final int[] positions = new int[m];
+        int j = n - 1;
+        boolean consecutive = false;
+        for (int i = m - 1; i >= 0; i--) {
+            final int row = i * n;
+            while (consecutive == false && match[row + j] != best[row + j]) {
+                j--;
+            }
+            positions[i] = j;
+            consecutive = i > 0 && j > 0
+                    && match[row - n + j - 1] > NONE
+                    && match[row + j] == match[row - n + j - 1] + CONSECUTIVE + charScore(candidate, i, j);
+            j--;
+        }
+        return positions;
+    }
+
+    /**
+     * @return The at most {@code limit} best matching procs, best first. Procs with equal scores are ordered
+     *      by name. Costs O(n log limit) for n procs.
+     */
+    public List<NutProc> top(Iterable<NutProc> procs, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        final var heap = new PriorityQueue<>(Math.min(limit, 64) + 1, WORST_FIRST);
+        for (final NutProc proc : procs) {
+            final int score = score(proc);
+            if (score == NO_MATCH) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(new Scored(proc, score));
+            } else {
+                final Scored worst = heap.peek();
+                if (score > worst.score || (score == worst.score && proc.name().compareTo(worst.proc.name()) < 0)) {
+                    heap.poll();
+                    heap.add(new Scored(proc, score));
+                }
+            }
+        }
+        final var result = new ArrayList<NutProc>(heap.size());
+        while (heap.isEmpty() == false) {
+            result.add(heap.poll().proc);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * @return A bitmask of the characters in {@code s}, ignoring case: one bit per letter and digit,
+     *      the other characters share the remaining bits.
+     */
+    public static long charMask(CharSequence s) {
+        long mask = 0;
+        for (int i = 0; i < s.length(); i++) {
+            mask |= 1L << charBit(Character.toLowerCase(s.charAt(i)));
+        }
+        return mask;
+    }
+
+    private static int charBit(char ch) {
+        if (ch >= 'a' && ch <= 'z') {
+            return ch - 'a';
+        }
+        if (ch >= '0' && ch <= '9') {
+            return 26 + ch - '0';
+        }
+        return 36 + ch % 28;
+    }
+
+    private int scoreCandidate(CharSequence candidate) {
+        final int m = this.query.length();
+        final int n = candidate.length();
+        if (m == 0) {
+            return 0;
+        }
+        if (m > n) {
+            return NO_MATCH;
+        }
+        if (this.matchRow.length < 2 * n) {
+            this.matchRow = new int[2 * n];
+            this.bestRow = new int[2 * n];
+        }
+        // two rows each, alternating between even and odd query indices
+        int previous = 0;
+        int current = n;
+        for (int i = 0; i < m; i++) {
+            fillRow(candidate, i, this.matchRow, this.bestRow, previous, current, i > 0);
+            final int tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+        final int score = this.bestRow[previous + n - 1];
+        return score > NONE ? score : NO_MATCH;
+    }
+
+    /**
+     * Computes row {@code i} of the score matrices into {@code match[current..]} and {@code best[current..]}
+     * from row {@code i - 1} at {@code match[previous..]} and {@code best[previous..]}.
+     * <ul>
+     *     <li>{@code match[j]}: the best score with query char {@code i} matched at candidate char {@code j}</li>
+     *     <li>{@code best[j]}: the best score with query char {@code i} matched at or before {@code j}</li>
+     * </ul>
+     */
+    private void fillRow(CharSequence candidate, int i, int[] match, int[] best, int previous, int current,
+                         boolean hasPrevious) {
+        final int n = candidate.length();
+        final char q = Character.toLowerCase(this.query.charAt(i));
+        int bestSoFar = NONE;
+        for (int j = 0; j < n; j++) {
+            int score = NONE;
+            if (Character.toLowerCase(candidate.charAt(j)) == q) {
+                final int charScore = charScore(candidate, i, j);
+                if (hasPrevious == false) {
+                    // leading gap costs like any other gap
+                    score = charScore - j * GAP;
+                } else if (j > 0) {
+                    final int afterGap = best[previous + j - 1];
+                    final int consecutive = match[previous + j - 1];
+                    if (afterGap > NONE) {
+                        score = afterGap + charScore;
+                    }
+                    if (consecutive > NONE) {
+                        score = Math.max(score, consecutive + CONSECUTIVE + charScore);
+                    }
+                }
+            }
+            match[current + j] = score;
+            bestSoFar = Math.max(score, bestSoFar > NONE ? bestSoFar - GAP : NONE);
+            best[current + j] = bestSoFar;
+        }
+    }
+
+    private int charScore(CharSequence candidate, int i, int j) {
+        int score = MATCH;
+        if (isBoundary(candidate, j)) {
+            score += BOUNDARY;
+        }
+        if (j == 0) {
+            score += FIRST_CHAR;
+        }
+        if (candidate.charAt(j) == this.query.charAt(i)) {
+            score += SAME_CASE;
+        }
+        return score;
+    }
+
+    private static boolean isBoundary(CharSequence s, int j) {
+        if (j == 0) {
+            return true;
+        }
+        final char previous = s.charAt(j - 1);
+        final char ch = s.charAt(j);
+        return previous == '-' || previous == '_' || previous == '.' || previous == ' '
+               || (Character.isUpperCase(ch) && Character.isLowerCase(previous))
+               || (Character.isDigit(ch) && Character.isDigit(previous) == false);
+    }
+
+    private static final class Scored {
+        final NutProc proc;
+        final int score;
+
+        Scored(NutProc proc, int score) {
+            this.proc = proc;
+            this.score = score;
+        }
+    }
+}
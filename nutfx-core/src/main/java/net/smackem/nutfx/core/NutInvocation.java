@@ -1,51 +1,343 @@
 package net.smackem.nutfx.core;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Iterator;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public final class NutInvocation {
-    private final Map<String, Object> arguments = new HashMap<>();
+    /**
+     * The arguments, one slot per method parameter (see {@link NutBindingPlan}). The slot of the pipe input
+     * is always {@code null}, so that the array can be passed to the invoker as it is if there is no pipe input.
+     */
+    private final Object[] arguments;
     private final NutProc proc;
+    private NutInvocation next;
 
     NutInvocation(NutProc proc) {
         this.proc = proc;
-        this.proc.parameters().stream()
-                .filter(p -> p.type() == ParameterType.BOOLEAN && p.isOptional() == false)
-                .forEach(p -> put(p.name(), false));
-        this.proc.method().setAccessible(true);
+        this.arguments = proc.bindingPlan().newArguments();
+    }
+
+    /**
+     * Creates an invocation with already bound arguments, which must not be modified anymore.
+     */
+    NutInvocation(NutProc proc, Object[] arguments) {
+        this.proc = proc;
+        this.arguments = arguments;
     }
 
     NutProc proc() {
         return this.proc;
     }
 
-    public void invoke(Object controller) throws InvocationTargetException {
+    /**
+     * @return The argument slots, which must not be modified.
+     */
+    Object[] argumentSlots() {
+        return this.arguments;
+    }
+
+    /**
+     * Invokes the proc or, if this invocation is the head of a pipeline, all stages of the pipeline
+     * (see {@link NutPipeInput}). Intermediate results that are streams are passed on element by element,
+     * the elements of the last stage are collected into a list.
+     *
+     * @return The value returned by the (last) proc or {@code null} if it returns {@code void}.
+     */
+    public Object invoke(Object controller) throws InvocationTargetException {
+        Objects.requireNonNull(controller);
+        return invokeMetered(controller);
+    }
+
+    /**
+     * Invokes a proc (or pipeline) parsed by a {@link NutCommandRouter}, on the controllers its stages are
+     * bound to - see {@link #invoke(Object)}.
+     *
+     * @throws IllegalStateException if a stage is not bound to a controller.
+     */
+    public Object invoke() throws InvocationTargetException {
+        assertBound();
+        return invokeMetered(null);
+    }
+
+    private Object invokeMetered(Object controller) throws InvocationTargetException {
+        final NutMetrics metrics = NutMetrics.registered();
+        if (metrics == null) {
+            return invokeUnmetered(controller);
+        }
+        final long start = System.nanoTime();
+        final Object value;
+        try {
+            value = invokeUnmetered(controller);
+        } catch (InvocationTargetException | RuntimeException e) {
+            metrics.record(NutMetrics.Phase.INVOKE, this.proc, System.nanoTime() - start, true);
+            throw e;
+        }
+        metrics.record(NutMetrics.Phase.INVOKE, this.proc, System.nanoTime() - start, false);
+        return value;
+    }
+
+    private Object invokeUnmetered(Object controller) throws InvocationTargetException {
+        try {
+            Object value = invokeStage(controller, null);
+            for (NutInvocation stage = this.next; stage != null; stage = stage.next) {
+                value = stage.feed(controller, value, stage.next == null);
+            }
+            return value;
+        } catch (PipelineException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Invokes the proc (or pipeline) asynchronously, on the thread its {@link NutMethod#background()} attribute
+     * asks for: background procs run on {@link NutExecution#backgroundExecutor()}, all others on the JavaFX
+     * Application Thread - directly if called from there. A pipeline runs in the background only if all of its
+     * stages are background procs.
+     *
+     * @return A future that is completed on the JavaFX Application Thread with the value returned by
+     *      {@link #invoke(Object)}, or exceptionally with the exception thrown by it - usually an
+     *      {@link InvocationTargetException}. The future also fails if the background executor rejects the proc.
+     */
+    public CompletableFuture<Object> invokeAsync(Object controller) {
+        return invokeAsync(controller, NutExecution.backgroundExecutor());
+    }
+
+    /**
+     * Same as {@link #invokeAsync(Object)}, but runs background procs on the given executor.
+     */
+    public CompletableFuture<Object> invokeAsync(Object controller, Executor backgroundExecutor) {
         Objects.requireNonNull(controller);
-        final Object[] args = new Object[this.proc.parameters().size()];
-        int index = 0;
-        for (final var parameter : this.proc.parameters()) {
-            final Object arg = this.arguments.get(parameter.name());
-            if (arg == null && parameter.isOptional() == false) {
-                throw new InvocationTargetException(
-                        new UnsupportedOperationException("NutMethod '%s': NutParam '%s' is required but has value null"
-                                .formatted(this.proc.name(), parameter.name())));
+        Objects.requireNonNull(backgroundExecutor);
+        return invokeAsyncOn(controller, backgroundExecutor);
+    }
+
+    /**
+     * Same as {@link #invokeAsync(Object)}, but invokes the stages on the controllers they are bound to
+     * - see {@link #invoke()}.
+     */
+    public CompletableFuture<Object> invokeAsync() {
+        assertBound();
+        return invokeAsyncOn(null, NutExecution.backgroundExecutor());
+    }
+
+    private CompletableFuture<Object> invokeAsyncOn(Object controller, Executor backgroundExecutor) {
+        final var future = new CompletableFuture<Object>();
+        final boolean background = isBackground();
+        if (background == false && NutExecution.isFxThread()) {
+            complete(future, controller);
+            return future;
+        }
+        final Executor fxExecutor = NutExecution.fxExecutor();
+        if (background == false) {
+            fxExecutor.execute(() -> complete(future, controller));
+            return future;
+        }
+        try {
+            backgroundExecutor.execute(() -> {
+                try {
+                    final Object result = invokeMetered(controller);
+                    fxExecutor.execute(() -> future.complete(result));
+                } catch (Throwable e) {
+                    fxExecutor.execute(() -> future.completeExceptionally(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fxExecutor.execute(() -> future.completeExceptionally(e));
+        }
+        return future;
+    }
+
+    private void complete(CompletableFuture<Object> future, Object controller) {
+        try {
+            future.complete(invokeMetered(controller));
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private void assertBound() {
+        for (NutInvocation stage = this; stage != null; stage = stage.next) {
+            if (stage.proc.controller() == null) {
+                throw new IllegalStateException("proc is not bound to a controller: " + stage.proc.name());
+            }
+        }
+    }
+
+    private boolean isBackground() {
+        for (NutInvocation stage = this; stage != null; stage = stage.next) {
+            if (stage.proc.isBackground() == false) {
+                return false;
             }
-            args[index++] = arg;
         }
+        return true;
+    }
+
+    /**
+     * Passes {@code input} to this stage - as a whole if the pipe input parameter accepts it, otherwise
+     * element by element.
+     *
+     * @throws InvocationTargetException also if a stream or iterator returned by a previous stage fails.
+     */
+    private Object feed(Object controller, Object input, boolean last) throws InvocationTargetException {
         try {
-            this.proc.method().invoke(controller, args);
-        } catch (IllegalAccessException ignored) {
-            // must never happen since ctor calls setAccessible()
+            return feedElements(controller, input, last);
+        } catch (PipelineException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new InvocationTargetException(e);
         }
     }
 
+    private Object feedElements(Object controller, Object input, boolean last) throws InvocationTargetException {
+        final Class<?> inputType = this.proc.pipeInputType();
+        final Stream<?> elements = input != null && inputType.isInstance(input) == false
+                ? streamOf(input)
+                : null;
+        if (elements == null) {
+            return input instanceof Stream<?>
+                    ? invokeStageWith(controller, (Stream<?>) input, input)
+                    : invokeStage(controller, input);
+        }
+        if (inputType.isAssignableFrom(Stream.class)) {
+            return invokeStageWith(controller, elements, elements);
+        }
+        if (inputType.isAssignableFrom(Iterator.class)) {
+            return invokeStageWith(controller, elements, elements.iterator());
+        }
+        final Stream<Object> results = elements.map(element -> invokeElement(controller, element));
+        if (last == false) {
+            return results;
+        }
+        try (results) {
+            if (this.proc.returnType() == void.class) {
+                results.forEach(ignored -> {});
+                return null;
+            }
+            return results.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Invokes this stage with {@code input}, which is {@code stream} or reads from it, and closes {@code stream}
+     * once the stage is done with it.
+     */
+    private Object invokeStageWith(Object controller, Stream<?> stream, Object input) throws InvocationTargetException {
+        final Object result;
+        try {
+            result = invokeStage(controller, input);
+        } catch (InvocationTargetException e) {
+            stream.close();
+            throw e;
+        }
+        if (result instanceof Stream<?>) {
+            // the result may draw from the input lazily, so the input is closed along with it
+            return result != stream ? ((Stream<?>) result).onClose(stream::close) : result;
+        }
+        if (result instanceof Iterator<?> == false) {
+            // an iterator may also draw from the input lazily, but nothing would ever close it
+            stream.close();
+        }
+        return result;
+    }
+
+    private Object invokeElement(Object controller, Object element) {
+        try {
+            return invokeStage(controller, element);
+        } catch (InvocationTargetException e) {
+            throw new PipelineException(e);
+        }
+    }
+
+    private Object invokeStage(Object controller, Object input) throws InvocationTargetException {
+        final int missing = this.proc.bindingPlan().findMissingArgument(this.arguments);
+        if (missing >= 0) {
+            throw new InvocationTargetException(
+                    new UnsupportedOperationException("NutMethod '%s': NutParam '%s' is required but has value null"
+                            .formatted(this.proc.name(), this.proc.parameters().get(missing).name())));
+        }
+        final int pipeInputIndex = this.proc.pipeInputIndex();
+        Object[] args = this.arguments;
+        if (pipeInputIndex >= 0) {
+            // the arguments are shared by all elements passing through and by cached invocations
+            args = args.clone();
+            args[pipeInputIndex] = input;
+        }
+        final Object target = this.proc.controller() != null ? this.proc.controller() : controller;
+        try {
+            return this.proc.invoker().invoke(target, args);
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    private static Stream<?> streamOf(Object value) {
+        if (value instanceof Stream<?>) {
+            return (Stream<?>) value;
+        }
+        if (value instanceof Iterator<?>) {
+            return StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize((Iterator<?>) value, Spliterator.ORDERED), false);
+        }
+        if (value instanceof Iterable<?>) {
+            return StreamSupport.stream(((Iterable<?>) value).spliterator(), false);
+        }
+        return null;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the proc has no parameter of that name.
+     */
     void put(String name, Object value) {
-        this.arguments.put(name, value);
+        final int index = this.proc.bindingPlan().indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("unknown parameter: " + name);
+        }
+        put(index, value);
+    }
+
+    /**
+     * Binds the argument of the parameter with the given index in {@link NutProc#parameters()}.
+     */
+    void put(int parameterIndex, Object value) {
+        this.arguments[this.proc.bindingPlan().slot(parameterIndex)] = value;
     }
 
     Object get(String name) {
-        return this.arguments.get(name);
+        final int index = this.proc.bindingPlan().indexOf(name);
+        return index >= 0 ? this.arguments[this.proc.bindingPlan().slot(index)] : null;
+    }
+
+    /**
+     * @return The next stage of the pipeline or {@code null} if this is the last stage.
+     */
+    NutInvocation next() {
+        return this.next;
+    }
+
+    void setNext(NutInvocation next) {
+        this.next = next;
+    }
+
+    /**
+     * Carries an {@link InvocationTargetException} out of a stream pipeline.
+     */
+    private static final class PipelineException extends RuntimeException {
+        PipelineException(InvocationTargetException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized InvocationTargetException getCause() {
+            return (InvocationTargetException) super.getCause();
+        }
     }
 }
@@ -0,0 +1,159 @@
+package net.smackem.nutfx.core;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Objects;
+
+/**
+ * Calls the controller method behind a {@link NutProc}.
+ * An invoker is created once per proc and shared by all invocations (and aliases) of that proc,
+ * so implementations must be stateless.
+ */
+@FunctionalInterface
+public interface NutInvoker {
+    /**
+     * Invokes the target method.
+     *
+     * @param controller The controller to invoke the method on. Ignored for static methods.
+     * @param args The arguments, one per method parameter, in declaration order.
+     * @return The value returned by the target method or {@code null} if it returns {@code void}.
+     * @throws Throwable Whatever the target method throws.
+     */
+    Object invoke(Object controller, Object[] args) throws Throwable;
+
+    /**
+     * Creates an invoker for the given method.
+     * <p>
+     * Instance {@code void} methods with up to four parameters get a class spun by the {@link LambdaMetafactory}
+     * that calls the method directly, which the JIT can inline like any other call.
+     * All other methods are called through a {@link MethodHandle} that is adapted once to the generic
+     * {@code (Object, Object[])Object} shape.
+     */
+    static NutInvoker fromMethod(Method method) {
+        Objects.requireNonNull(method);
+        final MethodHandles.Lookup lookup;
+        final MethodHandle handle;
+        try {
+            lookup = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup());
+            handle = lookup.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("controller method '" + method.getName() + "' is not accessible", e);
+        }
+        if (Modifier.isStatic(method.getModifiers()) == false && method.getReturnType() == void.class) {
+            final NutInvoker direct = directInvoker(lookup, handle, method.getParameterCount());
+            if (direct != null) {
+                return direct;
+            }
+        }
+        return spreadingInvoker(handle, method);
+    }
+
+    private static NutInvoker spreadingInvoker(MethodHandle handle, Method method) {
+        if (Modifier.isStatic(method.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        // asType lets void methods return null
+        final MethodHandle spreader = handle
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+        return (controller, args) -> {
+            return (Object) spreader.invokeExact(controller, args);
+        };
+    }
+
+    private static NutInvoker directInvoker(MethodHandles.Lookup lookup, MethodHandle handle, int parameterCount) {
+        final Class<?> directType;
+        switch (parameterCount) {
+            case 0 -> directType = Direct0.class;
+            case 1 -> directType = Direct1.class;
+            case 2 -> directType = Direct2.class;
+            case 3 -> directType = Direct3.class;
+            case 4 -> directType = Direct4.class;
+            default -> {
+                return null;
+            }
+        }
+        final Object direct;
+        try {
+            final CallSite site = LambdaMetafactory.metafactory(lookup,
+                    "invoke",
+                    MethodType.methodType(directType),
+                    MethodType.genericMethodType(parameterCount + 1).changeReturnType(void.class),
+                    handle,
+                    handle.type().wrap().changeReturnType(void.class));
+            direct = site.getTarget().invoke();
+        } catch (LambdaConversionException e) {
+            return null;
+        } catch (Throwable e) {
+            throw new IllegalStateException("could not create invoker", e);
+        }
+        return switch (parameterCount) {
+            case 0 -> {
+                final Direct0 d = (Direct0) direct;
+                yield (controller, args) -> {
+                    d.invoke(controller);
+                    return null;
+                };
+            }
+            case 1 -> {
+                final Direct1 d = (Direct1) direct;
+                yield (controller, args) -> {
+                    d.invoke(controller, args[0]);
+                    return null;
+                };
+            }
+            case 2 -> {
+                final Direct2 d = (Direct2) direct;
+                yield (controller, args) -> {
+                    d.invoke(controller, args[0], args[1]);
+                    return null;
+                };
+            }
+            case 3 -> {
+                final Direct3 d = (Direct3) direct;
+                yield (controller, args) -> {
+                    d.invoke(controller, args[0], args[1], args[2]);
+                    return null;
+                };
+            }
+            default -> {
+                final Direct4 d = (Direct4) direct;
+                yield (controller, args) -> {
+                    d.invoke(controller, args[0], args[1], args[2], args[3]);
+                    return null;
+                };
+            }
+        };
+    }
+
+    /*
+     * Target shapes for the LambdaMetafactory. They have to be public since the spun classes
+     * are defined in the controller's package.
+     */
+
+    interface Direct0 {
+        void invoke(Object controller) throws Throwable;
+    }
+
+    interface Direct1 {
+        void invoke(Object controller, Object a0) throws Throwable;
+    }
+
+    interface Direct2 {
+        void invoke(Object controller, Object a0, Object a1) throws Throwable;
+    }
+
+    interface Direct3 {
+        void invoke(Object controller, Object a0, Object a1, Object a2) throws Throwable;
+    }
+
+    interface Direct4 {
+        void invoke(Object controller, Object a0, Object a1, Object a2, Object a3) throws Throwable;
+    }
+}
@@ -0,0 +1,121 @@
+package net.smackem.nutfx.core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies with power-of-two buckets: bucket {@code i > 0} counts the latencies
+ * of {@code 2^(i-1)} to {@code 2^i - 1} nanoseconds, bucket {@code 0} the latencies of 0 nanoseconds.
+ * <p>
+ * Recording is lock-free and scales with concurrent threads, since all counters are {@link LongAdder}s.
+ * The histogram can be read while recording goes on - the values then are not an atomic snapshot,
+ * but each of them is accurate up to the measurements recorded concurrently.
+ */
+public final class NutLatencyHistogram {
+    public static final int BUCKET_COUNT = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    public NutLatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos, boolean failed) {
+        final long value = Math.max(nanos, 0);
+        this.buckets[bucketIndex(value)].increment();
+        this.count.increment();
+        this.totalNanos.add(value);
+        if (failed) {
+            this.errorCount.increment();
+        }
+    }
+
+    public long count() {
+        return this.count.sum();
+    }
+
+    public long errorCount() {
+        return this.errorCount.sum();
+    }
+
+    public long totalNanos() {
+        return this.totalNanos.sum();
+    }
+
+    /**
+     * @return The mean latency in nanoseconds or {@code 0} if nothing has been recorded.
+     */
+    public double meanNanos() {
+        final long count = count();
+        return count > 0 ? (double) totalNanos() / count : 0;
+    }
+
+    /**
+     * @return The number of latencies recorded per bucket.
+     */
+    public long[] bucketCounts() {
+        final long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = this.buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return An upper bound of the given percentile of the latencies in nanoseconds (at most twice the exact
+     *      value) or {@code 0} if nothing has been recorded.
+     */
+    public long percentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        final long[] counts = bucketCounts();
+        long total = 0;
+        for (final long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(BUCKET_COUNT - 1);
+    }
+
+    /**
+     * @return The largest latency in nanoseconds counted by the bucket with the given index.
+     */
+    public static long bucketUpperBound(int bucketIndex) {
+        return bucketIndex >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucketIndex) - 1;
+    }
+
+    void reset() {
+        for (final LongAdder bucket : this.buckets) {
+            bucket.reset();
+        }
+        this.count.reset();
+        this.errorCount.reset();
+        this.totalNanos.reset();
+    }
+
+    private static int bucketIndex(long nanos) {
+        return Long.SIZE - Long.numberOfLeadingZeros(nanos);
+    }
+
+    @Override
+    public String toString() {
+        return "count=%d, errors=%d, mean=%.0fns, p50<=%dns, p99<=%dns".formatted(
+                count(), errorCount(), meanNanos(), percentileNanos(50), percentileNanos(99));
+    }
+}
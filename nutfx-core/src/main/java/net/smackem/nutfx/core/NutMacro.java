@@ -0,0 +1,143 @@
+package net.smackem.nutfx.core;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * A named sequence of invocations recorded by a {@link NutMacroRecorder}.
+ * <p>
+ * A macro holds the resolved procs and their bound arguments, not the source text: replaying it neither
+ * parses nor converts anything, but calls the invoker of each proc with the recorded arguments. Only pipelines
+ * are replayed through {@link NutInvocation#invoke(Object)}, since their stages depend on each other.
+ * <p>
+ * Macros are immutable. A macro can be defined as a proc without parameters that is invoked like any other
+ * proc - see {@link NutProcParser#defineMacro(NutMacro)}.
+ */
+public final class NutMacro {
+    private static final Method MACRO_METHOD;
+
+    static {
+        try {
+            MACRO_METHOD = NutMacro.class.getDeclaredMethod("macro");
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String name;
+    private final NutInvocation[] invocations;
+    private final NutProc[] procs;
+    private final Object[][] arguments;
+    private final NutProc proc;
+
+    NutMacro(String name, List<NutInvocation> invocations) {
+        this.name = name;
+        this.invocations = invocations.toArray(new NutInvocation[0]);
+        this.procs = new NutProc[this.invocations.length];
+        this.arguments = new Object[this.invocations.length][];
+        boolean background = true;
+        boolean bound = true;
+        for (int i = 0; i < this.invocations.length; i++) {
+            final NutInvocation invocation = this.invocations[i];
+            // single stages are invoked directly, pipelines through the invocation
+            if (invocation.next() == null) {
+                this.procs[i] = invocation.proc();
+                this.arguments[i] = invocation.argumentSlots();
+            }
+            for (NutInvocation stage = invocation; stage != null; stage = stage.next()) {
+                background &= stage.proc().isBackground();
+                bound &= stage.proc().controller() != null;
+            }
+        }
+        final NutProc proc = NutProc.of(name, MACRO_METHOD, List.of(), this::invoke, background, -1);
+        // a macro of bound procs needs no controller, see NutInvocation#invoke()
+        this.proc = bound ? proc.bind(name, this) : proc;
+    }
+
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * @return The number of recorded invocations.
+     */
+    public int size() {
+        return this.invocations.length;
+    }
+
+    /**
+     * @return The proc that replays this macro, named like the macro.
+     */
+    public NutProc proc() {
+        return this.proc;
+    }
+
+    /**
+     * Replays the recorded invocations in order, stopping at the first one that fails. Procs bound to a
+     * controller (see {@link NutCommandRouter}) are invoked on that controller, all others on {@code controller}.
+     *
+     * @param controller The controller to invoke unbound procs on, may be {@code null} if all procs are bound.
+     * @return The value returned by the last invocation.
+     */
+    public Object replay(Object controller) throws InvocationTargetException {
+        Object value = null;
+        for (int i = 0; i < this.invocations.length; i++) {
+            final NutProc proc = this.procs[i];
+            if (proc == null) {
+                final NutInvocation invocation = this.invocations[i];
+                value = controller != null ? invocation.invoke(controller) : invocation.invoke();
+                continue;
+            }
+            final Object target = proc.controller() != null ? proc.controller() : controller;
+            try {
+                value = proc.invoker().invoke(target, this.arguments[i]);
+            } catch (Throwable e) {
+                throw new InvocationTargetException(e);
+            }
+        }
+        return value;
+    }
+
+    private Object invoke(Object controller, Object[] args) throws Throwable {
+        try {
+            return replay(controller);
+        } catch (InvocationTargetException e) {
+            // the invocation of the macro proc wraps it again
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return {@code true} if one of the recorded procs, including the stages of pipelines, is bound to
+     *      {@code controller}.
+     */
+    boolean isBoundTo(Object controller) {
+        for (final NutInvocation invocation : this.invocations) {
+            for (NutInvocation stage = invocation; stage != null; stage = stage.next()) {
+                if (stage.proc().controller() == controller) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return {@code true} if {@code proc} replays a macro.
+     */
+    static boolean isMacro(NutProc proc) {
+        return proc.method().equals(MACRO_METHOD);
+    }
+
+    @Override
+    public String toString() {
+        return "%s (%d invocations)".formatted(this.name, this.invocations.length);
+    }
+
+    /**
+     * The method behind the procs of macros, which have no parameters.
+     */
+    private static void macro() {
+    }
+}
@@ -0,0 +1,89 @@
+package net.smackem.nutfx.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Records successful invocations into {@link NutMacro}s.
+ * <p>
+ * The owner of the command input passes each invocation to {@link #record(NutInvocation)} after it has
+ * been invoked successfully. While the recorder is {@link #isRecording() recording}, the invocation is kept
+ * as it is: parsed invocations are immutable, so recording copies neither procs nor arguments.
+ * <p>
+ * The recorder is thread-safe.
+ */
+public final class NutMacroRecorder {
+    private final List<NutInvocation> invocations = new ArrayList<>();
+    private boolean recording;
+
+    /**
+     * Starts recording, dropping the invocations recorded so far.
+     */
+    public synchronized void start() {
+        this.invocations.clear();
+        this.recording = true;
+    }
+
+    /**
+     * Stops recording without creating a macro.
+     */
+    public synchronized void cancel() {
+        this.invocations.clear();
+        this.recording = false;
+    }
+
+    /**
+     * Stops recording and creates a macro named {@code name} from the recorded invocations.
+     *
+     * @throws IllegalStateException if the recorder is not recording.
+     * @throws IllegalArgumentException if {@code name} is not a valid proc name.
+     */
+    public synchronized NutMacro stop(String name) {
+        Objects.requireNonNull(name);
+        if (this.recording == false) {
+            throw new IllegalStateException("recorder is not recording");
+        }
+        if (NutFastParser.isIdent(name) == false) {
+            throw new IllegalArgumentException("invalid macro name: " + name);
+        }
+        final var macro = new NutMacro(name, this.invocations);
+        this.invocations.clear();
+        this.recording = false;
+        return macro;
+    }
+
+    public synchronized boolean isRecording() {
+        return this.recording;
+    }
+
+    /**
+     * @return The number of invocations recorded since {@link #start()}.
+     */
+    public synchronized int size() {
+        return this.invocations.size();
+    }
+
+    /**
+     * Appends {@code invocation}, which must have been invoked successfully, to the macro being recorded.
+     * Does nothing if the recorder is not recording.
+     *
+     * @throws IllegalArgumentException if the invocation lacks a required argument.
+     */
+    public synchronized void record(NutInvocation invocation) {
+        Objects.requireNonNull(invocation);
+        if (this.recording == false) {
+            return;
+        }
+        // replaying skips the checks done by NutInvocation
+        for (NutInvocation stage = invocation; stage != null; stage = stage.next()) {
+            final NutProc proc = stage.proc();
+            final int missing = proc.bindingPlan().findMissingArgument(stage.argumentSlots());
+            if (missing >= 0) {
+                throw new IllegalArgumentException("NutMethod '%s': NutParam '%s' is required but has value null"
+                        .formatted(proc.name(), proc.parameters().get(missing).name()));
+            }
+        }
+        this.invocations.add(invocation);
+    }
+}
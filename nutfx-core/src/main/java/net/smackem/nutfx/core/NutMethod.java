@@ -6,4 +6,11 @@ import java.lang.annotation.RetentionPolicy;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface NutMethod {
     String value() default "";
+
+    /**
+     * Indicates whether the method may run on a background thread when invoked through
+     * {@link NutInvocation#invokeAsync(Object)}. By default, methods run on the JavaFX Application Thread.
+     * Background methods must not touch the scene graph.
+     */
+    boolean background() default false;
 }
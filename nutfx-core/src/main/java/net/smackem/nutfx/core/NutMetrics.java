@@ -0,0 +1,53 @@
+package net.smackem.nutfx.core;
+
+/**
+ * Receives measurements of parsing, binding and invoking {@link NutProc}s, e.g. to find slow commands.
+ * Register an implementation with {@link #register(NutMetrics)} - {@link NutMetricsRecorder} keeps
+ * latency histograms per proc.
+ * <p>
+ * Implementations are called on the threads that parse and invoke, so they must be thread-safe and fast.
+ * While no metrics are registered, nothing is measured: the cost is a single volatile read per parse
+ * and invocation.
+ */
+public interface NutMetrics {
+    enum Phase {
+        /**
+         * A call of {@link NutProcParser#parse(String)}, including {@link #BIND}.
+         * The proc is the (first) proc of the command or {@code null} if parsing failed.
+         */
+        PARSE,
+        /**
+         * The conversion of the arguments of one proc, as part of {@link #PARSE}. Recorded if the command
+         * is parsed by the fast path, which is the case for all valid commands.
+         */
+        BIND,
+        /**
+         * A call of {@link NutInvocation#invoke(Object)}. A pipeline is recorded as a whole for its first proc.
+         */
+        INVOKE,
+    }
+
+    /**
+     * Records a measurement.
+     *
+     * @param phase the phase measured
+     * @param proc the proc or {@code null} if unknown, see {@link Phase}
+     * @param nanos the duration in nanoseconds
+     * @param failed {@code true} if the phase failed with an exception
+     */
+    void record(Phase phase, NutProc proc, long nanos, boolean failed);
+
+    /**
+     * Registers the metrics that receive all measurements from now on. Pass {@code null} to stop measuring.
+     */
+    static void register(NutMetrics metrics) {
+        NutMetricsHolder.metrics = metrics;
+    }
+
+    /**
+     * @return The registered metrics or {@code null}.
+     */
+    static NutMetrics registered() {
+        return NutMetricsHolder.metrics;
+    }
+}
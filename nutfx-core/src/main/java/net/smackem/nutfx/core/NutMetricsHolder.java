@@ -0,0 +1,12 @@
+package net.smackem.nutfx.core;
+
+/**
+ * Holds the {@link NutMetrics#registered() registered metrics}, since interfaces cannot have mutable fields.
+ */
+final class NutMetricsHolder {
+    static volatile NutMetrics metrics;
+
+    private NutMetricsHolder() {
+        throw new IllegalAccessError();
+    }
+}
@@ -0,0 +1,108 @@
+package net.smackem.nutfx.core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link NutMetrics} that keep a {@link NutLatencyHistogram} per proc and {@link NutMetrics.Phase phase},
+ * which can be read at any time:
+ * <pre>
+ * final var recorder = new NutMetricsRecorder();
+ * NutMetrics.register(recorder);
+ * ...
+ * for (final var metrics : recorder.procMetrics()) {
+ *     log.info("{}: {}", metrics.procName(), metrics.histogram(NutMetrics.Phase.INVOKE));
+ * }
+ * </pre>
+ * Procs are identified by name, so the measurements of procs with the same name (e.g. of different
+ * controllers) are combined.
+ */
+public final class NutMetricsRecorder implements NutMetrics {
+    private final ConcurrentMap<String, ProcMetrics> procs = new ConcurrentHashMap<>();
+    private final ProcMetrics unresolved = new ProcMetrics(null);
+
+    @Override
+    public void record(Phase phase, NutProc proc, long nanos, boolean failed) {
+        final ProcMetrics metrics;
+        if (proc == null) {
+            metrics = this.unresolved;
+        } else {
+            final ProcMetrics existing = this.procs.get(proc.name());
+            metrics = existing != null
+                    ? existing
+                    : this.procs.computeIfAbsent(proc.name(), ProcMetrics::new);
+        }
+        metrics.histogram(phase).record(nanos, failed);
+    }
+
+    /**
+     * @return The metrics of all procs that have been recorded, ordered by name.
+     */
+    public List<ProcMetrics> procMetrics() {
+        final var result = new ArrayList<>(this.procs.values());
+        result.sort(Comparator.comparing(ProcMetrics::procName));
+        return result;
+    }
+
+    /**
+     * @return The metrics of the proc with the given name or {@code null} if none have been recorded.
+     */
+    public ProcMetrics procMetrics(String procName) {
+        return this.procs.get(procName);
+    }
+
+    /**
+     * @return The metrics recorded without a proc, i.e. of commands that failed to parse.
+     */
+    public ProcMetrics unresolvedMetrics() {
+        return this.unresolved;
+    }
+
+    /**
+     * Discards all measurements.
+     */
+    public void reset() {
+        this.procs.clear();
+        for (final Phase phase : Phase.values()) {
+            this.unresolved.histogram(phase).reset();
+        }
+    }
+
+    /**
+     * The histograms of one proc.
+     */
+    public static final class ProcMetrics {
+        private final String procName;
+        private final NutLatencyHistogram[] histograms = new NutLatencyHistogram[Phase.values().length];
+
+        private ProcMetrics(String procName) {
+            this.procName = procName;
+            for (int i = 0; i < this.histograms.length; i++) {
+                this.histograms[i] = new NutLatencyHistogram();
+            }
+        }
+
+        /**
+         * @return The name of the proc or {@code null} for the {@link #unresolvedMetrics() unresolved metrics}.
+         */
+        public String procName() {
+            return this.procName;
+        }
+
+        public NutLatencyHistogram histogram(Phase phase) {
+            return this.histograms[phase.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            final var sb = new StringBuilder(this.procName != null ? this.procName : "<unresolved>");
+            for (final Phase phase : Phase.values()) {
+                sb.append(' ').append(phase).append("={").append(histogram(phase)).append('}');
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -26,4 +26,18 @@ public @interface NutParam {
      * @return A class object
      */
     Class<?> converterClass() default void.class;
+
+    /**
+     * For enum parameters: if {@code true}, a value also matches the constant whose name equals it ignoring case
+     * or, failing that, the only constant whose name starts with it (ignoring case), e.g. {@code gr} for
+     * {@code GREEN}.
+     */
+    boolean lenient() default false;
+
+    /**
+     * For parameters converted by a {@link #converterClass() converter method}: the number of recently converted
+     * values to remember, so that repeated values are converted once. Only use this if the converter is a pure
+     * function and the converted values are immutable. {@code 0} disables caching.
+     */
+    int converterCacheSize() default 0;
 }
@@ -0,0 +1,85 @@
+package net.smackem.nutfx.core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of parse results, mapping command source text to the parsed proc and its
+ * converted arguments. See {@link NutProcParser#setParseCacheSize(int)}.
+ * <p>
+ * Cached arguments are shared by all invocations parsed from the same source, so values produced by
+ * custom converters should be immutable when the cache is enabled.
+ */
+public final class NutParseCache {
+    private final LruCache<String, Entry> cache;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    NutParseCache(int maxSize) {
+        this.cache = new LruCache<>(maxSize);
+    }
+
+    public int maxSize() {
+        return this.cache.maxSize();
+    }
+
+    public int size() {
+        return this.cache.size();
+    }
+
+    public long hitCount() {
+        return this.hitCount.sum();
+    }
+
+    public long missCount() {
+        return this.missCount.sum();
+    }
+
+    public void clear() {
+        this.cache.clear();
+    }
+
+    /**
+     * @return A new invocation bound to the cached arguments or {@code null} if {@code source} is not cached.
+     */
+    NutInvocation get(String source) {
+        final Entry entry = this.cache.get(source);
+        if (entry == null) {
+            this.missCount.increment();
+            return null;
+        }
+        this.hitCount.increment();
+        return entry.toInvocation();
+    }
+
+    void put(String source, NutInvocation invocation) {
+        this.cache.put(source, Entry.of(invocation));
+    }
+
+    /**
+     * A cached pipeline stage.
+     */
+    private static final class Entry {
+        final NutProc proc;
+        final Object[] arguments;
+        final Entry next;
+
+        Entry(NutProc proc, Object[] arguments, Entry next) {
+            this.proc = proc;
+            this.arguments = arguments;
+            this.next = next;
+        }
+
+        static Entry of(NutInvocation invocation) {
+            final Entry next = invocation.next() != null ? of(invocation.next()) : null;
+            return new Entry(invocation.proc(), invocation.argumentSlots(), next);
+        }
+
+        NutInvocation toInvocation() {
+            final var invocation = new NutInvocation(this.proc, this.arguments);
+            if (this.next != null) {
+                invocation.setNext(this.next.toInvocation());
+            }
+            return invocation;
+        }
+    }
+}
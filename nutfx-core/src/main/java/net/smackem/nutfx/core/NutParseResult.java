@@ -0,0 +1,173 @@
+package net.smackem.nutfx.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The possibly partial result of parsing command source text with a {@link NutParseSession} or
+ * {@link NutProcParser#tryParse(String)}: the recognized procs and the arguments that could be bound,
+ * plus a diagnostic for each error.
+ */
+public final class NutParseResult {
+    static final NutParseResult EMPTY = new NutParseResult(List.of(), List.of());
+
+    private final List<NutDiagnostic> diagnostics;
+    private final NutInvocation invocation;
+    private final int[] stageBounds;
+    private volatile List<Stage> stages;
+
+    NutParseResult(List<Stage> stages, List<NutDiagnostic> diagnostics) {
+        this.stages = Collections.unmodifiableList(stages);
+        this.diagnostics = Collections.unmodifiableList(diagnostics);
+        this.invocation = null;
+        this.stageBounds = null;
+    }
+
+    private NutParseResult(NutInvocation invocation, int[] stageBounds) {
+        this.diagnostics = List.of();
+        this.invocation = invocation;
+        this.stageBounds = stageBounds;
+    }
+
+    /**
+     * Creates the result of binding the stages of {@code invocation}, which span the characters given by
+     * {@code stageBounds} (start and end per stage). If there are no diagnostics, the invocation is returned
+     * by {@link #toInvocation()} as it is and the stages are derived from it when requested.
+     */
+    static NutParseResult of(NutInvocation invocation, int[] stageBounds, List<NutDiagnostic> diagnostics) {
+        if (diagnostics.isEmpty()) {
+            return new NutParseResult(invocation, stageBounds);
+        }
+        return new NutParseResult(stagesOf(invocation, stageBounds), new ArrayList<>(diagnostics));
+    }
+
+    /**
+     * @return The stages of the pipeline, a single stage for a simple command. Empty for blank source text.
+     */
+    public List<Stage> stages() {
+        List<Stage> stages = this.stages;
+        if (stages == null) {
+            // benign race: all threads compute equal lists, published safely by the volatile field
+            stages = Collections.unmodifiableList(stagesOf(this.invocation, this.stageBounds));
+            this.stages = stages;
+        }
+        return stages;
+    }
+
+    private static List<Stage> stagesOf(NutInvocation invocation, int[] stageBounds) {
+        final List<Stage> stages = new ArrayList<>();
+        int index = 0;
+        for (NutInvocation stage = invocation; stage != null; stage = stage.next(), index += 2) {
+            final NutProc proc = stage.proc();
+            final Object[] slots = stage.argumentSlots();
+            final Map<String, Object> arguments = new LinkedHashMap<>();
+            for (int i = 0; i < proc.parameters().size(); i++) {
+                final Object value = slots[proc.bindingPlan().slot(i)];
+                if (value != null) {
+                    arguments.put(proc.parameters().get(i).name(), value);
+                }
+            }
+            stages.add(new Stage(proc, arguments, stageBounds[index], stageBounds[index + 1]));
+        }
+        return stages;
+    }
+
+    public List<NutDiagnostic> diagnostics() {
+        return this.diagnostics;
+    }
+
+    /**
+     * @return {@code true} if the source text is a complete, invocable command.
+     */
+    public boolean isValid() {
+        return this.invocation != null || (this.stages.isEmpty() == false && this.diagnostics.isEmpty());
+    }
+
+    /**
+     * @return The proc of the first stage or {@code null} if it has not been recognized.
+     */
+    public NutProc proc() {
+        if (this.invocation != null) {
+            return this.invocation.proc();
+        }
+        return this.stages.isEmpty() ? null : this.stages.get(0).proc;
+    }
+
+    /**
+     * @return An invocation of the parsed command or {@code null} if the result is not {@link #isValid() valid}.
+     */
+    public NutInvocation toInvocation() {
+        if (isValid() == false) {
+            return null;
+        }
+        if (this.invocation != null) {
+            return this.invocation;
+        }
+        NutInvocation head = null;
+        NutInvocation previous = null;
+        for (final Stage stage : this.stages) {
+            final var invocation = new NutInvocation(stage.proc);
+            stage.arguments.forEach(invocation::put);
+            if (previous != null) {
+                previous.setNext(invocation);
+            } else {
+                head = invocation;
+            }
+            previous = invocation;
+        }
+        return head;
+    }
+
+    @Override
+    public String toString() {
+        return "NutParseResult{stages=" + stages() + ", diagnostics=" + this.diagnostics + '}';
+    }
+
+    /**
+     * One command of a pipeline.
+     */
+    public static final class Stage {
+        private final NutProc proc;
+        private final Map<String, Object> arguments;
+        private final int start;
+        private final int end;
+
+        Stage(NutProc proc, Map<String, Object> arguments, int start, int end) {
+            this.proc = proc;
+            this.arguments = Collections.unmodifiableMap(arguments);
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * @return The recognized proc or {@code null}.
+         */
+        public NutProc proc() {
+            return this.proc;
+        }
+
+        /**
+         * @return The arguments that have been bound successfully, by parameter name.
+         */
+        public Map<String, Object> arguments() {
+            return this.arguments;
+        }
+
+        public int start() {
+            return this.start;
+        }
+
+        public int end() {
+            return this.end;
+        }
+
+        @Override
+        public String toString() {
+            return "Stage{proc=" + (this.proc != null ? this.proc.name() : null) + ", arguments=" + this.arguments
+                   + ", start=" + this.start + ", end=" + this.end + '}';
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package net.smackem.nutfx.core;
+
+import net.smackem.nutfx.core.NutDiagnostic.Code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static net.smackem.nutfx.core.NutFastParser.*;
+
+/**
+ * Parses the text of an input field incrementally while it is being edited, e.g. to validate
+ * a command on each keystroke.
+ * <p>
+ * The session keeps the tokens of the previous text. On each edit, only the tokens around the edited
+ * region are scanned again: since the scanner carries no state from one token to the next, scanning stops
+ * as soon as a new token lines up with a previous token behind the edit, and the remaining tokens are
+ * shifted instead. Parsing and binding then run over the token list without building a tree and without
+ * throwing - the {@link NutParseResult} is partial and reports errors as {@link NutDiagnostic}s.
+ * <p>
+ * A session is not thread-safe. It is meant to be driven by the JavaFX Application Thread.
+ */
+public final class NutParseSession {
+    private static final int ERROR = 0;
+
+    private final NutProcParser parser;
+    private String text = "";
+    private NutParseResult result = NutParseResult.EMPTY;
+
+    // the tokens of the current text, not including EOF
+    private int[] kinds = new int[16];
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int tokenCount;
+
+    // the tokens behind the edit, saved while re-scanning
+    private int[] tailKinds = new int[16];
+    private int[] tailStarts = new int[16];
+    private int[] tailEnds = new int[16];
+
+    // the last token found by scanToken
+    private int scanKind;
+    private int scanStart;
+    private int scanEnd;
+    private int scannedTokenCount;
+
+    public NutParseSession(NutProcParser parser) {
+        this.parser = Objects.requireNonNull(parser);
+    }
+
+    /**
+     * @return The text parsed last.
+     */
+    public String text() {
+        return this.text;
+    }
+
+    /**
+     * @return The result of the last parse.
+     */
+    public NutParseResult result() {
+        return this.result;
+    }
+
+    /**
+     * Parses the given text, which is typically the previous text with one edit applied.
+     * The edited region is determined by comparing the texts.
+     */
+    public NutParseResult update(String text) {
+        Objects.requireNonNull(text);
+        final String old = this.text;
+        final int maxLength = Math.min(old.length(), text.length());
+        int prefix = 0;
+        while (prefix < maxLength && old.charAt(prefix) == text.charAt(prefix)) {
+            prefix++;
+        }
+        if (prefix == old.length() && prefix == text.length()) {
+            return this.result;
+        }
+        int suffix = 0;
+        while (suffix < maxLength - prefix
+               && old.charAt(old.length() - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) {
+            suffix++;
+        }
+        return apply(text, prefix, old.length() - suffix, text.length() - suffix);
+    }
+
+    /**
+     * Replaces the characters from {@code start} (inclusive) to {@code end} (exclusive) of the current text
+     * with {@code replacement} and parses the resulting text.
+     */
+    public NutParseResult edit(int start, int end, String replacement) {
+        Objects.requireNonNull(replacement);
+        if (start < 0 || end < start || end > this.text.length()) {
+            throw new IllegalArgumentException("invalid range %d-%d for text of length %d"
+                    .formatted(start, end, this.text.length()));
+        }
+        final String text = this.text.substring(0, start) + replacement + this.text.substring(end);
+        return apply(text, start, end, start + replacement.length());
+    }
+
+    /**
+     * @return The number of tokens scanned by the last update, for tests.
+     */
+    int scannedTokenCount() {
+        return this.scannedTokenCount;
+    }
+
+    private NutParseResult apply(String text, int editStart, int oldEditEnd, int newEditEnd) {
+        rescan(text, editStart, oldEditEnd, newEditEnd);
+        this.text = text;
+        this.result = parse();
+        return this.result;
+    }
+
+    /*
+     * incremental scanner - produces the same tokens as NutFastParser, plus ERROR tokens instead of giving up
+     */
+
+    private void rescan(String text, int editStart, int oldEditEnd, int newEditEnd) {
+        // keep the tokens in front of the edit. the scanner looks ahead up to two characters behind
+        // a token (an Integer followed by '.' and a digit is a Float), so keep only tokens ending before that.
+        int keep = 0;
+        while (keep < this.tokenCount && this.ends[keep] + 1 < editStart) {
+            keep++;
+        }
+        // save the tokens behind the edit
+        int tail = keep;
+        while (tail < this.tokenCount && this.starts[tail] < oldEditEnd) {
+            tail++;
+        }
+        final int tailCount = this.tokenCount - tail;
+        if (this.tailKinds.length < tailCount) {
+            this.tailKinds = new int[this.kinds.length];
+            this.tailStarts = new int[this.kinds.length];
+            this.tailEnds = new int[this.kinds.length];
+        }
+        System.arraycopy(this.kinds, tail, this.tailKinds, 0, tailCount);
+        System.arraycopy(this.starts, tail, this.tailStarts, 0, tailCount);
+        System.arraycopy(this.ends, tail, this.tailEnds, 0, tailCount);
+
+        final int delta = newEditEnd - oldEditEnd;
+        this.tokenCount = keep;
+        this.scannedTokenCount = 0;
+        int pos = keep > 0 ? this.ends[keep - 1] : 0;
+        int tailIndex = 0;
+        while (scanToken(text, pos)) {
+            while (tailIndex < tailCount && this.tailStarts[tailIndex] + delta < this.scanStart) {
+                tailIndex++;
+            }
+            if (tailIndex < tailCount && this.tailStarts[tailIndex] + delta == this.scanStart) {
+                // in sync with the previous tokens again
+                for (int i = tailIndex; i < tailCount; i++) {
+                    addToken(this.tailKinds[i], this.tailStarts[i] + delta, this.tailEnds[i] + delta);
+                }
+                return;
+            }
+            this.scannedTokenCount++;
+            addToken(this.scanKind, this.scanStart, this.scanEnd);
+            pos = this.scanEnd;
+        }
+    }
+
+    private void addToken(int kind, int start, int end) {
+        if (this.tokenCount == this.kinds.length) {
+            final int capacity = this.tokenCount * 2;
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.ends = Arrays.copyOf(this.ends, capacity);
+        }
+        this.kinds[this.tokenCount] = kind;
+        this.starts[this.tokenCount] = start;
+        this.ends[this.tokenCount] = end;
+        this.tokenCount++;
+    }
+
+    /**
+     * Scans the token at or behind {@code pos}, skipping whitespace and comments.
+     *
+     * @return {@code false} if there is no token left.
+     */
+    private boolean scanToken(String s, int pos) {
+        final int length = s.length();
+        while (pos < length) {
+            final char ch = s.charAt(pos);
+            if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n') {
+                pos++;
+            } else if (ch == '/' && pos + 1 < length && s.charAt(pos + 1) == '/') {
+                pos += 2;
+                while (pos < length && s.charAt(pos) != '\r' && s.charAt(pos) != '\n') {
+                    pos++;
+                }
+            } else {
+                break;
+            }
+        }
+        if (pos >= length) {
+            return false;
+        }
+        final char ch = s.charAt(pos);
+        this.scanStart = pos;
+        if (isIdentStart(ch)) {
+            pos = scanIdent(s, pos, length);
+            this.scanKind = IDENT;
+        } else if (isDigit(ch)) {
+            pos++;
+            while (pos < length && isDigit(s.charAt(pos))) {
+                pos++;
+            }
+            if (pos + 1 < length && s.charAt(pos) == '.' && isDigit(s.charAt(pos + 1))) {
+                pos += 2;
+                this.scanKind = FLOAT;
+            } else {
+                this.scanKind = INTEGER;
+            }
+        } else if (ch == '"' || ch == '\'') {
+            final int close = s.indexOf(ch, pos + 1);
+            pos = close >= 0 ? close + 1 : length;
+            this.scanKind = close >= 0 ? STRING : ERROR;
+        } else {
+            pos++;
+            this.scanKind = switch (ch) {
+                case '-' -> DASH;
+                case '=' -> EQUALS;
+                case '|' -> PIPE;
+                default -> ERROR;
+            };
+        }
+        this.scanEnd = pos;
+        return true;
+    }
+
+    /*
+     * error-tolerant parser and binder - mirrors NutEmittingVisitor
+     */
+
+    private NutParseResult parse() {
+        if (this.tokenCount == 0) {
+            return NutParseResult.EMPTY;
+        }
+        final var stages = new ArrayList<NutParseResult.Stage>();
+        final var diagnostics = new ArrayList<NutDiagnostic>();
+        int index = 0;
+        while (true) {
+            index = parseStage(index, stages, diagnostics);
+            if (kind(index) != PIPE) {
+                break;
+            }
+            index++;
+        }
+        return new NutParseResult(stages, diagnostics);
+    }
+
+    /**
+     * Parses the stage starting at token {@code index}.
+     *
+     * @return The index of the token behind the stage, either PIPE or EOF.
+     */
+    private int parseStage(int index, List<NutParseResult.Stage> stages, List<NutDiagnostic> diagnostics) {
+        final int stageStart = index;
+        final Map<String, Object> arguments = new LinkedHashMap<>();
+        NutProc proc = null;
+        if (kind(index) == IDENT) {
+            final String name = text(index);
+            proc = this.parser.nutProcs().get(name);
+            if (proc == null) {
+                diagnostics.add(diagnostic(index, Code.UNRECOGNIZED_COMMAND, "unrecognized command: " + name));
+            } else if (stages.isEmpty() == false) {
+                checkPipe(stages.get(stages.size() - 1).proc(), proc, index, diagnostics);
+            }
+            index++;
+        } else {
+            diagnostics.add(diagnostic(index, Code.SYNTAX_ERROR, "command expected"));
+        }
+        int positionalIndex = 0;
+        boolean named = false;
+        while (kind(index) != PIPE && kind(index) != EOF) {
+            final int kind = kind(index);
+            if (kind == DASH) {
+                named = true;
+                index = parseNamed(index, proc, arguments, diagnostics);
+            } else if (isValue(kind)) {
+                if (named) {
+                    diagnostics.add(diagnostic(index, Code.SYNTAX_ERROR, "positional parameter after named parameters"));
+                } else if (proc != null) {
+                    if (positionalIndex >= proc.parameters().size()) {
+                        diagnostics.add(diagnostic(index, Code.TOO_MANY_ARGUMENTS, "too many positional parameters"));
+                    } else {
+                        bind(proc.parameters().get(positionalIndex), index, index, arguments, diagnostics);
+                    }
+                }
+                positionalIndex++;
+                index++;
+            } else {
+                diagnostics.add(diagnostic(index, Code.SYNTAX_ERROR, kind == ERROR ? errorMessage(index) : "unexpected '" + text(index) + "'"));
+                index++;
+            }
+        }
+        if (proc != null) {
+            checkRequired(proc, stageStart, arguments, diagnostics);
+        }
+        final int start = stageStart < this.tokenCount ? this.starts[stageStart] : this.text.length();
+        final int end = index > stageStart ? this.ends[index - 1] : start;
+        stages.add(new NutParseResult.Stage(proc, arguments, start, end));
+        return index;
+    }
+
+    /**
+     * Parses {@code '-' Ident ('=' value)?} starting at the DASH token {@code index}.
+     *
+     * @return The index of the token behind the named parameter.
+     */
+    private int parseNamed(int index, NutProc proc, Map<String, Object> arguments, List<NutDiagnostic> diagnostics) {
+        final int dashIndex = index;
+        index++;
+        if (kind(index) != IDENT) {
+            diagnostics.add(diagnostic(dashIndex, Code.SYNTAX_ERROR, "parameter name expected"));
+            return index;
+        }
+        final int identIndex = index;
+        index++;
+        int valueIndex = -1;
+        if (kind(index) == EQUALS) {
+            index++;
+            if (isValue(kind(index)) == false) {
+                diagnostics.add(diagnostic(index - 1, Code.SYNTAX_ERROR, "value expected"));
+                return index;
+            }
+            valueIndex = index;
+            index++;
+        }
+        if (proc == null) {
+            return index;
+        }
+        final String name = text(identIndex);
+        final int parameterIndex = proc.bindingPlan().indexOf(name);
+        if (parameterIndex < 0) {
+            diagnostics.add(diagnostic(identIndex, Code.UNKNOWN_PARAMETER, "unknown parameter: " + name));
+        } else {
+            bind(proc.parameters().get(parameterIndex), identIndex, valueIndex, arguments, diagnostics);
+        }
+        return index;
+    }
+
+    private void bind(NutProcParameter<?> parameter, int nameIndex, int valueIndex, Map<String, Object> arguments,
+                      List<NutDiagnostic> diagnostics) {
+        if (valueIndex < 0) {
+            if (parameter.type() == ParameterType.BOOLEAN) {
+                arguments.put(parameter.name(), true);
+            } else {
+                diagnostics.add(diagnostic(nameIndex, Code.MISSING_ARGUMENT, "missing value for parameter: " + parameter.name()));
+            }
+            return;
+        }
+        final int kind = this.kinds[valueIndex];
+        final Object value;
+        try {
+            value = switch (parameter.type()) {
+                case STRING -> unquotedText(valueIndex);
+                case INTEGER -> kind == INTEGER
+                        ? (Object) NutValueDecoder.parseInt(this.text, this.starts[valueIndex], this.ends[valueIndex])
+                        : null;
+                case DOUBLE -> kind == FLOAT
+                        ? (Object) NutValueDecoder.parseDouble(this.text, this.starts[valueIndex], this.ends[valueIndex])
+                        : null;
+                case BOOLEAN -> NutValueDecoder.parseBoolean(this.text, this.starts[valueIndex], this.ends[valueIndex]);
+                case ENUM, CUSTOM -> parameter.converter().apply(unquotedText(valueIndex));
+            };
+        } catch (RuntimeException e) {
+            diagnostics.add(diagnostic(valueIndex, Code.INVALID_VALUE, "invalid value for parameter %s: %s"
+                    .formatted(parameter.name(), e.getMessage())));
+            return;
+        }
+        if (value == null) {
+            diagnostics.add(diagnostic(valueIndex, Code.INVALID_VALUE, "%s value expected for parameter: %s"
+                    .formatted(parameter.type() == ParameterType.INTEGER ? "integer" : "float", parameter.name())));
+            return;
+        }
+        arguments.put(parameter.name(), value);
+    }
+
+    private void checkPipe(NutProc previous, NutProc proc, int index, List<NutDiagnostic> diagnostics) {
+        if (previous != null && previous.returnType() == void.class) {
+            diagnostics.add(diagnostic(index, Code.INVALID_PIPE, "command produces no output to pipe: " + previous.name()));
+        }
+        if (proc.acceptsPipeInput() == false) {
+            diagnostics.add(diagnostic(index, Code.INVALID_PIPE, "command does not accept pipe input: " + proc.name()));
+        }
+    }
+
+    private void checkRequired(NutProc proc, int identIndex, Map<String, Object> arguments,
+                               List<NutDiagnostic> diagnostics) {
+        for (final NutProcParameter<?> parameter : proc.parameters()) {
+            if (parameter.isOptional() == false
+                && parameter.type() != ParameterType.BOOLEAN
+                && arguments.containsKey(parameter.name()) == false) {
+                diagnostics.add(diagnostic(identIndex, Code.MISSING_ARGUMENT, "missing required parameter: " + parameter.name()));
+            }
+        }
+    }
+
+    private String errorMessage(int index) {
+        final char ch = this.text.charAt(this.starts[index]);
+        return ch == '"' || ch == '\''
+                ? "unterminated string"
+                : "unexpected character '" + ch + "'";
+    }
+
+    private NutDiagnostic diagnostic(int index, Code code, String message) {
+        if (index >= this.tokenCount) {
+            return new NutDiagnostic(this.text.length(), this.text.length(), code, message);
+        }
+        return new NutDiagnostic(this.starts[index], this.ends[index], code, message);
+    }
+
+    private int kind(int index) {
+        return index < this.tokenCount ? this.kinds[index] : EOF;
+    }
+
+    private String text(int index) {
+        return this.text.substring(this.starts[index], this.ends[index]);
+    }
+
+    private String unquotedText(int index) {
+        return this.kinds[index] == STRING
+                ? this.text.substring(this.starts[index] + 1, this.ends[index] - 1)
+                : text(index);
+    }
+}
@@ -0,0 +1,20 @@
+package net.smackem.nutfx.core;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the parameter of a {@link NutMethod} that receives the output of the preceding stage
+ * of a pipeline like {@code list-files | grep -pattern=txt}.
+ * <p>
+ * If the preceding stage returns a {@link java.util.stream.Stream}, {@link java.util.Iterator} or
+ * {@link Iterable} and the parameter type is not a matching sequence type, the method is invoked once per element.
+ * A method may declare at most one pipe input. The parameter is not bound from the command text and needs no
+ * {@link NutParam} annotation.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface NutPipeInput {
+}
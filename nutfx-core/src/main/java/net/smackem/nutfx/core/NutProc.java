@@ -1,6 +1,8 @@
 package net.smackem.nutfx.core;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
@@ -10,21 +12,34 @@ import java.util.stream.Collectors;
 
 public final class NutProc implements Comparable<NutProc> {
     private static final Class<?>[] CONVERTER_METHOD_PARAMETER_TYPES = { String.class };
+    private static final MethodType CONVERTER_METHOD_TYPE = MethodType.methodType(Object.class, String.class);
 
     private final String name;
     private final List<NutProcParameter<?>> parameters;
     private final Method method;
+    private final NutInvoker invoker;
+    private final boolean background;
+    private final int pipeInputIndex;
+    private final long nameMask;
+    private final String displayString;
+    private final NutBindingPlan bindingPlan;
+    private final Object controller;
 
-    private NutProc(String name, List<NutProcParameter<?>> parameters, Method method) {
+    private NutProc(String name, List<NutProcParameter<?>> parameters, Method method, NutInvoker invoker,
+                    boolean background, int pipeInputIndex, Object controller) {
         this.name = name;
         this.parameters = Collections.unmodifiableList(parameters);
         this.method = method;
+        this.invoker = invoker;
+        this.background = background;
+        this.pipeInputIndex = pipeInputIndex;
+        this.nameMask = NutFuzzyMatcher.charMask(name);
+        this.displayString = formatDisplayString();
+        this.bindingPlan = new NutBindingPlan(this.parameters, pipeInputIndex);
+        this.controller = controller;
     }
 
     static NutProc fromMethod(Method method) {
-        if (method.getReturnType() != void.class) {
-            throw new IllegalArgumentException("controller method '" + method.getName() + "' does not return void");
-        }
         final var nutMethod = method.getDeclaredAnnotation(NutMethod.class);
         if (nutMethod == null) {
             throw new IllegalArgumentException("controller method '" + method.getName() + "' is not annotated with @NutMethod");
@@ -32,9 +47,46 @@ public final class NutProc implements Comparable<NutProc> {
         final var name = nutMethod.value().isBlank()
                 ? method.getName()
                 : nutMethod.value();
+        final int pipeInputIndex = findPipeInput(method);
         final var parameters = convertParameters(method.getParameters());
         assertParametersUnique(parameters, name);
-        return new NutProc(name, parameters, method);
+        return new NutProc(name, parameters, method, NutInvoker.fromMethod(method), nutMethod.background(),
+                pipeInputIndex, null);
+    }
+
+    /**
+     * Creates a proc from precomputed metadata, as done by generated {@link NutProcRegistry} classes.
+     *
+     * @param name The name of the proc.
+     * @param method The controller method the proc is bound to.
+     * @param parameters The parameters of the method, in declaration order, except for the pipe input.
+     * @param invoker The invoker to call the method with, or {@code null} to derive one from {@code method}.
+     * @param background See {@link NutMethod#background()}.
+     * @param pipeInputIndex The index of the method parameter annotated with {@link NutPipeInput} or -1.
+     */
+    public static NutProc of(String name, Method method, List<NutProcParameter<?>> parameters, NutInvoker invoker,
+                             boolean background, int pipeInputIndex) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(method);
+        Objects.requireNonNull(parameters);
+        if (parameters.size() + (pipeInputIndex >= 0 ? 1 : 0) != method.getParameterCount()) {
+            throw new IllegalArgumentException("parameters do not match method '" + method.getName() + "'");
+        }
+        return new NutProc(name, List.copyOf(parameters), method,
+                invoker != null ? invoker : NutInvoker.fromMethod(method),
+                background,
+                pipeInputIndex,
+                null);
+    }
+
+    /**
+     * Gets a converter function that calls the static {@code parse} or {@code valueOf} method of
+     * {@code converterClass} - see {@link NutParam#converterClass()}.
+     *
+     * @throws IllegalArgumentException if {@code converterClass} has no matching method.
+     */
+    public static Function<String, Object> converter(Class<?> converterClass, Class<?> paramType) {
+        return getConverter(converterClass, paramType);
     }
 
     NutProc alias(String name) {
@@ -42,7 +94,16 @@ public final class NutProc implements Comparable<NutProc> {
         if (name.isBlank()) {
             throw new IllegalArgumentException("name must not be blank!");
         }
-        return new NutProc(name, this.parameters, this.method);
+        return bind(name, this.controller);
+    }
+
+    /**
+     * @return A copy of this proc named {@code name} that is invoked on {@code controller},
+     *      regardless of the controller passed to {@link NutInvocation#invoke(Object)}.
+     */
+    NutProc bind(String name, Object controller) {
+        return new NutProc(name, this.parameters, this.method, this.invoker, this.background, this.pipeInputIndex,
+                controller);
     }
 
     public String name() {
@@ -57,8 +118,80 @@ public final class NutProc implements Comparable<NutProc> {
         return this.method;
     }
 
+    /**
+     * @return {@code true} if the proc may run on a background thread - see {@link NutMethod#background()}.
+     */
+    public boolean isBackground() {
+        return this.background;
+    }
+
+    /**
+     * @return The type of the value the proc produces, {@code void.class} if it produces nothing.
+     */
+    public Class<?> returnType() {
+        return this.method.getReturnType();
+    }
+
+    /**
+     * @return {@code true} if the proc can be used as the second or later stage of a pipeline
+     *      - see {@link NutPipeInput}.
+     */
+    public boolean acceptsPipeInput() {
+        return this.pipeInputIndex >= 0;
+    }
+
+    /**
+     * @return The type of the {@link NutPipeInput} parameter or {@code null} if there is none.
+     */
+    public Class<?> pipeInputType() {
+        return this.pipeInputIndex >= 0
+                ? this.method.getParameterTypes()[this.pipeInputIndex]
+                : null;
+    }
+
+    NutInvoker invoker() {
+        return this.invoker;
+    }
+
+    /**
+     * @return The controller the proc is bound to or {@code null} - see {@link NutCommandRouter}.
+     */
+    Object controller() {
+        return this.controller;
+    }
+
+    int pipeInputIndex() {
+        return this.pipeInputIndex;
+    }
+
+    /**
+     * @return The {@link NutFuzzyMatcher#charMask(CharSequence) character mask} of the name.
+     */
+    long nameMask() {
+        return this.nameMask;
+    }
+
+    NutBindingPlan bindingPlan() {
+        return this.bindingPlan;
+    }
+
+    private static int findPipeInput(Method method) {
+        final Parameter[] parameters = method.getParameters();
+        int index = -1;
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].isAnnotationPresent(NutPipeInput.class)) {
+                if (index >= 0) {
+                    throw new IllegalArgumentException("controller method '" + method.getName() + "' has more than one pipe input");
+                }
+                index = i;
+            }
+        }
+        return index;
+    }
+
     private static List<NutProcParameter<?>> convertParameters(Parameter[] parameters) {
         return Arrays.stream(parameters)
+                .filter(p -> p.isAnnotationPresent(NutPipeInput.class) == false)
                 .map(NutProc::convertParameter)
                 .collect(Collectors.toList());
     }
@@ -80,7 +213,9 @@ public final class NutProc implements Comparable<NutProc> {
         final Class<?> type = parameter.getType();
         final boolean optional = type.isPrimitive() == false && nutParam.isRequired() == false;
         if (nutParam.converterClass() != void.class) {
-            return NutProcParameter.custom(nutParam.value(), getConverter(nutParam.converterClass(), type), optional);
+            return withConverterCache(
+                    NutProcParameter.custom(nutParam.value(), getConverter(nutParam.converterClass(), type), optional),
+                    nutParam);
         }
         if (type == int.class || type == Integer.class) {
             return NutProcParameter.integer(nutParam.value(), optional);
@@ -101,7 +236,7 @@ public final class NutProc implements Comparable<NutProc> {
     }
 
     private static NutProcParameter<?> convertEnumParameter(Parameter parameter, NutParam nutParam, boolean optional) {
-        return NutProcParameter.enumeration(nutParam.value(), parameter.getType(), optional);
+        return NutProcParameter.enumeration(nutParam.value(), parameter.getType(), optional, nutParam.lenient());
     }
 
     private static NutProcParameter<?> convertCustomParameter(Parameter parameter, NutParam nutParam, boolean optional) {
@@ -111,24 +246,33 @@ public final class NutProc implements Comparable<NutProc> {
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("parameter '" + parameter.getName() + "' is of unsupported type");
         }
-        return NutProcParameter.custom(nutParam.value(), converter, optional);
+        return withConverterCache(NutProcParameter.custom(nutParam.value(), converter, optional), nutParam);
+    }
+
+    private static NutProcParameter<?> withConverterCache(NutProcParameter<?> parameter, NutParam nutParam) {
+        return nutParam.converterCacheSize() > 0
+                ? parameter.withConverterCache(nutParam.converterCacheSize())
+                : parameter;
     }
 
     private static Function<String, Object> getConverter(Class<?> converterClass, Class<?> paramType) throws IllegalArgumentException {
-        final Method method;
+        final MethodHandle handle;
         try {
-            method = findConverterMethod(converterClass, paramType);
-        } catch (NoSuchMethodException e) {
+            final Method method = findConverterMethod(converterClass, paramType);
+            method.setAccessible(true);
+            handle = MethodHandles.lookup().unreflect(method).asType(CONVERTER_METHOD_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
             throw new IllegalArgumentException(e);
         }
-        method.setAccessible(true);
-        return o -> invokeConvertMethod(method, o);
+        return s -> invokeConverter(handle, s);
     }
 
-    private static Object invokeConvertMethod(Method method, Object arg) {
+    private static Object invokeConverter(MethodHandle handle, String arg) {
         try {
-            return method.invoke(null, arg);
-        } catch (IllegalAccessException | InvocationTargetException e) {
+            return handle.invokeExact(arg);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
             throw new RuntimeException(e);
         }
     }
@@ -149,8 +293,15 @@ public final class NutProc implements Comparable<NutProc> {
         throw new NoSuchMethodException("not matching converter method found. must be 'public static PARAM_TYPE parse|valueOf (String)");
     }
 
+    /**
+     * @return The name and parameters, as shown in command completion. Precomputed, since procs are immutable.
+     */
     @Override
     public String toString() {
+        return this.displayString;
+    }
+
+    private String formatDisplayString() {
         final var sb = new StringBuilder();
         sb.append(this.name);
         if (this.parameters.isEmpty() == false) {
@@ -0,0 +1,53 @@
+package net.smackem.nutfx.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The immutable set of {@link NutProc}s declared by a controller class.
+ * There is exactly one catalog per class, computed on first use and shared by all
+ * {@link NutProcParser}s for controllers of that class.
+ */
+final class NutProcCatalog {
+    private static final ClassValue<NutProcCatalog> CATALOGS = new ClassValue<>() {
+        @Override
+        protected NutProcCatalog computeValue(Class<?> type) {
+            return new NutProcCatalog(collectProcs(type));
+        }
+    };
+
+    private final Map<String, NutProc> procMap;
+
+    private NutProcCatalog(List<NutProc> procs) {
+        this.procMap = Collections.unmodifiableMap(procs.stream()
+                .collect(Collectors.toMap(NutProc::name, proc -> proc)));
+    }
+
+    /**
+     * @throws IllegalStateException if the class declares more than one proc with the same name.
+     */
+    static NutProcCatalog forClass(Class<?> controllerClass) {
+        return CATALOGS.get(controllerClass);
+    }
+
+    Map<String, NutProc> procMap() {
+        return this.procMap;
+    }
+
+    /**
+     * Collects the procs of a class without caching, e.g. to measure the cost of a cold catalog.
+     */
+    static List<NutProc> collectProcs(Class<?> controllerClass) {
+        final NutProcRegistry registry = NutProcRegistry.forClass(controllerClass);
+        if (registry != null) {
+            return registry.nutProcs();
+        }
+        return Arrays.stream(controllerClass.getDeclaredMethods())
+                .filter(m -> m.isAnnotationPresent(NutMethod.class))
+                .map(NutProc::fromMethod)
+                .collect(Collectors.toList());
+    }
+}
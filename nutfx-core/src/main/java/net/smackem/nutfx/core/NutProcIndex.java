@@ -0,0 +1,336 @@
+package net.smackem.nutfx.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An index of {@link NutProc}s for command completion, answering prefix and substring queries by name
+ * without scanning all procs.
+ * <p>
+ * Prefix queries are range queries on the sorted names. Substring queries look up the n-grams
+ * (up to three characters) of the query in an inverted index and verify only the procs listed for the
+ * rarest n-gram. Both stop as soon as {@code limit} results have been found. Fuzzy queries rank the procs
+ * containing the rarest character of the query with a {@link NutFuzzyMatcher}.
+ * <p>
+ * Like a {@link TreeSet} of procs, the index contains at most one proc per name.
+ * The index is thread-safe and can be shared by multiple input controls.
+ */
+public final class NutProcIndex {
+    private static final int MAX_GRAM_LENGTH = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, NutProc> byName = new TreeMap<>();
+    private final TreeMap<String, TreeSet<NutProc>> byLowerCaseName = new TreeMap<>();
+    private final Map<Long, TreeSet<NutProc>> grams = new HashMap<>();
+
+    public NutProcIndex() {
+    }
+
+    public NutProcIndex(Collection<NutProc> procs) {
+        addAll(procs);
+    }
+
+    /**
+     * @return {@code true} if the proc has been added, {@code false} if there already is a proc of that name.
+     */
+    public boolean add(NutProc proc) {
+        Objects.requireNonNull(proc);
+        this.lock.writeLock().lock();
+        try {
+            return addLocked(proc);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public boolean addAll(Collection<NutProc> procs) {
+        boolean modified = false;
+        this.lock.writeLock().lock();
+        try {
+            for (final NutProc proc : procs) {
+                modified |= addLocked(Objects.requireNonNull(proc));
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        return modified;
+    }
+
+    /**
+     * Removes the proc with the name of the given proc.
+     *
+     * @return {@code true} if a proc has been removed.
+     */
+    public boolean remove(NutProc proc) {
+        Objects.requireNonNull(proc);
+        this.lock.writeLock().lock();
+        try {
+            final NutProc removed = this.byName.remove(proc.name());
+            if (removed == null) {
+                return false;
+            }
+            final String lowerCaseName = toLowerCase(removed.name());
+            removePosting(this.byLowerCaseName, lowerCaseName, removed);
+            forEachGram(lowerCaseName, key -> removePosting(this.grams, key, removed));
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        this.lock.writeLock().lock();
+        try {
+            this.byName.clear();
+            this.byLowerCaseName.clear();
+            this.grams.clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} if the index contains a proc with the name of the given proc.
+     */
+    public boolean contains(NutProc proc) {
+        this.lock.readLock().lock();
+        try {
+            return proc != null && this.byName.containsKey(proc.name());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.byName.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return A snapshot of all procs, ordered by name.
+     */
+    public List<NutProc> procs() {
+        this.lock.readLock().lock();
+        try {
+            return new ArrayList<>(this.byName.values());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return At most {@code limit} procs whose name starts with {@code prefix}.
+     */
+    public List<NutProc> searchPrefix(String prefix, boolean caseSensitive, int limit) {
+        Objects.requireNonNull(prefix);
+        final var result = new ArrayList<NutProc>();
+        this.lock.readLock().lock();
+        try {
+            collectPrefix(prefix, caseSensitive, limit, result);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * @return At most {@code limit} procs whose name contains {@code text}, ordered by name.
+     */
+    public List<NutProc> searchSubstring(String text, boolean caseSensitive, int limit) {
+        Objects.requireNonNull(text);
+        final var result = new ArrayList<NutProc>();
+        this.lock.readLock().lock();
+        try {
+            collectSubstring(text, caseSensitive, false, limit, result);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * @return At most {@code limit} procs whose name contains {@code text}:
+     *      the procs whose name starts with {@code text} first, then the others.
+     */
+    public List<NutProc> search(String text, boolean caseSensitive, int limit) {
+        Objects.requireNonNull(text);
+        final var result = new ArrayList<NutProc>();
+        this.lock.readLock().lock();
+        try {
+            collectPrefix(text, caseSensitive, limit, result);
+            collectSubstring(text, caseSensitive, true, limit, result);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * @return The at most {@code limit} procs matching the abbreviation {@code query} best,
+     *      see {@link NutFuzzyMatcher}.
+     */
+    public List<NutProc> searchFuzzy(String query, int limit) {
+        final var matcher = new NutFuzzyMatcher(query);
+        final String lowerCaseQuery = toLowerCase(query);
+        this.lock.readLock().lock();
+        try {
+            Collection<NutProc> candidates = this.byName.values();
+            for (int i = 0; i < lowerCaseQuery.length(); i++) {
+                final NavigableSet<NutProc> posting = this.grams.get(gramKey(lowerCaseQuery, i, 1));
+                if (posting == null) {
+                    return List.of();
+                }
+                if (posting.size() < candidates.size()) {
+                    candidates = posting;
+                }
+            }
+            return matcher.top(candidates, limit);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private boolean addLocked(NutProc proc) {
+        if (this.byName.putIfAbsent(proc.name(), proc) != null) {
+            return false;
+        }
+        final String lowerCaseName = toLowerCase(proc.name());
+        this.byLowerCaseName.computeIfAbsent(lowerCaseName, ignored -> new TreeSet<>()).add(proc);
+        forEachGram(lowerCaseName, key -> this.grams.computeIfAbsent(key, ignored -> new TreeSet<>()).add(proc));
+        return true;
+    }
+
+    private void collectPrefix(String prefix, boolean caseSensitive, int limit, List<NutProc> result) {
+        if (limit <= 0) {
+            return;
+        }
+        if (caseSensitive) {
+            for (final NutProc proc : this.byName.tailMap(prefix, true).values()) {
+                if (proc.name().startsWith(prefix) == false || result.size() >= limit) {
+                    return;
+                }
+                result.add(proc);
+            }
+            return;
+        }
+        final String lowerCasePrefix = toLowerCase(prefix);
+        for (final var entry : this.byLowerCaseName.tailMap(lowerCasePrefix, true).entrySet()) {
+            if (entry.getKey().startsWith(lowerCasePrefix) == false) {
+                return;
+            }
+            for (final NutProc proc : entry.getValue()) {
+                if (result.size() >= limit) {
+                    return;
+                }
+                result.add(proc);
+            }
+        }
+    }
+
+    private void collectSubstring(String text, boolean caseSensitive, boolean skipPrefixMatches, int limit,
+                                  List<NutProc> result) {
+        if (result.size() >= limit) {
+            return;
+        }
+        final Collection<NutProc> candidates = candidates(toLowerCase(text));
+        for (final NutProc proc : candidates) {
+            if (result.size() >= limit) {
+                return;
+            }
+            if (skipPrefixMatches && proc.name().regionMatches(caseSensitive == false, 0, text, 0, text.length())) {
+                continue;
+            }
+            if (contains(proc.name(), text, caseSensitive)) {
+                result.add(proc);
+            }
+        }
+    }
+
+    /**
+     * @return The procs listed for the rarest n-gram of {@code lowerCaseText}, a superset of the matches.
+     */
+    private Collection<NutProc> candidates(String lowerCaseText) {
+        if (lowerCaseText.isEmpty()) {
+            return this.byName.values();
+        }
+        if (lowerCaseText.length() <= MAX_GRAM_LENGTH) {
+            final NavigableSet<NutProc> posting = this.grams.get(gramKey(lowerCaseText, 0, lowerCaseText.length()));
+            return posting != null ? posting : List.of();
+        }
+        NavigableSet<NutProc> rarest = null;
+        for (int i = 0; i + MAX_GRAM_LENGTH <= lowerCaseText.length(); i++) {
+            final NavigableSet<NutProc> posting = this.grams.get(gramKey(lowerCaseText, i, MAX_GRAM_LENGTH));
+            if (posting == null) {
+                return List.of();
+            }
+            if (rarest == null || posting.size() < rarest.size()) {
+                rarest = posting;
+            }
+        }
+        return rarest;
+    }
+
+    private static boolean contains(String name, String text, boolean caseSensitive) {
+        if (caseSensitive) {
+            return name.contains(text);
+        }
+        for (int i = 0; i + text.length() <= name.length(); i++) {
+            if (name.regionMatches(true, i, text, 0, text.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void forEachGram(String lowerCaseName, GramConsumer consumer) {
+        for (int length = 1; length <= MAX_GRAM_LENGTH; length++) {
+            for (int i = 0; i + length <= lowerCaseName.length(); i++) {
+                consumer.accept(gramKey(lowerCaseName, i, length));
+            }
+        }
+    }
+
+    /**
+     * Packs up to three chars and the gram length into a long.
+     */
+    private static long gramKey(String s, int start, int length) {
+        long key = length;
+        for (int i = 0; i < length; i++) {
+            key = (key << 16) | s.charAt(start + i);
+        }
+        return key;
+    }
+
+    private static <K> void removePosting(Map<K, TreeSet<NutProc>> map, K key, NutProc proc) {
+        final TreeSet<NutProc> posting = map.get(key);
+        if (posting != null && posting.remove(proc) && posting.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    private static String toLowerCase(String s) {
+        final var sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            sb.append(Character.toLowerCase(s.charAt(i)));
+        }
+        return sb.toString();
+    }
+
+    @FunctionalInterface
+    private interface GramConsumer {
+        void accept(long key);
+    }
+}
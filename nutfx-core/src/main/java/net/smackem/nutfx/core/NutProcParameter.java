@@ -1,7 +1,5 @@
 package net.smackem.nutfx.core;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
@@ -43,52 +41,65 @@ public final class NutProcParameter<T> {
         return this.possibleValues;
     }
 
-    static NutProcParameter<String> string(String name, boolean optional) {
+    public static NutProcParameter<String> string(String name, boolean optional) {
         return new NutProcParameter<>(name, ParameterType.STRING, optional, null, null);
     }
 
-    static NutProcParameter<Integer> integer(String name, boolean optional) {
+    public static NutProcParameter<Integer> integer(String name, boolean optional) {
         return new NutProcParameter<>(name, ParameterType.INTEGER, optional, null, null);
     }
 
-    static NutProcParameter<Boolean> bool(String name, boolean optional) {
+    public static NutProcParameter<Boolean> bool(String name, boolean optional) {
         return new NutProcParameter<>(name, ParameterType.BOOLEAN, optional, null, null);
     }
 
-    static NutProcParameter<Double> float64(String name, boolean optional) {
+    public static NutProcParameter<Double> float64(String name, boolean optional) {
         return new NutProcParameter<>(name, ParameterType.DOUBLE, optional, null, null);
     }
 
-    static <T> NutProcParameter<T> enumeration(String name, Class<T> enumClass, boolean optional) {
-        if (enumClass.isEnum() == false) {
-            throw new IllegalArgumentException("specified class '" + enumClass + "' is not an enum");
-        }
-        final Method convertMethod;
-        try {
-            convertMethod = enumClass.getDeclaredMethod("valueOf", String.class);
-        } catch (NoSuchMethodException impossible) {
-            throw new RuntimeException("enum without valueOf");
-        }
+    public static <T> NutProcParameter<T> enumeration(String name, Class<T> enumClass, boolean optional) {
+        return enumeration(name, enumClass, optional, false);
+    }
+
+    /**
+     * @param lenient See {@link NutParam#lenient()}.
+     */
+    public static <T> NutProcParameter<T> enumeration(String name, Class<T> enumClass, boolean optional,
+                                                      boolean lenient) {
         return new NutProcParameter<>(
                 name,
                 ParameterType.ENUM,
                 optional,
-                s -> invokeConvertMethod(convertMethod, s),
+                new NutEnumConverter<>(enumClass, lenient),
                 List.of(enumClass.getEnumConstants()));
     }
 
-    static <T> NutProcParameter<T> custom(String name, Function<String, T> converter, boolean optional) {
+    public static <T> NutProcParameter<T> custom(String name, Function<String, T> converter, boolean optional) {
         Objects.requireNonNull(converter);
         return new NutProcParameter<>(name, ParameterType.CUSTOM, optional, converter, null);
     }
 
-    private static <T> T invokeConvertMethod(Method method, String arg) {
-        try {
-            //noinspection unchecked
-            return (T) method.invoke(null, arg);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            throw new RuntimeException(e);
+    /**
+     * @return A copy of this parameter whose converter remembers the last {@code maxSize} conversions
+     *      - see {@link NutParam#converterCacheSize()}.
+     * @throws IllegalArgumentException if this parameter has no converter or {@code maxSize} is not positive.
+     */
+    public NutProcParameter<T> withConverterCache(int maxSize) {
+        if (this.converter == null) {
+            throw new IllegalArgumentException("parameter '" + this.name + "' has no converter");
         }
+        final LruCache<String, T> cache = new LruCache<>(maxSize);
+        final Function<String, T> converter = this.converter;
+        return new NutProcParameter<>(this.name, this.type, this.optional, s -> {
+            T value = cache.get(s);
+            if (value == null) {
+                value = converter.apply(s);
+                if (value != null) {
+                    cache.put(s, value);
+                }
+            }
+            return value;
+        }, this.possibleValues);
     }
 
     @Override
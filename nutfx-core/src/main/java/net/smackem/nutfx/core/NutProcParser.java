@@ -1,32 +1,69 @@
 package net.smackem.nutfx.core;
 
-import net.smackem.nutfx.lang.NutLexer;
-import net.smackem.nutfx.lang.NutParser;
-import org.antlr.v4.runtime.BufferedTokenStream;
-import org.antlr.v4.runtime.CharStreams;
-
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Parses commands into {@link NutInvocation}s of the procs of a controller.
+ * <p>
+ * The parser is thread-safe: any number of threads may parse concurrently, also while aliases are created.
+ * Parsing does not lock, except for the parse cache if enabled. The parsing state is reused per thread.
+ */
 public class NutProcParser {
-    private final Map<String, NutProc> procMap;
+    private static final int MAX_WARM_UP_SOURCES = 64;
+
+    /**
+     * The shared catalog of the controller class until the first alias is created,
+     * then a private copy including the aliases. Replaced as a whole on change, so that concurrent parses
+     * always see a consistent map.
+     */
+    private volatile Map<String, NutProc> procMap;
+    private volatile NutParseCache parseCache;
 
     public NutProcParser(Object controller) {
         Objects.requireNonNull(controller);
-        this.procMap = Arrays.stream(controller.getClass().getDeclaredMethods())
-                .filter(m -> m.isAnnotationPresent(NutMethod.class))
-                .map(NutProc::fromMethod)
-                .collect(Collectors.toMap(NutProc::name, proc -> proc));
+        this.procMap = NutProcCatalog.forClass(controller.getClass()).procMap();
+        NutReferenceParser.warmUpInBackground();
+    }
+
+    /**
+     * Creates a parser for the given procs, which must be bound to their controllers - see {@link NutCommandRouter}.
+     */
+    NutProcParser(Map<String, NutProc> procMap) {
+        this.procMap = Objects.requireNonNull(procMap);
+        NutReferenceParser.warmUpInBackground();
     }
 
     public Map<String, NutProc> nutProcs() {
-        return Collections.unmodifiableMap(this.procMap);
+        return this.procMap;
     }
 
-    public NutProc createAlias(NutProc proc, String aliasName) {
+    /**
+     * Enables caching of parse results: parsing the same source again yields an invocation bound to the
+     * arguments converted for the first parse, without lexing, parsing or converting anything.
+     *
+     * @param maxSize The maximum number of cached sources, or {@code 0} to disable the cache (the default).
+     */
+    public void setParseCacheSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative");
+        }
+        this.parseCache = maxSize > 0 ? new NutParseCache(maxSize) : null;
+    }
+
+    /**
+     * @return The parse cache or {@code null} if caching is disabled.
+     */
+    public NutParseCache parseCache() {
+        return this.parseCache;
+    }
+
+    public synchronized NutProc createAlias(NutProc proc, String aliasName) {
         Objects.requireNonNull(proc);
         if (this.procMap.get(proc.name()) != proc) {
             throw new IllegalArgumentException("the given proc is not present in this parser's context!");
@@ -35,17 +72,179 @@ public class NutProcParser {
             throw new IllegalArgumentException("there already exists a proc with the given aliasName");
         }
         final NutProc alias = proc.alias(aliasName);
-        this.procMap.put(aliasName, alias);
+        final Map<String, NutProc> procMap = new HashMap<>(this.procMap);
+        procMap.put(aliasName, alias);
+        setProcMap(Collections.unmodifiableMap(procMap));
         return alias;
     }
 
+    /**
+     * Defines the {@link NutMacro#proc() proc} of {@code macro}, replacing a macro of the same name.
+     *
+     * @throws IllegalArgumentException if there is a proc of that name that is not a macro.
+     */
+    public synchronized NutProc defineMacro(NutMacro macro) {
+        Objects.requireNonNull(macro);
+        final NutProc existing = this.procMap.get(macro.name());
+        if (existing != null && NutMacro.isMacro(existing) == false) {
+            throw new IllegalArgumentException("there already exists a proc with the given name");
+        }
+        final Map<String, NutProc> procMap = new HashMap<>(this.procMap);
+        procMap.put(macro.name(), macro.proc());
+        setProcMap(Collections.unmodifiableMap(procMap));
+        return macro.proc();
+    }
+
+    /**
+     * Replaces the procs known to the parser and drops cached parse results, which may refer to replaced procs.
+     */
+    void setProcMap(Map<String, NutProc> procMap) {
+        this.procMap = procMap;
+        final NutParseCache parseCache = this.parseCache;
+        if (parseCache != null) {
+            parseCache.clear();
+        }
+    }
+
     public NutInvocation parse(String source) {
         Objects.requireNonNull(source);
-        final var lexer = new NutLexer(CharStreams.fromString(source));
-        final var tokens = new BufferedTokenStream(lexer);
-        final var parser = new NutParser(tokens);
-        final var emitter = new NutEmittingVisitor(this.procMap);
-        emitter.visitNutProc(parser.nutProc());
-        return emitter.invocation();
+        final NutMetrics metrics = NutMetrics.registered();
+        if (metrics == null) {
+            return parseUnmetered(source);
+        }
+        final long start = System.nanoTime();
+        final NutInvocation invocation;
+        try {
+            invocation = parseUnmetered(source);
+        } catch (RuntimeException e) {
+            metrics.record(NutMetrics.Phase.PARSE, null, System.nanoTime() - start, true);
+            throw e;
+        }
+        metrics.record(NutMetrics.Phase.PARSE, invocation != null ? invocation.proc() : null,
+                System.nanoTime() - start, invocation == null);
+        return invocation;
+    }
+
+    /**
+     * Parses {@code source} without throwing on invalid input: the result reports all errors as
+     * {@link NutDiagnostic}s instead, e.g. to validate input or to check scripts in bulk. Valid commands are
+     * parsed as fast as by {@link #parse(String)}. Invalid commands are parsed by the error-tolerant parser of
+     * {@link NutParseSession}, which creates no exceptions - only the converters of parameters may throw,
+     * which is reported as an invalid value.
+     * <p>
+     * Unlike {@link #parse(String)}, a result is only {@link NutParseResult#isValid() valid} if all required
+     * arguments are present.
+     */
+    public NutParseResult tryParse(String source) {
+        Objects.requireNonNull(source);
+        final NutMetrics metrics = NutMetrics.registered();
+        final long start = metrics != null ? System.nanoTime() : 0;
+        final NutParseResult result = tryParseUnmetered(source);
+        if (metrics != null) {
+            metrics.record(NutMetrics.Phase.PARSE, result.proc(), System.nanoTime() - start,
+                    result.isValid() == false);
+        }
+        return result;
+    }
+
+    private NutParseResult tryParseUnmetered(String source) {
+        final NutParseCache parseCache = this.parseCache;
+        final NutInvocation cached = parseCache != null ? parseCache.get(source) : null;
+        NutParseResult result = cached != null ? NutFastParser.resultOf(source, cached) : null;
+        if (result == null) {
+            result = NutFastParser.tryParse(source, this.procMap, true);
+        }
+        // the fast parser has reported rejected values, so only sources it cannot handle are parsed again
+        return result != null ? result : new NutParseSession(this).update(source);
+    }
+
+    private NutInvocation parseUnmetered(String source) {
+        final NutParseCache parseCache = this.parseCache;
+        if (parseCache != null) {
+            final NutInvocation cached = parseCache.get(source);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final Map<String, NutProc> procMap = this.procMap;
+        final NutParseResult result = NutFastParser.tryParse(source, procMap, false);
+        if (result != null && result.isValid() == false) {
+            // a value has been rejected: report it without calling the converters again
+            throw new IllegalArgumentException(NutDiagnostic.describe(source, result.diagnostics()));
+        }
+        final NutInvocation invocation = result != null
+                ? result.toInvocation()
+                : NutReferenceParser.parse(source, procMap);
+        // do not cache an invocation of procs that have been replaced in the meantime
+        if (parseCache != null && invocation != null && procMap == this.procMap) {
+            parseCache.put(source, invocation);
+        }
+        return invocation;
+    }
+
+    /**
+     * Primes the parsers with a sample command per proc, so that the first commands entered by the user
+     * are not slowed down by class loading, lazy initialization and the construction of the ANTLR prediction
+     * caches. No proc is invoked and no argument is converted. Best called in the background at startup
+     * - see {@link #warmUpAsync()}.
+     */
+    public void warmUp() {
+        final List<String> sources = new ArrayList<>();
+        for (final NutProc proc : this.procMap.values()) {
+            if (sources.size() >= MAX_WARM_UP_SOURCES) {
+                break;
+            }
+            sources.add(sampleSource(proc));
+        }
+        if (sources.size() >= 2) {
+            sources.add(sources.get(0) + " | " + sources.get(1));
+        }
+        for (final String source : sources) {
+            NutFastParser.isWellFormed(source);
+        }
+        NutReferenceParser.warmUp(sources);
+    }
+
+    /**
+     * Runs {@link #warmUp()} on {@link NutExecution#backgroundExecutor()}.
+     */
+    public CompletableFuture<Void> warmUpAsync() {
+        return CompletableFuture.runAsync(this::warmUp, NutExecution.backgroundExecutor());
+    }
+
+    /**
+     * @return A command invoking {@code proc} with all of its parameters: the first positionally,
+     *      the others by name.
+     */
+    private static String sampleSource(NutProc proc) {
+        final var sb = new StringBuilder(proc.name());
+        boolean positional = true;
+        for (final NutProcParameter<?> parameter : proc.parameters()) {
+            final String value = switch (parameter.type()) {
+                case STRING, CUSTOM -> "'text'";
+                case INTEGER -> "1";
+                case DOUBLE -> "1.5";
+                case BOOLEAN -> "true";
+                case ENUM -> parameter.possibleValues().isEmpty()
+                        ? "value"
+                        : ((Enum<?>) parameter.possibleValues().iterator().next()).name();
+            };
+            sb.append(' ');
+            if (positional) {
+                positional = false;
+            } else {
+                sb.append('-').append(parameter.name()).append('=');
+            }
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses {@code source} with the ANTLR-based reference implementation, which is used
+     * whenever the {@link NutFastParser} cannot handle the source, mostly to report errors.
+     */
+    NutInvocation parseWithAntlr(String source) {
+        return NutReferenceParser.parse(source, this.procMap);
     }
 }
@@ -0,0 +1,63 @@
+package net.smackem.nutfx.core;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Provides the precomputed {@link NutProc}s of a controller class.
+ * <p>
+ * Implementations are generated at compile time by the {@code nutfx-processor} annotation processor,
+ * one per class declaring {@link NutMethod}s. The generated class lives in the controller's package
+ * and is named after the controller, with nested class names joined by {@code _} and the suffix
+ * {@code _NutRegistry} (e.g. {@code Outer_Inner_NutRegistry} for {@code Outer.Inner}).
+ * {@link NutProcParser} picks it up automatically and falls back to reflection if there is none.
+ */
+public interface NutProcRegistry {
+    String CLASS_NAME_SUFFIX = "_NutRegistry";
+
+    /**
+     * @return The procs declared by the controller class.
+     */
+    List<NutProc> nutProcs();
+
+    /**
+     * Looks up a declared method of a controller class without scanning all its methods.
+     *
+     * @throws IllegalStateException if there is no such method, which indicates that the registry is stale.
+     */
+    static Method declaredMethod(Class<?> controllerClass, String name, Class<?>... parameterTypes) {
+        try {
+            return controllerClass.getDeclaredMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("registry does not match controller class " + controllerClass.getName(), e);
+        }
+    }
+
+    /**
+     * Gets the generated registry for the given controller class.
+     *
+     * @return The registry or {@code null} if none has been generated for {@code controllerClass}.
+     */
+    static NutProcRegistry forClass(Class<?> controllerClass) {
+        final String packagePrefix = controllerClass.getPackageName().isEmpty()
+                ? ""
+                : controllerClass.getPackageName() + ".";
+        final String registryName = packagePrefix
+                + controllerClass.getName().substring(packagePrefix.length()).replace('$', '_')
+                + CLASS_NAME_SUFFIX;
+        final Class<?> registryClass;
+        try {
+            registryClass = Class.forName(registryName, true, controllerClass.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        if (NutProcRegistry.class.isAssignableFrom(registryClass) == false) {
+            return null;
+        }
+        try {
+            return (NutProcRegistry) registryClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("could not instantiate " + registryName, e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package net.smackem.nutfx.core;
+
+import net.smackem.nutfx.core.NutDiagnostic.Code;
+import net.smackem.nutfx.lang.NutLexer;
+import net.smackem.nutfx.lang.NutParser;
+import org.antlr.v4.runtime.ANTLRErrorStrategy;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.BufferedTokenStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The ANTLR-based reference implementation of the parser, see {@link NutProcParser#parseWithAntlr(String)}.
+ * <p>
+ * Lexer, token stream and parser are created once per thread and reset for each source. Sources are parsed
+ * in two stages: first with the faster SLL prediction, bailing out at the first syntax error, then - only if
+ * that failed - again with full LL prediction and error recovery, which reports the errors.
+ * <p>
+ * Syntax errors are collected by an error listener, semantic errors by the {@link NutEmittingVisitor}, so that
+ * all errors of a source are reported at once.
+ * <p>
+ * The prediction caches (DFA) of the generated lexer and parser are static and shared by all threads. They are
+ * primed once per JVM in the background, with a source using all rules of the grammar, when the first
+ * {@link NutProcParser} is created - see also {@link NutProcParser#warmUp()}.
+ */
+final class NutReferenceParser {
+    private static final String WARM_UP_SOURCE = """
+            warm-up 1 2.5 'a' "b" c -d -e=1 -f=2.5 -g='h' -i=j | k.l -m // comment
+            """;
+
+    private static final AtomicBoolean WARM_UP_STARTED = new AtomicBoolean();
+    private static final ThreadLocal<NutReferenceParser> INSTANCES = ThreadLocal.withInitial(NutReferenceParser::new);
+
+    private final NutLexer lexer = new NutLexer(CharStreams.fromString(""));
+    private final BufferedTokenStream tokens = new BufferedTokenStream(this.lexer);
+    private final NutParser parser = new NutParser(this.tokens);
+    private final ANTLRErrorStrategy bailErrorStrategy = new BailErrorStrategy();
+    private final ANTLRErrorStrategy defaultErrorStrategy = new DefaultErrorStrategy();
+    private final DiagnosticCollector syntaxErrors = new DiagnosticCollector();
+    private boolean busy;
+
+    private NutReferenceParser() {
+        this.lexer.removeErrorListeners();
+        this.lexer.addErrorListener(this.syntaxErrors);
+        this.parser.removeErrorListeners();
+        this.parser.addErrorListener(this.syntaxErrors);
+    }
+
+    /**
+     * Starts priming the shared prediction caches in the background, once per JVM.
+     */
+    static void warmUpInBackground() {
+        if (WARM_UP_STARTED.compareAndSet(false, true)) {
+            NutExecution.backgroundExecutor().execute(WarmUp::run);
+        }
+    }
+
+    /**
+     * Primes the shared prediction caches with the given sources, without binding any procs.
+     */
+    static void warmUp(Iterable<String> sources) {
+        WarmUp.run();
+        final var instance = new NutReferenceParser();
+        for (final String source : sources) {
+            instance.parseTree(source);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException listing all errors with line and position (see
+     *      {@link NutDiagnostic#describe(String, List)}) if {@code source} is not a valid command.
+     */
+    static NutInvocation parse(String source, Map<String, NutProc> procs) {
+        NutReferenceParser instance = INSTANCES.get();
+        if (instance.busy) {
+            // parse called from a converter while parsing on this thread
+            instance = new NutReferenceParser();
+        }
+        instance.busy = true;
+        try {
+            final var emitter = new NutEmittingVisitor(procs);
+            emitter.visitNutPipeline(instance.parseTree(source));
+            final List<NutDiagnostic> diagnostics = new ArrayList<>(instance.syntaxErrors.diagnostics);
+            diagnostics.addAll(emitter.diagnostics());
+            if (diagnostics.isEmpty() == false) {
+                throw new IllegalArgumentException(NutDiagnostic.describe(source, diagnostics));
+            }
+            return emitter.invocation();
+        } finally {
+            instance.busy = false;
+        }
+    }
+
+    private NutParser.NutPipelineContext parseTree(String source) {
+        this.syntaxErrors.diagnostics.clear();
+        this.lexer.setInputStream(CharStreams.fromString(source));
+        this.tokens.setTokenSource(this.lexer);
+        this.parser.setTokenStream(this.tokens);
+        this.parser.setErrorHandler(this.bailErrorStrategy);
+        this.parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            return this.parser.nutPipeline();
+        } catch (ParseCancellationException ignored) {
+            // syntax error or an ambiguity SLL cannot resolve
+        }
+        this.parser.reset();
+        this.parser.setErrorHandler(this.defaultErrorStrategy);
+        this.parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        return this.parser.nutPipeline();
+    }
+
+    /**
+     * Collects the errors reported by lexer and parser. The bailing first stage reports no parser errors,
+     * so each error is reported once.
+     */
+    private static final class DiagnosticCollector extends BaseErrorListener {
+        final List<NutDiagnostic> diagnostics = new ArrayList<>();
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                int charPositionInLine, String msg, RecognitionException e) {
+            // the messages of ANTLR list the expected tokens, which depend on the state of the prediction caches
+            if (offendingSymbol instanceof Token) {
+                final Token token = (Token) offendingSymbol;
+                final int start = token.getStartIndex();
+                final String message = token.getType() == Token.EOF
+                        ? "unexpected end of input"
+                        : "unexpected '" + token.getText() + "'";
+                this.diagnostics.add(new NutDiagnostic(start, Math.max(start, token.getStopIndex() + 1),
+                        Code.SYNTAX_ERROR, message));
+                return;
+            }
+            // the lexer skips the offending character
+            final Lexer lexer = (Lexer) recognizer;
+            final int start = lexer._tokenStartCharIndex;
+            final int end = Math.min(lexer.getInputStream().index() + 1, lexer.getInputStream().size());
+            final String text = lexer.getInputStream().getText(Interval.of(start, end - 1));
+            this.diagnostics.add(new NutDiagnostic(start, Math.max(start, end), Code.SYNTAX_ERROR,
+                    text.startsWith("'") || text.startsWith("\"")
+                            ? "unterminated string"
+                            : "unexpected character '" + text + "'"));
+        }
+    }
+
+    private static final class WarmUp {
+        static {
+            new NutReferenceParser().parseTree(WARM_UP_SOURCE);
+        }
+
+        static void run() {
+            // the static initializer has done the work
+        }
+    }
+}
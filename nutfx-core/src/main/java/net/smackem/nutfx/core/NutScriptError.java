@@ -0,0 +1,44 @@
+package net.smackem.nutfx.core;
+
+import java.util.Objects;
+
+/**
+ * A command of a script that could not be parsed or failed when invoked.
+ */
+public final class NutScriptError {
+    private final long line;
+    private final String source;
+    private final Exception cause;
+
+    NutScriptError(long line, String source, Exception cause) {
+        this.line = line;
+        this.source = Objects.requireNonNull(source);
+        this.cause = Objects.requireNonNull(cause);
+    }
+
+    /**
+     * @return The 1-based number of the script line the command starts on.
+     */
+    public long line() {
+        return this.line;
+    }
+
+    /**
+     * @return The source text of the command.
+     */
+    public String source() {
+        return this.source;
+    }
+
+    /**
+     * @return The parse error or the {@link java.lang.reflect.InvocationTargetException} thrown by the invocation.
+     */
+    public Exception cause() {
+        return this.cause;
+    }
+
+    @Override
+    public String toString() {
+        return "line %d: %s: %s".formatted(this.line, this.source, this.cause.getMessage());
+    }
+}
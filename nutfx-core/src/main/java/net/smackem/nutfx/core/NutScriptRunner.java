@@ -0,0 +1,372 @@
+package net.smackem.nutfx.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Executes scripts of Nut commands against a controller.
+ * <p>
+ * Commands are separated by newlines or {@code ;} (outside of string literals), {@code //} starts a
+ * comment that extends to the end of the line. Scripts are split incrementally while reading,
+ * so only the current command is held in memory, regardless of the script size.
+ * <p>
+ * String literals may span lines. A command that exceeds the {@link #getMaxCommandLength() maximum length}
+ * or ends in an unterminated literal fails without being executed. Splitting then resumes at the line
+ * following its start if it contains a literal, otherwise at the next line.
+ */
+public final class NutScriptRunner {
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final long MAPPED_WINDOW_SIZE = 64L * 1024 * 1024;
+    private static final int DEFAULT_MAX_COMMAND_LENGTH = 64 * 1024;
+
+    private final NutProcParser parser;
+    private final Object controller;
+    private Consumer<NutScriptError> errorHandler;
+    private boolean stopOnError;
+    private int maxCommandLength = DEFAULT_MAX_COMMAND_LENGTH;
+
+    public NutScriptRunner(NutProcParser parser, Object controller) {
+        this.parser = Objects.requireNonNull(parser);
+        this.controller = Objects.requireNonNull(controller);
+    }
+
+    /**
+     * Sets the handler that is notified of each failed command.
+     * If no handler is set (the default), errors are collected in the {@link Result}.
+     */
+    public void setErrorHandler(Consumer<NutScriptError> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Indicates whether script execution stops at the first failed command.<br>
+     * Default: false
+     */
+    public boolean isStopOnError() {
+        return this.stopOnError;
+    }
+
+    /**
+     * see {@link #isStopOnError()}
+     */
+    public void setStopOnError(boolean stopOnError) {
+        this.stopOnError = stopOnError;
+    }
+
+    /**
+     * The maximum number of characters of a command, including string literals spanning lines.<br>
+     * Default: 65536
+     */
+    public int getMaxCommandLength() {
+        return this.maxCommandLength;
+    }
+
+    /**
+     * see {@link #getMaxCommandLength()}
+     */
+    public void setMaxCommandLength(int maxCommandLength) {
+        if (maxCommandLength <= 0) {
+            throw new IllegalArgumentException("maxCommandLength must be positive");
+        }
+        this.maxCommandLength = maxCommandLength;
+    }
+
+    /**
+     * Executes all commands read from {@code reader}.
+     */
+    public Result run(Reader reader) throws IOException {
+        Objects.requireNonNull(reader);
+        final var splitter = new Splitter();
+        final char[] buffer = new char[READ_BUFFER_SIZE];
+        int count;
+        while ((count = reader.read(buffer)) >= 0) {
+            if (splitter.feed(buffer, 0, count) == false) {
+                return splitter.result();
+            }
+        }
+        splitter.finish();
+        return splitter.result();
+    }
+
+    /**
+     * Executes all commands of the given UTF-8 encoded file.
+     * The file is memory-mapped in windows, so even huge files are neither copied to the heap
+     * nor limited to 2 GiB.
+     */
+    public Result run(Path file) throws IOException {
+        Objects.requireNonNull(file);
+        final var splitter = new Splitter();
+        final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final CharBuffer chars = CharBuffer.allocate(READ_BUFFER_SIZE);
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            long offset = 0;
+            while (offset < size) {
+                final long windowSize = Math.min(MAPPED_WINDOW_SIZE, size - offset);
+                final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, windowSize);
+                final boolean endOfInput = offset + windowSize == size;
+                if (decode(decoder, window, chars, endOfInput, splitter) == false) {
+                    return splitter.result();
+                }
+                if (endOfInput) {
+                    break;
+                }
+                // a character split by the window boundary is decoded from the next window
+                offset += window.position();
+            }
+        }
+        splitter.finish();
+        return splitter.result();
+    }
+
+    private static boolean decode(CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars,
+                                  boolean endOfInput, Splitter splitter) {
+        while (true) {
+            chars.clear();
+            final CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            chars.flip();
+            if (splitter.feed(chars.array(), 0, chars.limit()) == false) {
+                return false;
+            }
+            if (result.isUnderflow()) {
+                return true;
+            }
+        }
+    }
+
+    private boolean execute(String source, long line, Result result) {
+        result.commandCount++;
+        try {
+            final NutInvocation invocation = this.parser.parse(source);
+            invocation.invoke(this.controller);
+            return true;
+        } catch (RuntimeException | InvocationTargetException e) {
+            return fail(source, line, e, result);
+        }
+    }
+
+    private boolean fail(String source, long line, Exception cause, Result result) {
+        final var error = new NutScriptError(line, source, cause);
+        result.errorCount++;
+        if (this.errorHandler != null) {
+            this.errorHandler.accept(error);
+        } else {
+            result.errors.add(error);
+        }
+        return this.stopOnError == false;
+    }
+
+    /**
+     * The outcome of a script run.
+     */
+    public static final class Result {
+        private long commandCount;
+        private long errorCount;
+        private final List<NutScriptError> errors = new ArrayList<>();
+
+        private Result() {
+        }
+
+        /**
+         * @return The number of commands executed, including failed ones.
+         */
+        public long commandCount() {
+            return this.commandCount;
+        }
+
+        public long errorCount() {
+            return this.errorCount;
+        }
+
+        /**
+         * @return The failed commands - empty if an error handler is set.
+         */
+        public List<NutScriptError> errors() {
+            return Collections.unmodifiableList(this.errors);
+        }
+    }
+
+    /**
+     * Splits a stream of characters into commands and executes each command as soon as it is complete.
+     */
+    private final class Splitter {
+        private final StringBuilder command = new StringBuilder();
+        private final Result result = new Result();
+        private long line = 1;
+        private long commandLine;
+        private char quote;
+        private boolean inComment;
+        private boolean pendingSlash;
+        private boolean skippingLine;
+        /**
+         * The text following the first line of an abandoned command, which is split again.
+         */
+        private String rescan;
+
+        /**
+         * @return {@code false} if execution should stop.
+         */
+        boolean feed(char[] chars, int offset, int length) {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                if (accept(chars[i]) == false) {
+                    return false;
+                }
+                if (this.rescan != null && rescan() == false) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void finish() {
+            while (true) {
+                if (this.pendingSlash) {
+                    this.pendingSlash = false;
+                    append('/');
+                }
+                this.inComment = false;
+                if (this.quote == 0) {
+                    endCommand();
+                    return;
+                }
+                if (abandon("unterminated string literal") == false || (this.rescan != null && rescan() == false)) {
+                    return;
+                }
+            }
+        }
+
+        Result result() {
+            return this.result;
+        }
+
+        private boolean accept(char ch) {
+            if (ch == '\n') {
+                this.line++;
+            }
+            if (this.skippingLine) {
+                this.skippingLine = ch != '\n';
+                return true;
+            }
+            if (this.inComment) {
+                if (ch == '\n') {
+                    this.inComment = false;
+                    return endCommand();
+                }
+                return true;
+            }
+            if (this.quote != 0) {
+                this.command.append(ch);
+                if (ch == this.quote) {
+                    this.quote = 0;
+                }
+                return checkLength();
+            }
+            if (this.pendingSlash) {
+                this.pendingSlash = false;
+                if (ch == '/') {
+                    this.inComment = true;
+                    return true;
+                }
+                append('/');
+            }
+            return switch (ch) {
+                case '\n', ';' -> endCommand();
+                case '/' -> {
+                    this.pendingSlash = true;
+                    yield true;
+                }
+                default -> {
+                    append(ch);
+                    yield checkLength();
+                }
+            };
+        }
+
+        private void append(char ch) {
+            if (this.command.length() == 0) {
+                if (ch == ' ' || ch == '\t' || ch == '\r') {
+                    return;
+                }
+                this.commandLine = this.line;
+            }
+            if (ch == '"' || ch == '\'') {
+                this.quote = ch;
+            }
+            this.command.append(ch);
+        }
+
+        private boolean checkLength() {
+            return this.command.length() <= NutScriptRunner.this.maxCommandLength
+                    || abandon("command exceeds %d characters".formatted(NutScriptRunner.this.maxCommandLength));
+        }
+
+        /**
+         * Fails the current command without executing it. If it spans lines, the lines following its first
+         * line are split again, otherwise the rest of the line is skipped.
+         */
+        private boolean abandon(String message) {
+            final String text = this.command.toString();
+            this.command.setLength(0);
+            this.quote = 0;
+            final int newline = text.indexOf('\n');
+            if (newline >= 0) {
+                // only literals contain newlines, so the first line of the command is its start line
+                this.line = this.commandLine + 1;
+                this.rescan = text.substring(newline + 1);
+            } else {
+                this.skippingLine = true;
+            }
+            this.result.commandCount++;
+            return fail(newline >= 0 ? text.substring(0, newline) : text, this.commandLine,
+                    new IllegalArgumentException(message), this.result);
+        }
+
+        /**
+         * Splits the text of {@link #rescan} - iteratively, since it may be abandoned again.
+         */
+        private boolean rescan() {
+            String text = this.rescan;
+            this.rescan = null;
+            int index = 0;
+            while (index < text.length()) {
+                if (accept(text.charAt(index++)) == false) {
+                    return false;
+                }
+                if (this.rescan != null) {
+                    text = this.rescan + text.substring(index);
+                    this.rescan = null;
+                    index = 0;
+                }
+            }
+            return true;
+        }
+
+        private boolean endCommand() {
+            if (this.command.length() == 0) {
+                return true;
+            }
+            final String source = this.command.toString();
+            this.command.setLength(0);
+            return execute(source, this.commandLine, this.result);
+        }
+    }
+}
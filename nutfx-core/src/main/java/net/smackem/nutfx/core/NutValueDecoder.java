@@ -0,0 +1,130 @@
+package net.smackem.nutfx.core;
+
+/**
+ * Decodes argument values directly from a range of the source text, without extracting the token as a
+ * {@link String} first. Accepts and rejects the same texts as {@link Integer#parseInt(String)},
+ * {@link Double#parseDouble(String)} (for plain decimals) and {@link Boolean#parseBoolean(String)}.
+ * Strings are unquoted by index, so a quoted value costs a single {@link String#substring(int, int)}.
+ */
+final class NutValueDecoder {
+    /**
+     * Powers of ten that are exactly representable as {@code double}.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+
+    /**
+     * The largest mantissa that is exactly representable as {@code double}.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private NutValueDecoder() {
+    }
+
+    /**
+     * Parses the decimal integer in {@code source[start..end)}, with an optional sign.
+     *
+     * @throws NumberFormatException if the range does not contain a valid {@code int}.
+     */
+    static int parseInt(String source, int start, int end) {
+        if (start >= end) {
+            throw numberFormatException(source, start, end);
+        }
+        int i = start;
+        final boolean negative = source.charAt(i) == '-';
+        if (negative || source.charAt(i) == '+') {
+            i++;
+            if (i == end) {
+                throw numberFormatException(source, start, end);
+            }
+        }
+        // accumulate negatively, since the range of negative ints is larger
+        final int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        final int multiplyMin = limit / 10;
+        int result = 0;
+        for (; i < end; i++) {
+            final int digit = source.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multiplyMin) {
+                throw numberFormatException(source, start, end);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw numberFormatException(source, start, end);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parses the decimal number in {@code source[start..end)}, e.g. {@code 1.5}. Numbers with up to 15
+     * significant digits are computed exactly from the digits, others fall back to
+     * {@link Double#parseDouble(String)}, so the result is always the correctly rounded value.
+     *
+     * @throws NumberFormatException if the range does not contain a valid number.
+     */
+    static double parseDouble(String source, int start, int end) {
+        int i = start;
+        final boolean negative = i < end && source.charAt(i) == '-';
+        if (negative || (i < end && source.charAt(i) == '+')) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < end; i++) {
+            final char ch = source.charAt(i);
+            if (ch == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            if (ch < '0' || ch > '9' || digits >= 18) {
+                return Double.parseDouble(source.substring(start, end));
+            }
+            mantissa = mantissa * 10 + (ch - '0');
+            digits++;
+            if (fractionDigits >= 0) {
+                fractionDigits++;
+            }
+        }
+        if (digits == 0 || mantissa > MAX_EXACT_MANTISSA || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(source.substring(start, end));
+        }
+        // both operands are exact, so the division rounds correctly
+        final double value = fractionDigits > 0
+                ? mantissa / POWERS_OF_TEN[fractionDigits]
+                : mantissa;
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return {@code true} if {@code source[start..end)} equals {@code "true"}, ignoring case.
+     */
+    static boolean parseBoolean(String source, int start, int end) {
+        return end - start == 4 && source.regionMatches(true, start, "true", 0, 4);
+    }
+
+    /**
+     * @return The text of {@code source[start..end)} without a leading and a trailing string delimiter
+     *      ({@code "} or {@code '}), if any.
+     */
+    static String unquote(String source, int start, int end) {
+        if (start < end && isDelimiter(source.charAt(start))) {
+            start++;
+        }
+        if (start < end && isDelimiter(source.charAt(end - 1))) {
+            end--;
+        }
+        return source.substring(start, end);
+    }
+
+    private static boolean isDelimiter(char ch) {
+        return ch == '"' || ch == '\'';
+    }
+
+    private static NumberFormatException numberFormatException(String source, int start, int end) {
+        return new NumberFormatException("For input string: \"" + source.substring(start, end) + "\"");
+    }
+}
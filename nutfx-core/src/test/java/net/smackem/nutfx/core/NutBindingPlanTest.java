@@ -0,0 +1,79 @@
+package net.smackem.nutfx.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NutBindingPlanTest {
+
+    @Test
+    public void resolvesNames() {
+        final List<NutProcParameter<?>> parameters = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            parameters.add(NutProcParameter.string("param" + i, true));
+        }
+        final var plan = new NutBindingPlan(parameters, -1);
+        for (int i = 0; i < 100; i++) {
+            assertThat(plan.indexOf("param" + i)).isEqualTo(i);
+            final String source = "-param" + i + "=1";
+            assertThat(plan.indexOf(source, 1, source.indexOf('='))).isEqualTo(i);
+        }
+        assertThat(plan.indexOf("param100")).isEqualTo(-1);
+        assertThat(plan.indexOf("param")).isEqualTo(-1);
+        assertThat(plan.indexOf("-param1", 0, 7)).isEqualTo(-1);
+        assertThat(plan.indexOf("-param1", 1, 6)).isEqualTo(-1);
+    }
+
+    @Test
+    public void resolvesNamesWithEqualHashCodes() {
+        assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+        final var plan = new NutBindingPlan(List.of(
+                NutProcParameter.string("Aa", true),
+                NutProcParameter.string("BB", true),
+                NutProcParameter.string("AaBB", true),
+                NutProcParameter.string("BBAa", true)), -1);
+        assertThat(plan.indexOf("Aa")).isEqualTo(0);
+        assertThat(plan.indexOf("BB")).isEqualTo(1);
+        assertThat(plan.indexOf("AaBB")).isEqualTo(2);
+        assertThat(plan.indexOf("BBAa")).isEqualTo(3);
+        assertThat(plan.indexOf("AaAa")).isEqualTo(-1);
+        assertThat(plan.indexOf("x BB", 2, 4)).isEqualTo(1);
+    }
+
+    @Test
+    public void resolvesNoNames() {
+        final var plan = new NutBindingPlan(List.of(), -1);
+        assertThat(plan.indexOf("a")).isEqualTo(-1);
+        assertThat(plan.newArguments()).isEmpty();
+    }
+
+    @Test
+    public void slotsSkipPipeInput() {
+        final var plan = new NutBindingPlan(List.of(
+                NutProcParameter.integer("a", true),
+                NutProcParameter.integer("b", true),
+                NutProcParameter.integer("c", true)), 1);
+        assertThat(plan.slot(0)).isEqualTo(0);
+        assertThat(plan.slot(1)).isEqualTo(2);
+        assertThat(plan.slot(2)).isEqualTo(3);
+        assertThat(plan.newArguments()).hasSize(4);
+    }
+
+    @Test
+    public void defaultArguments() {
+        final var plan = new NutBindingPlan(List.of(
+                NutProcParameter.bool("required", false),
+                NutProcParameter.bool("optional", true),
+                NutProcParameter.string("name", false),
+                NutProcParameter.integer("n", true)), -1);
+        final Object[] arguments = plan.newArguments();
+        assertThat(arguments).containsExactly(false, null, null, null);
+        assertThat(plan.newArguments()).isNotSameAs(arguments);
+        assertThat(plan.findMissingArgument(arguments)).isEqualTo(2);
+        arguments[2] = "x";
+        assertThat(plan.findMissingArgument(arguments)).isEqualTo(-1);
+    }
+}
@@ -0,0 +1,143 @@
+package net.smackem.nutfx.core;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NutCommandHistoryTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        NutExecution.setBackgroundExecutor(null);
+    }
+
+    @Test
+    public void persistsEntries() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("history");
+        try (final var history = new NutCommandHistory(file)) {
+            history.add("new 'r2'");
+            history.add("  draw -color=red ");
+            history.add("draw -color=red");
+            history.add(" ");
+        }
+        try (final var history = new NutCommandHistory(file)) {
+            assertThat(history.size()).isEqualTo(2);
+            history.add("draw -color=red");
+            history.add("switch");
+            assertThat(history.size()).isEqualTo(3);
+            assertThat(history.get(0)).isEqualTo("new 'r2'");
+            assertThat(history.get(1)).isEqualTo("draw -color=red");
+            assertThat(history.get(2)).isEqualTo("switch");
+        }
+    }
+
+    @Test
+    public void searchesBackwards() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("history");
+        try (final var history = new NutCommandHistory(file)) {
+            history.add("new 'r2'");
+            history.add("draw -color=red");
+            history.add("new 'C3PO'");
+            history.add("switch");
+            assertThat(history.search("new", history.size())).isEqualTo(2);
+            assertThat(history.search("new", 2)).isEqualTo(0);
+            assertThat(history.search("new", 0)).isEqualTo(-1);
+            assertThat(history.search("c3p", history.size())).isEqualTo(2);
+            assertThat(history.search("w", history.size())).isEqualTo(3);
+            assertThat(history.search("w -c", history.size())).isEqualTo(1);
+            assertThat(history.search("robot", history.size())).isEqualTo(-1);
+            history.add("draw -color=blue");
+            assertThat(history.search("draw", history.size())).isEqualTo(4);
+        }
+    }
+
+    @Test
+    public void compactsWhenFull() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("history");
+        NutExecution.setBackgroundExecutor(Runnable::run);
+        try (final var history = new NutCommandHistory(file, 100)) {
+            for (int i = 0; i < 1000; i++) {
+                history.add("cmd " + (i % 150));
+                history.add("switch");
+            }
+            assertThat(history.size()).isLessThan(200);
+            assertThat(history.get(history.size() - 1)).isEqualTo("switch");
+            assertThat(history.get(history.size() - 2)).isEqualTo("cmd 99");
+            assertThat(history.get(history.search("cmd 5", history.size()))).isEqualTo("cmd 59");
+        }
+        try (final var history = new NutCommandHistory(file, 100)) {
+            history.compact();
+            assertThat(history.size()).isEqualTo(100);
+            assertThat(history.get(0)).isEqualTo("cmd 1");
+            assertThat(history.get(99)).isEqualTo("switch");
+        }
+        assertThat(Files.size(file)).isLessThan(100_000);
+    }
+
+    @Test
+    public void keepsLogIfCompactionFails() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("history");
+        // occupies the path of the new log
+        Files.createDirectories(file.resolveSibling("history.tmp").resolve("blocked"));
+        NutExecution.setBackgroundExecutor(Runnable::run);
+        try (final var history = new NutCommandHistory(file, 10)) {
+            for (int i = 0; i < 25; i++) {
+                history.add("cmd " + i);
+            }
+            assertThatThrownBy(history::compact).isInstanceOf(IOException.class);
+            history.add("switch");
+            assertThat(history.size()).isEqualTo(26);
+            assertThat(history.get(25)).isEqualTo("switch");
+        }
+        try (final var history = new NutCommandHistory(file, 10)) {
+            assertThat(history.size()).isEqualTo(26);
+        }
+    }
+
+    @Test
+    public void compactsWhileCommandsAreAdded() throws Exception {
+        final Path file = this.folder.getRoot().toPath().resolve("history");
+        try (final var history = new NutCommandHistory(file, 100)) {
+            for (int i = 0; i < 150; i++) {
+                history.add("cmd " + i);
+            }
+            final var compaction = new Thread(() -> {
+                try {
+                    history.compact();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            compaction.start();
+            for (int i = 150; i < 200; i++) {
+                history.add("cmd " + i);
+            }
+            compaction.join();
+            assertThat(history.get(history.size() - 1)).isEqualTo("cmd 199");
+            assertThat(history.search("cmd 149", history.size())).isGreaterThanOrEqualTo(0);
+        }
+        try (final var history = new NutCommandHistory(file, 100)) {
+            assertThat(history.get(history.size() - 1)).isEqualTo("cmd 199");
+            assertThat(history.size()).isBetween(100, 200);
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("other");
+        Files.writeString(file, "not a history at all");
+        assertThatThrownBy(() -> new NutCommandHistory(file)).isInstanceOf(IOException.class);
+    }
+}
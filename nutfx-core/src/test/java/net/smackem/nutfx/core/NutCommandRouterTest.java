@@ -0,0 +1,158 @@
+package net.smackem.nutfx.core;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NutCommandRouterTest {
+
+    @Test
+    public void routesToNamespacedControllers() throws InvocationTargetException {
+        final var router = new NutCommandRouter();
+        final var left = new RobotController();
+        final var right = new RobotController();
+        router.register("robot.left", left);
+        router.register("robot.right", right);
+        assertThat(router.nutProcs()).containsOnlyKeys("robot.left.new", "robot.left.count",
+                "robot.right.new", "robot.right.count");
+        router.invoke("robot.left.new 'r2'");
+        router.invoke("robot.right.new -name=\"c3po\"");
+        router.invoke("robot.right.new 'bb8'");
+        assertThat(left.robots).containsExactly("r2");
+        assertThat(right.robots).containsExactly("c3po", "bb8");
+        assertThat(router.namespaceOf(left)).isEqualTo("robot.left");
+    }
+
+    @Test
+    public void pipesAcrossControllers() throws InvocationTargetException {
+        final var router = new NutCommandRouter();
+        final var robots = new RobotController();
+        final var log = new LogController();
+        router.register("robot", robots);
+        router.register(log);
+        router.invoke("robot.new a");
+        router.invoke("robot.new b");
+        assertThat(router.invoke("robot.count | print")).isNull();
+        assertThat(log.lines).containsExactly("2");
+    }
+
+    @Test
+    public void unregistersControllers() throws InvocationTargetException {
+        final var router = new NutCommandRouter();
+        final var robots = new RobotController();
+        router.register("robot", robots);
+        router.parser().createAlias(router.nutProcs().get("robot.new"), "mk");
+        router.invoke("mk x");
+        assertThat(robots.robots).containsExactly("x");
+        assertThat(router.unregister(robots)).isTrue();
+        assertThat(router.unregister(robots)).isFalse();
+        assertThat(router.nutProcs()).isEmpty();
+        assertThatThrownBy(() -> router.parse("mk y")).isInstanceOf(RuntimeException.class);
+        router.register("robot", robots);
+        assertThat(router.nutProcs()).containsOnlyKeys("robot.new", "robot.count");
+    }
+
+    @Test
+    public void aliasesMacros() throws InvocationTargetException {
+        final var router = new NutCommandRouter();
+        final var robots = new RobotController();
+        router.register("robot", robots);
+        final var recorder = new NutMacroRecorder();
+        recorder.start();
+        recorder.record(router.parse("robot.new x"));
+        router.parser().defineMacro(recorder.stop("mk-x"));
+        router.parser().createAlias(router.nutProcs().get("mk-x"), "x");
+        router.invoke("x");
+        assertThat(robots.robots).containsExactly("x");
+        router.unregister(robots);
+        assertThat(router.nutProcs()).isEmpty();
+    }
+
+    @Test
+    public void rejectsConflicts() {
+        final var router = new NutCommandRouter();
+        final var robots = new RobotController();
+        router.register("robot", robots);
+        assertThatThrownBy(() -> router.register("other", robots)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> router.register("robot", new RobotController()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> router.register("robot.", new RobotController()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> router.register("1robot", new RobotController()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> router.register("robot..left", new RobotController()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> router.register("x.-.", new RobotController()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(router.nutProcs()).containsOnlyKeys("robot.new", "robot.count");
+        assertThatThrownBy(() -> router.parser().createAlias(router.nutProcs().get("robot.new"), "robot.count"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void unboundInvocationsCannotBeInvokedWithoutController() {
+        final var parser = new NutProcParser(new RobotController());
+        assertThatThrownBy(() -> parser.parse("count").invoke()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void parsesWhileRegistering() throws Exception {
+        final var router = new NutCommandRouter();
+        router.register("robot", new RobotController());
+        final var failure = new AtomicReference<Throwable>();
+        final var done = new CountDownLatch(1);
+        final var reader = new Thread(() -> {
+            try {
+                while (done.getCount() > 0) {
+                    router.invoke("robot.new x");
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        reader.start();
+        final List<Object> controllers = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            final var controller = new LogController();
+            router.register("log" + i, controller);
+            controllers.add(controller);
+        }
+        controllers.forEach(router::unregister);
+        done.countDown();
+        reader.join();
+        assertThat(failure.get()).isNull();
+        assertThat(router.nutProcs()).containsOnlyKeys("robot.new", "robot.count");
+    }
+
+    private static class RobotController {
+        final List<String> robots = new ArrayList<>();
+
+        @NutMethod("new")
+        synchronized void newRobot(@NutParam("name") String name) {
+            this.robots.add(name);
+        }
+
+        @NutMethod
+        synchronized Stream<Integer> count() {
+            return IntStream.of(this.robots.size()).boxed();
+        }
+    }
+
+    private static class LogController {
+        final List<String> lines = new ArrayList<>();
+
+        @NutMethod
+        void print(@NutPipeInput Integer value) {
+            this.lines.add(String.valueOf(value));
+        }
+    }
+}
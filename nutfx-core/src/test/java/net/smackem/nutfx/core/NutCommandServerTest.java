@@ -0,0 +1,192 @@
+package net.smackem.nutfx.core;
+
+import javafx.application.Platform;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NutCommandServerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private NutCommandServer server;
+    private Controller controller;
+
+    @Before
+    public void setUp() {
+        this.controller = new Controller();
+        this.server = new NutCommandServer(new NutProcParser(this.controller), this.controller);
+        this.server.setDispatchExecutor(Runnable::run);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.server.close();
+    }
+
+    @Test
+    public void servesStreams() throws IOException {
+        final var input = new ByteArrayInputStream("""
+                add 1
+                add 'x'
+
+                sum
+                unknown
+                add 2 // comment
+                sum""".getBytes(StandardCharsets.UTF_8));
+        final var output = new ByteArrayOutputStream();
+        this.server.serve(Channels.newChannel(input), Channels.newChannel(output));
+        assertThat(output.toString(StandardCharsets.UTF_8).split("\n")).satisfies(lines -> {
+            assertThat(lines).hasSize(6);
+            assertThat(lines[0]).isEqualTo("ok");
+            assertThat(lines[1]).startsWith("error ");
+            assertThat(lines[2]).isEqualTo("ok 1");
+            assertThat(lines[3]).startsWith("error ").contains("unknown");
+            assertThat(lines[4]).isEqualTo("ok");
+            assertThat(lines[5]).isEqualTo("ok 3");
+        });
+    }
+
+    @Test
+    public void servesSocketClients() throws IOException {
+        final Path tokenFile = this.folder.getRoot().toPath().resolve("token");
+        final InetSocketAddress address = this.server.bind(0, tokenFile);
+        final String token = Files.readString(tokenFile).trim();
+        final List<List<String>> responses = new ArrayList<>();
+        try (final var first = SocketChannel.open(address);
+             final var second = SocketChannel.open(address)) {
+            final var commands = new StringBuilder(token).append('\n');
+            for (int i = 1; i <= 2000; i++) {
+                commands.append("add ").append(i).append('\n');
+            }
+            commands.append("sum\n");
+            send(first, commands.toString());
+            send(second, token + "\nfail\nadd 0\n");
+            first.shutdownOutput();
+            second.shutdownOutput();
+            responses.add(receive(first));
+            responses.add(receive(second));
+        }
+        assertThat(responses.get(0)).hasSize(2001);
+        assertThat(responses.get(0).subList(0, 2000)).containsOnly("ok");
+        assertThat(responses.get(0).get(2000)).isEqualTo("ok " + 2000 * 2001 / 2);
+        assertThat(responses.get(1)).containsExactly("error failed on purpose", "ok");
+    }
+
+    @Test
+    public void writesTokenFileReadableByOwnerOnly() throws IOException {
+        final Path tokenFile = this.folder.getRoot().toPath().resolve("token");
+        this.server.bind(0, tokenFile);
+        assertThat(Files.readString(tokenFile).trim().length()).isGreaterThanOrEqualTo(40);
+        if (tokenFile.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile))).isEqualTo("rw-------");
+        }
+        this.server.close();
+        assertThat(tokenFile).doesNotExist();
+    }
+
+    @Test
+    public void rejectsClientsWithoutToken() throws IOException {
+        final InetSocketAddress address = this.server.bind(0, this.folder.getRoot().toPath().resolve("token"));
+        try (final var client = SocketChannel.open(address)) {
+            send(client, "add 1\nadd 2\n");
+            assertThat(receive(client)).containsExactly("error unauthorized");
+        }
+        try (final var client = SocketChannel.open(address)) {
+            send(client, "POST / HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\nadd 1\n");
+            assertThat(receive(client)).containsExactly("");
+        }
+        assertThat(this.controller.sum).isZero();
+    }
+
+    @Test
+    public void answersBatchesRejectedByDispatchExecutor() throws IOException {
+        this.server.setDispatchExecutor(runnable -> {
+            throw new RejectedExecutionException("rejected on purpose");
+        });
+        final Path tokenFile = this.folder.getRoot().toPath().resolve("token");
+        final InetSocketAddress address = this.server.bind(0, tokenFile);
+        try (final var client = SocketChannel.open(address)) {
+            send(client, Files.readString(tokenFile).trim() + "\nadd 1\nadd 2\n");
+            client.shutdownOutput();
+            assertThat(receive(client)).containsExactly("error rejected on purpose", "error rejected on purpose");
+        }
+        final var output = new ByteArrayOutputStream();
+        this.server.serve(Channels.newChannel(new ByteArrayInputStream("add 1\nsum\n".getBytes(StandardCharsets.UTF_8))),
+                Channels.newChannel(output));
+        assertThat(output.toString(StandardCharsets.UTF_8).split("\n"))
+                .containsExactly("error rejected on purpose", "error rejected on purpose");
+        assertThat(this.controller.sum).isZero();
+    }
+
+    @Test
+    public void servesWithoutJavaFxToolkit() throws IOException {
+        final Executor fxExecutor = NutExecution.fxExecutor();
+        NutExecution.setFxExecutor(Platform::runLater);
+        try {
+            this.server.setDispatchExecutor(null);
+            final var output = new ByteArrayOutputStream();
+            this.server.serve(Channels.newChannel(new ByteArrayInputStream("add 1\nsum\n".getBytes(StandardCharsets.UTF_8))),
+                    Channels.newChannel(output));
+            assertThat(output.toString(StandardCharsets.UTF_8).split("\n")).containsExactly("ok", "ok 1");
+        } finally {
+            NutExecution.setFxExecutor(fxExecutor);
+        }
+    }
+
+    private static void send(SocketChannel channel, String text) throws IOException {
+        final ByteBuffer bytes = StandardCharsets.UTF_8.encode(text);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private static List<String> receive(SocketChannel channel) throws IOException {
+        final var output = new ByteArrayOutputStream();
+        final ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (channel.read(buffer) >= 0) {
+            output.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+        return List.of(output.toString(StandardCharsets.UTF_8).split("\n"));
+    }
+
+    private static class Controller {
+        int sum;
+
+        @NutMethod
+        synchronized void add(@NutParam(value = "n", isRequired = true) int n) {
+            this.sum += n;
+        }
+
+        @NutMethod
+        synchronized int sum() {
+            return this.sum;
+        }
+
+        @NutMethod
+        void fail() {
+            throw new IllegalStateException("failed on purpose");
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package net.smackem.nutfx.core;
+
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Differential tests of {@link NutFastParser} against the ANTLR reference implementation.
+ */
+public class NutFastParserTest {
+
+    private static final String[] VALID_SOURCES = {
+            "test",
+            "  test  ",
+            "test // comment",
+            "test-params 123 'hello' -b",
+            "test-params 123 \"hello world\" true",
+            "test-params -s='x' -n=5 -b=false",
+            "test-params 1 abc -b -b=true",
+            "test-params\n1\r\n'a\nb'\t-b",
+            "test-params 007 '' -b=TRUE",
+            "floats 1.5 2.0",
+            "floats -a=3.1 -b=0.0",
+            "opt-booleans -a -b -c",
+            "opt-booleans true 'true' yes",
+            "get-html BODY",
+            "get-html 'DIV'",
+            "get-pointmag -point='100;150'",
+            "strings abc 123 4.5 \"it's\"",
+            "strings a.b _c.d-e.f -d=g.h",
+            "range 3 | square",
+            "range -n=3|square|sum",
+            "range 2 | square | square | take 1 -s='x' -b",
+    };
+
+    private static final String[] INVALID_SOURCES = {
+            "",
+            "   ",
+            "unknown",
+            "123",
+            "test 1",
+            "test-params 1 2 3 4",
+            "test-params abc",
+            "test-params -x=1",
+            "test-params -n",
+            "test-params -s",
+            "test-params -b -n=1 2",
+            "test-params 1 -",
+            "test-params 1 -=",
+            "test-params -n=",
+            "test-params 'unterminated",
+            "test-params 99999999999",
+            "floats 1",
+            "floats 1.25",
+            "floats 1.",
+            "get-html SPAN",
+            "get-html -html",
+            "get-pointmag -point='abc'",
+            "test $",
+            "test / comment",
+            "test-params 1 'a' -b=1.5.3",
+            "range 3 |",
+            "| square",
+            "range 3 || square",
+            "test | square",
+            "range 3 | test",
+            "range 3 | square 1",
+            "range 3 | unknown",
+            "strings a. b",
+            "strings a..b",
+            "strings x.-.",
+            "strings a.1",
+    };
+
+    private static final String[] FRAGMENTS = {
+            "test", "test-params", "floats", "opt-booleans", "get-html", "strings", "nope",
+            "1", "42", "1.5", "3.25", "'s'", "\"d q\"", "''", "abc", "BODY", "'1;2'",
+            "-", "=", "-b", "-a", "-n=1", "-s=x", "-c=false", "-point='1;2'", "-html=DIV",
+            "//c", "$", ".", "1.", "x-y", "a.b", "a.", "\n", "\t",
+            "|", "| square", "range 2 |", "sum", "take",
+    };
+
+    @Test
+    public void validSourcesTakeFastPath() {
+        final var parser = new NutProcParser(new Controller());
+        for (final String source : VALID_SOURCES) {
+            assertThat(NutFastParser.tryParse(source, parser.nutProcs(), false))
+                    .as(source)
+                    .isNotNull();
+        }
+    }
+
+    @Test
+    public void matchesReferenceOnValidSources() {
+        for (final String source : VALID_SOURCES) {
+            assertMatchesReference(source);
+        }
+    }
+
+    @Test
+    public void matchesReferenceOnInvalidSources() {
+        withSilencedStdErr(() -> {
+            for (final String source : INVALID_SOURCES) {
+                assertMatchesReference(source);
+            }
+        });
+    }
+
+    @Test
+    public void matchesReferenceOnRandomSources() {
+        final var random = new Random(4711);
+        withSilencedStdErr(() -> {
+            for (int i = 0; i < 5000; i++) {
+                final var sb = new StringBuilder();
+                final int fragmentCount = 1 + random.nextInt(6);
+                for (int j = 0; j < fragmentCount; j++) {
+                    sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+                    if (random.nextInt(4) != 0) {
+                        sb.append(' ');
+                    }
+                }
+                assertMatchesReference(sb.toString());
+            }
+        });
+    }
+
+    private static void assertMatchesReference(String source) {
+        final var parser = new NutProcParser(new Controller());
+        final Outcome fast = Outcome.of(() -> fastParse(source, parser.nutProcs()));
+        final Outcome reference = Outcome.of(() -> parser.parseWithAntlr(source));
+        if (fast.isFallback() == false) {
+            assertThat(fast).as(source).isEqualTo(reference);
+        }
+        assertThat(Outcome.of(() -> parser.parse(source))).as(source).isEqualTo(reference);
+    }
+
+    /**
+     * @return The invocation or {@code null} if the fast path gave up.
+     * @throws IllegalArgumentException if a value has been rejected.
+     */
+    private static NutInvocation fastParse(String source, Map<String, NutProc> procs) {
+        final NutParseResult result = NutFastParser.tryParse(source, procs, false);
+        if (result != null && result.isValid() == false) {
+            throw new IllegalArgumentException(NutDiagnostic.describe(source, result.diagnostics()));
+        }
+        return result != null ? result.toInvocation() : null;
+    }
+
+    private static void withSilencedStdErr(Runnable runnable) {
+        final PrintStream stdErr = System.err;
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            runnable.run();
+        } finally {
+            System.setErr(stdErr);
+        }
+    }
+
+    /**
+     * Either the procs and arguments of all stages of an invocation or the exception thrown while parsing.
+     */
+    private static final class Outcome {
+        final NutProc proc;
+        final List<Map<String, Object>> arguments = new ArrayList<>();
+        final List<NutProc> nextProcs = new ArrayList<>();
+        final List<String> error = new ArrayList<>();
+
+        private Outcome(NutInvocation invocation, RuntimeException exception) {
+            this.proc = invocation != null ? invocation.proc() : null;
+            for (NutInvocation stage = invocation; stage != null; stage = stage.next()) {
+                final Map<String, Object> arguments = new LinkedHashMap<>();
+                for (final var parameter : stage.proc().parameters()) {
+                    arguments.put(parameter.name(), stage.get(parameter.name()));
+                }
+                this.arguments.add(arguments);
+                if (stage != invocation) {
+                    this.nextProcs.add(stage.proc());
+                }
+            }
+            if (exception != null) {
+                this.error.add(exception.getClass().getName());
+                this.error.add(exception.getMessage());
+            }
+        }
+
+        /**
+         * @return {@code true} if the fast path gave up.
+         */
+        boolean isFallback() {
+            return this.proc == null && this.error.isEmpty();
+        }
+
+        static Outcome of(Supplier<NutInvocation> parse) {
+            try {
+                return new Outcome(parse.get(), null);
+            } catch (RuntimeException e) {
+                return new Outcome(null, e);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Outcome that = (Outcome) o;
+            return this.proc == that.proc
+                   && this.nextProcs.equals(that.nextProcs)
+                   && this.arguments.equals(that.arguments)
+                   && this.error.equals(that.error);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.proc, this.nextProcs, this.arguments, this.error);
+        }
+
+        @Override
+        public String toString() {
+            return "Outcome{proc=" + this.proc + ", nextProcs=" + this.nextProcs + ", arguments=" + this.arguments
+                   + ", error=" + this.error + '}';
+        }
+    }
+
+    private static class Controller {
+        @NutMethod
+        void test() {
+        }
+
+        @NutMethod("test-params")
+        void testParams(@NutParam("n") int n,
+                        @NutParam("s") String s,
+                        @NutParam("b") boolean b) {
+        }
+
+        @NutMethod
+        void floats(@NutParam("a") double a,
+                    @NutParam("b") Double b) {
+        }
+
+        @NutMethod("opt-booleans")
+        void optBooleans(@NutParam("a") boolean a,
+                         @NutParam("b") Boolean b,
+                         @NutParam("c") Boolean c) {
+        }
+
+        @NutMethod("get-pointmag")
+        void getPointMagnitude(@NutParam("point") Point p) {
+        }
+
+        @NutMethod("get-html")
+        void getHtml(@NutParam(value = "html", isRequired = true) HtmlTag html) {
+        }
+
+        @NutMethod
+        void strings(@NutParam("a") String a,
+                     @NutParam("b") String b,
+                     @NutParam("c") String c,
+                     @NutParam("d") String d) {
+        }
+
+        @NutMethod
+        int[] range(@NutParam("n") int n) {
+            return new int[n];
+        }
+
+        @NutMethod
+        int square(@NutPipeInput int x) {
+            return x * x;
+        }
+
+        @NutMethod
+        int sum(@NutPipeInput Iterable<Integer> values) {
+            return 0;
+        }
+
+        @NutMethod
+        void take(@NutParam("n") int n,
+                  @NutPipeInput Object input,
+                  @NutParam("s") String s,
+                  @NutParam("b") boolean b) {
+        }
+    }
+
+    private record Point(int x, int y) {
+        static Point parse(String s) {
+            final String[] tokens = s.split(";");
+            return new Point(Integer.parseInt(tokens[0]), Integer.parseInt(tokens[1]));
+        }
+    }
+
+    private enum HtmlTag {
+        DIV,
+        BODY,
+    }
+}
@@ -0,0 +1,96 @@
+package net.smackem.nutfx.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NutFuzzyMatcherTest {
+
+    private final NutProc baseProc = NutProc.fromMethod(NutTests.getMethodByName(this, "command"));
+
+    @NutMethod
+    void command() {
+    }
+
+    @Test
+    public void matchesSubsequences() {
+        final var matcher = new NutFuzzyMatcher("nr");
+        assertThat(matcher.score("newRobot")).isNotEqualTo(NutFuzzyMatcher.NO_MATCH);
+        assertThat(matcher.score("snore")).isNotEqualTo(NutFuzzyMatcher.NO_MATCH);
+        assertThat(matcher.score("rn")).isEqualTo(NutFuzzyMatcher.NO_MATCH);
+        assertThat(matcher.score("draw")).isEqualTo(NutFuzzyMatcher.NO_MATCH);
+        assertThat(new NutFuzzyMatcher("").score("draw")).isEqualTo(0);
+    }
+
+    @Test
+    public void prefersBoundaries() {
+        final var matcher = new NutFuzzyMatcher("nr");
+        assertThat(matcher.score("newRobot")).isGreaterThan(matcher.score("snore"));
+        assertThat(matcher.score("new-robot")).isGreaterThan(matcher.score("inner"));
+        assertThat(matcher.score("new_robot")).isGreaterThan(matcher.score("nightrider"));
+        final var drawMatcher = new NutFuzzyMatcher("draw");
+        assertThat(drawMatcher.score("draw")).isGreaterThan(drawMatcher.score("drawLine"));
+        assertThat(drawMatcher.score("drawLine")).isGreaterThan(drawMatcher.score("redrawAll"));
+    }
+
+    @Test
+    public void matchPositions() {
+        assertThat(new NutFuzzyMatcher("nr").matchPositions("newRobot")).containsExactly(0, 3);
+        assertThat(new NutFuzzyMatcher("dl").matchPositions("draw-line")).containsExactly(0, 5);
+        assertThat(new NutFuzzyMatcher("ab").matchPositions("xaxab")).containsExactly(3, 4);
+        assertThat(new NutFuzzyMatcher("DL").matchPositions("dull")).containsExactly(0, 3);
+        assertThat(new NutFuzzyMatcher("x").matchPositions("draw")).isNull();
+    }
+
+    @Test
+    public void topMatchesFullSort() {
+        final var random = new Random(4711);
+        final var procs = new ArrayList<NutProc>();
+        for (int i = 0; i < 3000; i++) {
+            procs.add(this.baseProc.alias(randomName(random, 3 + random.nextInt(12)) + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            final var matcher = new NutFuzzyMatcher(randomName(random, 1 + random.nextInt(3)));
+            final List<NutProc> expected = procs.stream()
+                    .filter(proc -> matcher.score(proc) != NutFuzzyMatcher.NO_MATCH)
+                    .sorted(Comparator.comparingInt((NutProc proc) -> -matcher.score(proc))
+                            .thenComparing(NutProc::name))
+                    .limit(10)
+                    .collect(Collectors.toList());
+            assertThat(matcher.top(procs, 10)).as(matcher.query()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void indexSearchFuzzy() {
+        final var index = new NutProcIndex();
+        for (final String name : List.of("newRobot", "snore", "draw", "new", "removeRobot", "inner")) {
+            index.add(this.baseProc.alias(name));
+        }
+        assertThat(index.searchFuzzy("nr", 10))
+                .extracting(NutProc::name)
+                .containsExactly("newRobot", "inner", "snore");
+        assertThat(index.searchFuzzy("nr", 1))
+                .extracting(NutProc::name)
+                .containsExactly("newRobot");
+        assertThat(index.searchFuzzy("rR", 10))
+                .extracting(NutProc::name)
+                .containsExactly("removeRobot");
+        assertThat(index.searchFuzzy("zz", 10)).isEmpty();
+    }
+
+    private static String randomName(Random random, int length) {
+        final String alphabet = "abcdeRS-_";
+        final var sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
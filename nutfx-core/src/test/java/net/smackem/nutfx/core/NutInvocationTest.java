@@ -1,14 +1,28 @@
 package net.smackem.nutfx.core;
 
+import org.junit.After;
 import org.junit.Test;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class NutInvocationTest {
 
+    @After
+    public void tearDown() {
+        NutExecution.setFxExecutor(javafx.application.Platform::runLater);
+        NutExecution.setBackgroundExecutor(null);
+    }
+
     @Test
     public void invoke() throws InvocationTargetException, IllegalAccessException {
         final var controller = new Controller();
@@ -41,8 +55,112 @@ public class NutInvocationTest {
         assertThat(controller.someValue).isEqualTo(666);
     }
 
+    @Test
+    public void wrapsExceptionThrownByMethod() {
+        final var controller = new Controller();
+        final var method = NutTests.getMethodByName(controller, "methodThrowing");
+        final var proc = NutProc.fromMethod(method);
+        final var invocation = new NutInvocation(proc);
+        assertThatThrownBy(() -> invocation.invoke(controller))
+                .isInstanceOf(InvocationTargetException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void invokeStatic() throws InvocationTargetException {
+        final var controller = new Controller();
+        final var method = NutTests.getMethodByName(controller, "staticMethod");
+        final var proc = NutProc.fromMethod(method);
+        final var invocation = new NutInvocation(proc);
+        invocation.put("value", 42);
+        invocation.invoke(controller);
+        assertThat(Controller.staticValue).isEqualTo(42);
+    }
+
+    @Test
+    public void invokeAsyncRunsBackgroundProcOnExecutor() throws Exception {
+        final var controller = new Controller();
+        final var fxThread = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "fx"));
+        NutExecution.setFxExecutor(fxThread);
+        try {
+            final var invocation = new NutInvocation(NutProc.fromMethod(NutTests.getMethodByName(controller, "methodInBackground")));
+            // hold the proc back until the continuation is attached, which would otherwise run on this thread
+            final var attached = new CountDownLatch(1);
+            final Executor backgroundExecutor = runnable -> new Thread(() -> {
+                try {
+                    attached.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                runnable.run();
+            }).start();
+            final var future = invocation.invokeAsync(controller, backgroundExecutor)
+                    .thenApply(ignored -> Thread.currentThread().getName());
+            attached.countDown();
+            final String completionThread = future.get(5, TimeUnit.SECONDS);
+            assertThat(controller.threadName).isNotEqualTo("fx");
+            assertThat(completionThread).isEqualTo("fx");
+        } finally {
+            fxThread.shutdown();
+        }
+    }
+
+    @Test
+    public void invokeAsyncRunsFxProcOnFxExecutor() throws Exception {
+        final var controller = new Controller();
+        final var fxThread = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "fx"));
+        NutExecution.setFxExecutor(fxThread);
+        try {
+            final var invocation = new NutInvocation(NutProc.fromMethod(NutTests.getMethodByName(controller, "methodMutatingSomeValue")));
+            invocation.put("value", 7);
+            invocation.invokeAsync(controller, runnable -> {
+                throw new AssertionError("must not run on background executor");
+            }).get(5, TimeUnit.SECONDS);
+            assertThat(controller.someValue).isEqualTo(7);
+        } finally {
+            fxThread.shutdown();
+        }
+    }
+
+    @Test
+    public void invokeAsyncCompletesExceptionally() {
+        final var controller = new Controller();
+        NutExecution.setFxExecutor(Runnable::run);
+        final var invocation = new NutInvocation(NutProc.fromMethod(NutTests.getMethodByName(controller, "methodThrowingInBackground")));
+        assertThatThrownBy(() -> invocation.invokeAsync(controller, Runnable::run).get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(InvocationTargetException.class);
+    }
+
+    @Test
+    public void invokeAsyncCompletesExceptionallyIfStageThrowsRuntimeException() {
+        final var controller = new Controller();
+        NutExecution.setFxExecutor(Runnable::run);
+        final NutInvocation invocation = new NutProcParser(controller).parse("failingSourceInBackground | increment");
+        final var future = invocation.invokeAsync(controller, runnable -> new Thread(runnable).start());
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void invokeAsyncCompletesExceptionallyIfExecutorRejects() {
+        final var controller = new Controller();
+        NutExecution.setFxExecutor(Runnable::run);
+        final var invocation = new NutInvocation(NutProc.fromMethod(NutTests.getMethodByName(controller, "methodInBackground")));
+        final var future = invocation.invokeAsync(controller, runnable -> {
+            throw new RejectedExecutionException();
+        });
+        assertThatThrownBy(future::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(controller.threadName).isNull();
+    }
+
     private static class Controller {
+        static int staticValue;
         int someValue;
+        volatile String threadName;
 
         @NutMethod
         void methodMutatingSomeValue(@NutParam("value") int value) {
@@ -61,5 +179,45 @@ public class NutInvocationTest {
             System.out.printf("%s %d %b", s, n, b);
             this.someValue = n != null ? n : 0;
         }
+
+        @NutMethod
+        void methodThrowing() {
+            throw new IllegalStateException();
+        }
+
+        @NutMethod(background = true)
+        void methodInBackground() {
+            this.threadName = Thread.currentThread().getName();
+        }
+
+        @NutMethod(background = true)
+        void methodThrowingInBackground() {
+            throw new IllegalStateException();
+        }
+
+        @NutMethod(background = true)
+        Iterator<Integer> failingSourceInBackground() {
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return true;
+                }
+
+                @Override
+                public Integer next() {
+                    throw new IllegalStateException("source failed");
+                }
+            };
+        }
+
+        @NutMethod(background = true)
+        int increment(@NutPipeInput Integer input) {
+            return input + 1;
+        }
+
+        @NutMethod
+        static void staticMethod(@NutParam("value") int value) {
+            staticValue = value;
+        }
     }
 }
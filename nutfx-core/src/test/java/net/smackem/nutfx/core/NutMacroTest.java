@@ -0,0 +1,172 @@
+package net.smackem.nutfx.core;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NutMacroTest {
+
+    @Test
+    public void replaysRecordedInvocations() throws InvocationTargetException {
+        final var controller = new Controller();
+        final var parser = new NutProcParser(controller);
+        final var recorder = new NutMacroRecorder();
+        recorder.start();
+        for (final String source : List.of("add 1", "add -n=2", "range 3 | add", "total")) {
+            final NutInvocation invocation = parser.parse(source);
+            invocation.invoke(controller);
+            recorder.record(invocation);
+        }
+        final NutMacro macro = recorder.stop("setup");
+        assertThat(recorder.isRecording()).isFalse();
+        assertThat(macro.size()).isEqualTo(4);
+        assertThat(controller.total).isEqualTo(6);
+        final var other = new Controller();
+        assertThat(macro.replay(other)).isEqualTo(6);
+        assertThat(other.added).containsExactly(1, 2, 0, 1, 2);
+        // the arguments have been converted when recording
+        assertThat(macro.replay(other)).isEqualTo(12);
+    }
+
+    @Test
+    public void definesMacrosAsProcs() throws InvocationTargetException {
+        final var controller = new Controller();
+        final var parser = new NutProcParser(controller);
+        final var recorder = new NutMacroRecorder();
+        recorder.start();
+        recorder.record(parser.parse("add 5"));
+        recorder.record(parser.parse("add 7"));
+        final NutProc proc = parser.defineMacro(recorder.stop("twelve"));
+        assertThat(parser.nutProcs()).containsEntry("twelve", proc);
+        assertThat(proc.parameters()).isEmpty();
+        parser.parse("twelve").invoke(controller);
+        assertThat(controller.total).isEqualTo(12);
+        recorder.start();
+        recorder.record(parser.parse("add 1"));
+        parser.defineMacro(recorder.stop("twelve"));
+        parser.parse("twelve").invoke(controller);
+        assertThat(controller.total).isEqualTo(13);
+        recorder.start();
+        assertThatThrownBy(() -> parser.defineMacro(recorder.stop("add")))
+                .isInstanceOf(IllegalArgumentException.class);
+        recorder.start();
+        assertThatThrownBy(() -> recorder.stop("twelve."))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(recorder.stop("twelve.more").name()).isEqualTo("twelve.more");
+    }
+
+    @Test
+    public void replaysMacrosOfRoutedProcs() throws InvocationTargetException {
+        final var router = new NutCommandRouter();
+        final var left = new Controller();
+        final var right = new Controller();
+        router.register("left", left);
+        router.register("right", right);
+        final var recorder = new NutMacroRecorder();
+        recorder.start();
+        recorder.record(router.parse("left.add 1"));
+        recorder.record(router.parse("right.add 2"));
+        recorder.record(router.parse("left.range 2 | right.add"));
+        router.parser().defineMacro(recorder.stop("both"));
+        router.invoke("both");
+        assertThat(left.added).containsExactly(1);
+        assertThat(right.added).containsExactly(2, 0, 1);
+        recorder.start();
+        recorder.record(new NutProcParser(left).parse("add 1"));
+        assertThatThrownBy(() -> router.parser().defineMacro(recorder.stop("unbound")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void removesMacrosOfUnregisteredControllers() {
+        final var router = new NutCommandRouter();
+        final var left = new Controller();
+        final var right = new Controller();
+        router.register("left", left);
+        router.register("right", right);
+        final var recorder = new NutMacroRecorder();
+        recorder.start();
+        recorder.record(router.parse("left.add 1"));
+        router.parser().defineMacro(recorder.stop("onlyLeft"));
+        recorder.start();
+        recorder.record(router.parse("right.range 2 | left.add"));
+        router.parser().defineMacro(recorder.stop("piped"));
+        recorder.start();
+        recorder.record(router.parse("onlyLeft"));
+        router.parser().defineMacro(recorder.stop("nested"));
+        recorder.start();
+        recorder.record(router.parse("right.add 2"));
+        router.parser().defineMacro(recorder.stop("onlyRight"));
+        router.unregister(left);
+        assertThat(router.nutProcs()).containsOnlyKeys(
+                "right.add", "right.range", "right.total", "right.label", "right.fail", "onlyRight");
+    }
+
+    @Test
+    public void propagatesFailures() {
+        final var controller = new Controller();
+        final var parser = new NutProcParser(controller);
+        final var recorder = new NutMacroRecorder();
+        recorder.start();
+        recorder.record(parser.parse("add 1"));
+        recorder.record(parser.parse("fail"));
+        recorder.record(parser.parse("add 2"));
+        parser.defineMacro(recorder.stop("failing"));
+        assertThatThrownBy(() -> parser.parse("failing").invoke(controller))
+                .isInstanceOf(InvocationTargetException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(controller.added).containsExactly(1);
+    }
+
+    @Test
+    public void rejectsInvalidRecordings() {
+        final var recorder = new NutMacroRecorder();
+        assertThatThrownBy(() -> recorder.stop("macro")).isInstanceOf(IllegalStateException.class);
+        recorder.start();
+        assertThatThrownBy(() -> recorder.stop("1macro")).isInstanceOf(IllegalArgumentException.class);
+        final var invocation = new NutInvocation(NutProc.fromMethod(NutTests.getMethodByName(new Controller(), "label")));
+        assertThatThrownBy(() -> recorder.record(invocation)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(recorder.size()).isZero();
+        recorder.cancel();
+        recorder.record(invocation);
+        assertThat(recorder.size()).isZero();
+    }
+
+    private static class Controller {
+        final List<Integer> added = new ArrayList<>();
+        int total;
+
+        @NutMethod
+        void add(@NutParam("n") Integer n, @NutPipeInput Integer input) {
+            final int value = input != null ? input : n;
+            this.added.add(value);
+            this.total += value;
+        }
+
+        @NutMethod
+        Stream<Integer> range(@NutParam("count") int count) {
+            return IntStream.range(0, count).boxed();
+        }
+
+        @NutMethod
+        int total() {
+            return this.total;
+        }
+
+        @NutMethod
+        void label(@NutParam(value = "text", isRequired = true) String text) {
+        }
+
+        @NutMethod
+        void fail() {
+            throw new IllegalStateException("failed on purpose");
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package net.smackem.nutfx.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NutMetricsTest {
+
+    @After
+    public void tearDown() {
+        NutMetrics.register(null);
+    }
+
+    @Test
+    public void histogram() {
+        final var histogram = new NutLatencyHistogram();
+        assertThat(histogram.percentileNanos(50)).isEqualTo(0);
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 10, i % 10 == 0);
+        }
+        assertThat(histogram.count()).isEqualTo(100);
+        assertThat(histogram.errorCount()).isEqualTo(10);
+        assertThat(histogram.totalNanos()).isEqualTo(50500);
+        assertThat(histogram.meanNanos()).isEqualTo(505.0);
+        // 500ns and 990ns are counted by the bucket 512..1023
+        assertThat(histogram.percentileNanos(50)).isEqualTo(511);
+        assertThat(histogram.percentileNanos(99)).isEqualTo(1023);
+        assertThat(histogram.percentileNanos(0)).isEqualTo(15);
+        assertThat(histogram.bucketCounts()).hasSize(NutLatencyHistogram.BUCKET_COUNT);
+        assertThat(histogram.bucketCounts()[4]).isEqualTo(1);
+        assertThatThrownBy(() -> histogram.percentileNanos(101)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void histogramBuckets() {
+        final var histogram = new NutLatencyHistogram();
+        histogram.record(0, false);
+        histogram.record(-5, false);
+        histogram.record(1, false);
+        histogram.record(Long.MAX_VALUE, false);
+        final long[] counts = histogram.bucketCounts();
+        assertThat(counts[0]).isEqualTo(2);
+        assertThat(counts[1]).isEqualTo(1);
+        assertThat(counts[NutLatencyHistogram.BUCKET_COUNT - 1]).isEqualTo(1);
+        assertThat(NutLatencyHistogram.bucketUpperBound(0)).isEqualTo(0);
+        assertThat(NutLatencyHistogram.bucketUpperBound(1)).isEqualTo(1);
+        assertThat(NutLatencyHistogram.bucketUpperBound(10)).isEqualTo(1023);
+    }
+
+    @Test
+    public void recordsParseBindAndInvoke() throws InvocationTargetException {
+        final var recorder = new NutMetricsRecorder();
+        NutMetrics.register(recorder);
+        final var controller = new Controller();
+        final var parser = new NutProcParser(controller);
+        parser.parse("set 1").invoke(controller);
+        parser.parse("set 2").invoke(controller);
+        parser.parse("noop");
+        final var set = recorder.procMetrics("set");
+        assertThat(set.histogram(NutMetrics.Phase.PARSE).count()).isEqualTo(2);
+        assertThat(set.histogram(NutMetrics.Phase.BIND).count()).isEqualTo(2);
+        assertThat(set.histogram(NutMetrics.Phase.INVOKE).count()).isEqualTo(2);
+        assertThat(set.histogram(NutMetrics.Phase.INVOKE).errorCount()).isEqualTo(0);
+        assertThat(recorder.procMetrics("noop").histogram(NutMetrics.Phase.INVOKE).count()).isEqualTo(0);
+        assertThat(recorder.procMetrics())
+                .extracting(NutMetricsRecorder.ProcMetrics::procName)
+                .containsExactly("noop", "set");
+    }
+
+    @Test
+    public void recordsFailures() {
+        final var recorder = new NutMetricsRecorder();
+        NutMetrics.register(recorder);
+        final var controller = new Controller();
+        final var parser = new NutProcParser(controller);
+        assertThatThrownBy(() -> parser.parse("unknown")).isInstanceOf(RuntimeException.class);
+        assertThatThrownBy(() -> parser.parse("fail").invoke(controller)).isInstanceOf(InvocationTargetException.class);
+        assertThat(recorder.unresolvedMetrics().histogram(NutMetrics.Phase.PARSE).errorCount()).isEqualTo(1);
+        final var fail = recorder.procMetrics("fail");
+        assertThat(fail.histogram(NutMetrics.Phase.PARSE).errorCount()).isEqualTo(0);
+        assertThat(fail.histogram(NutMetrics.Phase.INVOKE).count()).isEqualTo(1);
+        assertThat(fail.histogram(NutMetrics.Phase.INVOKE).errorCount()).isEqualTo(1);
+        recorder.reset();
+        assertThat(recorder.procMetrics()).isEmpty();
+        assertThat(recorder.unresolvedMetrics().histogram(NutMetrics.Phase.PARSE).count()).isEqualTo(0);
+    }
+
+    @Test
+    public void recordsNothingWhenUnregistered() throws InvocationTargetException {
+        final var recorder = new NutMetricsRecorder();
+        NutMetrics.register(recorder);
+        NutMetrics.register(null);
+        final var controller = new Controller();
+        new NutProcParser(controller).parse("set 1").invoke(controller);
+        assertThat(recorder.procMetrics()).isEmpty();
+    }
+
+    private static class Controller {
+        int value;
+
+        @NutMethod
+        void set(@NutParam("value") int value) {
+            this.value = value;
+        }
+
+        @NutMethod
+        void noop() {
+        }
+
+        @NutMethod
+        void fail() {
+            throw new IllegalStateException();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package net.smackem.nutfx.core;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NutParseCacheTest {
+
+    @Test
+    public void disabledByDefault() {
+        final var parser = new NutProcParser(new Controller());
+        assertThat(parser.parseCache()).isNull();
+    }
+
+    @Test
+    public void countsHitsAndMisses() throws InvocationTargetException {
+        final var controller = new Controller();
+        final var parser = new NutProcParser(controller);
+        parser.setParseCacheSize(10);
+        parser.parse("draw -color=red").invoke(controller);
+        parser.parse("draw -color=red").invoke(controller);
+        parser.parse("draw -color=blue").invoke(controller);
+        final var cache = parser.parseCache();
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.missCount()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(controller.color).isEqualTo("blue");
+        parser.parse("draw -color=red").invoke(controller);
+        assertThat(controller.color).isEqualTo("red");
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        final var parser = new NutProcParser(new Controller());
+        parser.setParseCacheSize(2);
+        parser.parse("draw a");
+        parser.parse("draw b");
+        parser.parse("draw a");
+        parser.parse("draw c");
+        final var cache = parser.parseCache();
+        assertThat(cache.size()).isEqualTo(2);
+        final long misses = cache.missCount();
+        parser.parse("draw a");
+        assertThat(cache.missCount()).isEqualTo(misses);
+        parser.parse("draw b");
+        assertThat(cache.missCount()).isEqualTo(misses + 1);
+    }
+
+    @Test
+    public void doesNotCacheErrors() {
+        final var parser = new NutProcParser(new Controller());
+        parser.setParseCacheSize(10);
+        assertThatThrownBy(() -> parser.parse("draw -size=1")).isInstanceOf(RuntimeException.class);
+        assertThat(parser.parseCache().size()).isZero();
+    }
+
+    @Test
+    public void clearedByCreateAlias() {
+        final var parser = new NutProcParser(new Controller());
+        parser.setParseCacheSize(10);
+        parser.parse("draw red");
+        parser.createAlias(parser.nutProcs().get("draw"), "paint");
+        assertThat(parser.parseCache().size()).isZero();
+        assertThat(parser.parse("paint red").proc().name()).isEqualTo("paint");
+    }
+
+    private static class Controller {
+        String color;
+
+        @NutMethod
+        void draw(@NutParam("color") String color) {
+            this.color = color;
+        }
+    }
+}
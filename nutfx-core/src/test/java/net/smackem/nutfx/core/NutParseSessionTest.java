@@ -0,0 +1,129 @@
+package net.smackem.nutfx.core;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NutParseSessionTest {
+
+    @Test
+    public void bindsValidCommand() {
+        final var parser = new NutProcParser(new Controller());
+        final var session = new NutParseSession(parser);
+        final var result = session.update("test-params 12 'abc' -b");
+        assertThat(result.isValid()).isTrue();
+        assertThat(result.proc()).isSameAs(parser.nutProcs().get("test-params"));
+        assertThat(result.stages().get(0).arguments()).isEqualTo(Map.of("n", 12, "s", "abc", "b", true));
+        final var invocation = result.toInvocation();
+        assertThat(invocation.proc()).isSameAs(result.proc());
+        assertThat(invocation.get("s")).isEqualTo("abc");
+    }
+
+    @Test
+    public void reportsErrorsWithPositions() {
+        final var session = new NutParseSession(new NutProcParser(new Controller()));
+        var result = session.update("test-params x -q=1");
+        assertThat(result.isValid()).isFalse();
+        assertThat(result.proc()).isNotNull();
+        assertThat(result.diagnostics()).containsExactly(
+                new NutDiagnostic(12, 13, NutDiagnostic.Code.INVALID_VALUE, "integer value expected for parameter: n"),
+                new NutDiagnostic(15, 16, NutDiagnostic.Code.UNKNOWN_PARAMETER, "unknown parameter: q"),
+                new NutDiagnostic(0, 11, NutDiagnostic.Code.MISSING_ARGUMENT, "missing required parameter: n"));
+
+        result = session.update("nope 'abc");
+        assertThat(result.proc()).isNull();
+        assertThat(result.diagnostics())
+                .extracting(NutDiagnostic::message)
+                .containsExactly("unrecognized command: nope", "unterminated string");
+
+        result = session.update("test-params 1 -s= $ | ");
+        assertThat(result.stages()).hasSize(2);
+        assertThat(result.stages().get(0).arguments()).isEqualTo(Map.of("n", 1));
+        assertThat(result.diagnostics())
+                .extracting(NutDiagnostic::message)
+                .containsExactly("value expected", "unexpected character '$'", "command expected");
+    }
+
+    @Test
+    public void blankTextHasNoStagesAndNoErrors() {
+        final var session = new NutParseSession(new NutProcParser(new Controller()));
+        session.update("test");
+        final var result = session.update("  // comment");
+        assertThat(result.stages()).isEmpty();
+        assertThat(result.diagnostics()).isEmpty();
+        assertThat(result.isValid()).isFalse();
+        assertThat(result.toInvocation()).isNull();
+    }
+
+    @Test
+    public void rescansOnlyEditedRegion() {
+        final var session = new NutParseSession(new NutProcParser(new Controller()));
+        final var sb = new StringBuilder("strings");
+        for (int i = 0; i < 1000; i++) {
+            sb.append(" 'abc'");
+        }
+        session.update(sb.toString());
+        assertThat(session.scannedTokenCount()).isEqualTo(1001);
+        // the last token is scanned again since appending might extend it
+        session.edit(sb.length(), sb.length(), " x");
+        assertThat(session.scannedTokenCount()).isEqualTo(2);
+        session.edit(10, 10, "d");
+        assertThat(session.scannedTokenCount()).isEqualTo(1);
+        assertThat(session.result().stages().get(0).arguments()).containsEntry("a", "adbc");
+        session.edit(0, 7, "strings 1 2 3 4");
+        assertThat(session.scannedTokenCount()).isEqualTo(5);
+    }
+
+    @Test
+    public void incrementalResultMatchesFullParse() {
+        final var parser = new NutProcParser(new Controller());
+        final var random = new Random(4711);
+        final String alphabet = "ab-=|'\" 1.5/\n$";
+        final String[] seeds = {
+                "test-params 12 'abc' -b",
+                "strings 1.5 abc -d='x' // comment",
+                "test | test-params 1.25 \"q\"",
+        };
+        final var session = new NutParseSession(parser);
+        for (final String seed : seeds) {
+            session.update(seed);
+            for (int i = 0; i < 2000; i++) {
+                final String text = session.text();
+                final int start = random.nextInt(text.length() + 1);
+                final int end = start + random.nextInt(Math.min(3, text.length() - start) + 1);
+                final var replacement = new StringBuilder();
+                for (int j = random.nextInt(3); j > 0; j--) {
+                    replacement.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                final var result = random.nextBoolean()
+                        ? session.edit(start, end, replacement.toString())
+                        : session.update(text.substring(0, start) + replacement + text.substring(end));
+                final var expected = new NutParseSession(parser).update(session.text());
+                assertThat(result.toString()).as(session.text()).isEqualTo(expected.toString());
+            }
+        }
+    }
+
+    private static class Controller {
+        @NutMethod
+        void test() {
+        }
+
+        @NutMethod("test-params")
+        void testParams(@NutParam("n") int n,
+                        @NutParam("s") String s,
+                        @NutParam("b") boolean b) {
+        }
+
+        @NutMethod
+        String strings(@NutParam("a") String a,
+                       @NutParam("b") String b,
+                       @NutParam("c") String c,
+                       @NutParam("d") String d) {
+            return a;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package net.smackem.nutfx.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NutProcIndexTest {
+
+    private final NutProc baseProc = NutProc.fromMethod(NutTests.getMethodByName(this, "command"));
+
+    @NutMethod
+    void command() {
+    }
+
+    @Test
+    public void searchPrefix() {
+        final var index = createIndex("draw", "doIt", "drawLine", "new", "Dry");
+        assertThat(names(index.searchPrefix("dr", true, 10))).containsExactly("draw", "drawLine");
+        assertThat(names(index.searchPrefix("dr", false, 10))).containsExactly("draw", "drawLine", "Dry");
+        assertThat(names(index.searchPrefix("dr", false, 2))).containsExactly("draw", "drawLine");
+        assertThat(names(index.searchPrefix("x", false, 10))).isEmpty();
+    }
+
+    @Test
+    public void searchSubstring() {
+        final var index = createIndex("draw", "doIt", "drawLine", "new", "withdraw", "redRAW");
+        assertThat(names(index.searchSubstring("raw", true, 10))).containsExactly("draw", "drawLine", "withdraw");
+        assertThat(names(index.searchSubstring("raw", false, 10))).containsExactly("draw", "drawLine", "redRAW", "withdraw");
+        assertThat(names(index.searchSubstring("drawl", false, 10))).containsExactly("drawLine");
+        assertThat(names(index.searchSubstring("e", false, 2))).containsExactly("drawLine", "new");
+        assertThat(names(index.searchSubstring("[.*", false, 10))).isEmpty();
+    }
+
+    @Test
+    public void searchListsPrefixMatchesFirst() {
+        final var index = createIndex("a-draw", "draw", "withdraw", "drawing");
+        assertThat(names(index.search("draw", false, 10))).containsExactly("draw", "drawing", "a-draw", "withdraw");
+        assertThat(names(index.search("draw", false, 3))).containsExactly("draw", "drawing", "a-draw");
+    }
+
+    @Test
+    public void updatesIncrementally() {
+        final var index = createIndex("draw", "withdraw");
+        final NutProc draw = index.searchPrefix("draw", true, 1).get(0);
+        assertThat(index.add(this.baseProc.alias("draw"))).isFalse();
+        assertThat(index.remove(draw)).isTrue();
+        assertThat(index.contains(draw)).isFalse();
+        assertThat(names(index.searchSubstring("raw", false, 10))).containsExactly("withdraw");
+        index.add(this.baseProc.alias("drawer"));
+        assertThat(names(index.search("dra", false, 10))).containsExactly("drawer", "withdraw");
+        assertThat(index.size()).isEqualTo(2);
+        index.clear();
+        assertThat(index.search("dra", false, 10)).isEmpty();
+    }
+
+    @Test
+    public void matchesLinearScan() {
+        final var random = new Random(4711);
+        final var names = new ArrayList<String>();
+        for (int i = 0; i < 2000; i++) {
+            names.add(randomName(random, 3 + random.nextInt(10)));
+        }
+        final var index = createIndex(names.toArray(String[]::new));
+        final List<NutProc> procs = index.procs();
+        for (int i = 0; i < 500; i++) {
+            final String query = randomName(random, 1 + random.nextInt(5));
+            final boolean caseSensitive = random.nextBoolean();
+            final List<String> expected = procs.stream()
+                    .map(NutProc::name)
+                    .filter(name -> caseSensitive
+                            ? name.contains(query)
+                            : name.toLowerCase(Locale.ROOT).contains(query.toLowerCase(Locale.ROOT)))
+                    .limit(20)
+                    .collect(Collectors.toList());
+            assertThat(names(index.searchSubstring(query, caseSensitive, 20))).as(query).isEqualTo(expected);
+        }
+    }
+
+    private NutProcIndex createIndex(String... names) {
+        final var index = new NutProcIndex();
+        for (final String name : names) {
+            index.add(this.baseProc.alias(name));
+        }
+        return index;
+    }
+
+    private static String randomName(Random random, int length) {
+        final String alphabet = "abcdeABC-";
+        final var sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    private static List<String> names(List<NutProc> procs) {
+        return procs.stream()
+                .map(NutProc::name)
+                .collect(Collectors.toList());
+    }
+}
@@ -3,9 +3,18 @@ package net.smackem.nutfx.core;
 import org.junit.Test;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
 public class NutProcParserTest {
 
@@ -115,8 +124,232 @@ public class NutProcParserTest {
         assertThatThrownBy(() -> parser.createAlias(alias, "alias")).isInstanceOf(IllegalArgumentException.class);
     }
 
+    @Test
+    public void parsersShareCatalogButNotAliases() {
+        final var parser1 = new NutProcParser(new Controller());
+        final var parser2 = new NutProcParser(new Controller());
+        assertThat(parser1.nutProcs()).isSameAs(parser2.nutProcs());
+        assertThat(parser1.nutProcs().get("test")).isSameAs(parser2.nutProcs().get("test"));
+        parser1.createAlias(parser1.nutProcs().get("test"), "alias");
+        assertThat(parser1.nutProcs()).containsKey("alias");
+        assertThat(parser2.nutProcs()).doesNotContainKey("alias");
+        assertThat(new NutProcParser(new Controller()).nutProcs()).doesNotContainKey("alias");
+    }
+
+    @Test
+    public void pipeline() throws InvocationTargetException {
+        final var controller = new Controller();
+        final var parser = new NutProcParser(controller);
+        assertThat(parser.parse("range 5 | square | sum").invoke(controller)).isEqualTo(30);
+        assertThat(parser.parse("range 3 | square").invoke(controller)).asList().containsExactly(0, 1, 4);
+        assertThat(parser.parse("range 3 | square | append").invoke(controller)).isNull();
+        assertThat(controller.string).isEqualTo("014");
+    }
+
+    @Test
+    public void pipelineStreamsElements() throws InvocationTargetException {
+        final var controller = new Controller();
+        final var parser = new NutProcParser(controller);
+        assertThat(parser.parse("range 1000000 | square | first").invoke(controller)).isEqualTo(0);
+        assertThat(controller.generatedCount).isEqualTo(1);
+    }
+
+    @Test
+    public void pipelineRejectsIncompatibleStages() {
+        final var controller = new Controller();
+        final var parser = new NutProcParser(controller);
+        assertThatThrownBy(() -> parser.parse("test | square"))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("produces no output");
+        assertThatThrownBy(() -> parser.parse("range 3 | test"))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("does not accept pipe input");
+    }
+
+    @Test
+    public void pipelineWrapsExceptionThrownByStage() {
+        final var controller = new Controller();
+        final var parser = new NutProcParser(controller);
+        final var invocation = parser.parse("range 3 | square | fail");
+        assertThatThrownBy(() -> invocation.invoke(controller))
+                .isInstanceOf(InvocationTargetException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void pipelineWrapsExceptionThrownByUpstreamStream() {
+        final var controller = new Controller();
+        final var parser = new NutProcParser(controller);
+        assertThatThrownBy(() -> parser.parse("broken-range 3 | square").invoke(controller))
+                .isInstanceOf(InvocationTargetException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> parser.parse("broken-range 3 | square | sum").invoke(controller))
+                .isInstanceOf(InvocationTargetException.class)
+                .hasRootCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void pipelineClosesStreamsPassedAsWhole() throws InvocationTargetException {
+        final var controller = new Controller();
+        final var parser = new NutProcParser(controller);
+        assertThat(parser.parse("range 3 | sum").invoke(controller)).isEqualTo(3);
+        assertThat(controller.closedCount).isEqualTo(1);
+        assertThat(parser.parse("range 3 | square | sum").invoke(controller)).isEqualTo(5);
+        assertThat(controller.closedCount).isEqualTo(2);
+        assertThat(parser.parse("range 3 | first").invoke(controller)).isEqualTo(0);
+        assertThat(controller.closedCount).isEqualTo(3);
+    }
+
+    @Test
+    public void parsesConcurrently() throws Exception {
+        final var parser = new NutProcParser(new Controller());
+        final List<String> sources = List.of(
+                "test-params 123 'hello' -b",
+                "test-params -s=\"x y\" -n=7",
+                "opt-booleans -b -a=false",
+                "get-html BODY",
+                "range 5 | square | sum");
+        final var executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        final var controller = new Controller();
+                        assertThat(parser.parse("test-params " + i + " 'hello' -b").invoke(controller)).isNull();
+                        assertThat(controller.string).isEqualTo(i + " hello true");
+                        for (final String source : sources) {
+                            assertThat(parser.parse(source)).isNotNull();
+                            assertThat(parser.parseWithAntlr(source)).isNotNull();
+                        }
+                        assertThatThrownBy(() -> parser.parse("test-params -x")).isInstanceOf(RuntimeException.class);
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void warmUpInvokesNothing() throws Exception {
+        final var controller = new Controller();
+        final var parser = new NutProcParser(controller);
+        parser.warmUpAsync().get();
+        assertThat(controller.string).isNull();
+        assertThat(controller.generatedCount).isZero();
+        parser.parse("test-params 1 'x'").invoke(controller);
+        assertThat(controller.string).isEqualTo("1 x false");
+    }
+
+    @Test
+    public void recoversFromSyntaxErrorsAfterFallingBackToFullPrediction() {
+        final var parser = new NutProcParser(new Controller());
+        // the SLL stage bails out, the LL stage reports and skips the extraneous '|'
+        assertThatThrownBy(() -> parser.parseWithAntlr("test-params 1 -s= | 'x'"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("line 1, pos 18: unexpected '|'");
+        assertThat(parser.parseWithAntlr("range 3 | square").next().proc().name()).isEqualTo("square");
+    }
+
+    @Test
+    public void tryParseReturnsInvocationOfValidCommands() throws InvocationTargetException {
+        final var controller = new Controller();
+        final var parser = new NutProcParser(controller);
+        final NutParseResult result = parser.tryParse("test-params 1 -s='abc' -b");
+        assertThat(result.isValid()).isTrue();
+        assertThat(result.diagnostics()).isEmpty();
+        assertThat(result.stages()).hasSize(1);
+        assertThat(result.stages().get(0).arguments()).containsEntry("n", 1).containsEntry("s", "abc");
+        result.toInvocation().invoke(controller);
+        assertThat(controller.string).isEqualTo("1 abc true");
+        assertThat(parser.tryParse("range 3 | square").toInvocation().next().proc().name()).isEqualTo("square");
+    }
+
+    @Test
+    public void tryParseReportsAllErrors() {
+        final var parser = new NutProcParser(new Controller());
+        NutParseResult result = parser.tryParse("test-params 'x' -q=1 | nope");
+        assertThat(result.isValid()).isFalse();
+        assertThat(result.toInvocation()).isNull();
+        assertThat(result.diagnostics())
+                .extracting(NutDiagnostic::code)
+                .containsExactly(NutDiagnostic.Code.INVALID_VALUE,
+                        NutDiagnostic.Code.UNKNOWN_PARAMETER,
+                        NutDiagnostic.Code.MISSING_ARGUMENT,
+                        NutDiagnostic.Code.UNRECOGNIZED_COMMAND);
+        assertThat(result.diagnostics().get(3).start()).isEqualTo(23);
+
+        result = parser.tryParse("get-html");
+        assertThat(result.isValid()).isFalse();
+        assertThat(result.diagnostics()).extracting(NutDiagnostic::code)
+                .containsExactly(NutDiagnostic.Code.MISSING_ARGUMENT);
+
+        result = parser.tryParse("test -x=");
+        assertThat(result.diagnostics()).extracting(NutDiagnostic::code)
+                .containsExactly(NutDiagnostic.Code.SYNTAX_ERROR);
+    }
+
+    @Test
+    public void callsConvertersOnceIfValueIsRejected() {
+        final var parser = new NutProcParser(new Controller());
+        Counted.parseCount.set(0);
+        assertThatThrownBy(() -> parser.parse("counted ok bad"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("line 1, pos 11: invalid value for parameter b");
+        assertThat(Counted.parseCount).hasValue(2);
+
+        Counted.parseCount.set(0);
+        final NutParseResult result = parser.tryParse("counted ok bad");
+        assertThat(result.isValid()).isFalse();
+        assertThat(result.diagnostics()).extracting(NutDiagnostic::code)
+                .containsExactly(NutDiagnostic.Code.INVALID_VALUE);
+        assertThat(result.diagnostics().get(0).start()).isEqualTo(11);
+        assertThat(result.stages().get(0).arguments()).containsOnlyKeys("a");
+        assertThat(Counted.parseCount).hasValue(2);
+    }
+
+    @Test
+    public void tryParseReportsStageBounds() {
+        final var parser = new NutProcParser(new Controller());
+        parser.setParseCacheSize(8);
+        final String source = "range 3 | square";
+        assertThat(parser.tryParse(source).stages())
+                .extracting(NutParseResult.Stage::start, NutParseResult.Stage::end)
+                .containsExactly(tuple(0, 7), tuple(10, 16));
+        parser.parse(source);
+        assertThat(parser.tryParse(source).stages())
+                .extracting(NutParseResult.Stage::start, NutParseResult.Stage::end)
+                .containsExactly(tuple(0, 7), tuple(10, 16));
+        assertThat(parser.tryParse("get-html").diagnostics())
+                .extracting(NutDiagnostic::start, NutDiagnostic::end)
+                .containsExactly(tuple(0, 8));
+    }
+
+    @Test
+    public void reportsAllErrorsFoundByReferenceParser() {
+        final var parser = new NutProcParser(new Controller());
+        assertThatThrownBy(() -> parser.parseWithAntlr("test-params 'x' -q=1 | nope"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("line 1, pos 12: integer value expected for parameter: n; "
+                            + "line 1, pos 16: unknown parameter: q; "
+                            + "line 1, pos 23: unrecognized command: nope");
+        assertThatThrownBy(() -> parser.parseWithAntlr("nope 1 # 2"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("line 1, pos 7: unexpected character '#'; line 1, pos 0: unrecognized command: nope");
+        assertThatThrownBy(() -> parser.parse("test-params 1 // comment\n  -q=1"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("line 2, pos 2: unknown parameter: q");
+    }
+
     private static class Controller {
         String string;
+        int generatedCount;
+        int closedCount;
 
         @NutMethod
         void test() {
@@ -161,6 +394,55 @@ public class NutProcParserTest {
         void getHtml(@NutParam(value = "html", isRequired = true) HtmlTag html) {
             this.string = html.toString();
         }
+
+        @NutMethod
+        Stream<Integer> range(@NutParam("n") int n) {
+            return IntStream.range(0, n)
+                    .peek(ignored -> this.generatedCount++)
+                    .boxed()
+                    .onClose(() -> this.closedCount++);
+        }
+
+        @NutMethod("broken-range")
+        Stream<Integer> brokenRange(@NutParam("n") int n) {
+            return IntStream.range(0, n)
+                    .boxed()
+                    .map(i -> {
+                        if (i == n - 1) {
+                            throw new IllegalStateException("broken at " + i);
+                        }
+                        return i;
+                    });
+        }
+
+        @NutMethod
+        int square(@NutPipeInput int x) {
+            return x * x;
+        }
+
+        @NutMethod
+        int sum(@NutPipeInput Stream<Integer> values) {
+            return values.mapToInt(Integer::intValue).sum();
+        }
+
+        @NutMethod
+        Object first(@NutPipeInput Iterator<?> values) {
+            return values.next();
+        }
+
+        @NutMethod
+        void append(@NutPipeInput Integer value) {
+            this.string = (this.string != null ? this.string : "") + value;
+        }
+
+        @NutMethod
+        void fail(@NutPipeInput Object value) {
+            throw new IllegalStateException();
+        }
+
+        @NutMethod
+        void counted(@NutParam("a") Counted a, @NutParam("b") Counted b) {
+        }
     }
 
     private static class ControllerWithDuplicates {
@@ -178,6 +460,18 @@ public class NutProcParserTest {
         }
     }
 
+    private record Counted(String text) {
+        static final AtomicInteger parseCount = new AtomicInteger();
+
+        static Counted parse(String s) {
+            parseCount.incrementAndGet();
+            if (s.equals("bad")) {
+                throw new IllegalArgumentException(s);
+            }
+            return new Counted(s);
+        }
+    }
+
     private enum HtmlTag {
         A,
         DIV,
@@ -24,9 +24,11 @@ public class NutProcTest {
     }
 
     @Test
-    public void testIllegalReturnType() {
+    public void testReturnType() {
         final var method = NutTests.getMethodByName(this, "methodReturningInt");
-        assertThatThrownBy(() -> NutProc.fromMethod(method)).isInstanceOf(IllegalArgumentException.class);
+        final var proc = NutProc.fromMethod(method);
+        assertThat(proc.returnType()).isEqualTo(int.class);
+        assertThat(proc.acceptsPipeInput()).isFalse();
     }
 
     @NutMethod
@@ -34,6 +36,31 @@ public class NutProcTest {
         return 0;
     }
 
+    @Test
+    public void testPipeInput() {
+        final var method = NutTests.getMethodByName(this, "methodWithPipeInput");
+        final var proc = NutProc.fromMethod(method);
+        assertThat(proc.acceptsPipeInput()).isTrue();
+        assertThat(proc.pipeInputType()).isEqualTo(String.class);
+        assertThat(proc.parameters())
+                .extracting(NutProcParameter::name)
+                .containsExactly("n");
+    }
+
+    @NutMethod
+    void methodWithPipeInput(@NutParam("n") int n, @NutPipeInput String input) {
+    }
+
+    @Test
+    public void testMultiplePipeInputs() {
+        final var method = NutTests.getMethodByName(this, "methodWithTwoPipeInputs");
+        assertThatThrownBy(() -> NutProc.fromMethod(method)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @NutMethod
+    void methodWithTwoPipeInputs(@NutPipeInput String a, @NutPipeInput String b) {
+    }
+
     @Test
     public void testBasicParameters() {
         final var method = NutTests.getMethodByName(this, "methodWithBasicParameters");
@@ -165,8 +192,83 @@ public class NutProcTest {
     void methodWithEnumParameter(@NutParam("choice") Choice choice) {
     }
 
+    @Test
+    public void convertEnumStrictly() {
+        final var method = NutTests.getMethodByName(this, "methodWithEnumParameter");
+        final var parameter = NutProc.fromMethod(method).parameters().iterator().next();
+        assertThatThrownBy(() -> parameter.converter().apply("choice_a"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("choice_a");
+        assertThatThrownBy(() -> parameter.converter().apply("CHOICE")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void convertEnumLeniently() {
+        final var method = NutTests.getMethodByName(this, "methodWithLenientEnumParameter");
+        final var converter = NutProc.fromMethod(method).parameters().iterator().next().converter();
+        assertThat(converter.apply("RED")).isEqualTo(Color.RED);
+        assertThat(converter.apply("red")).isEqualTo(Color.RED);
+        assertThat(converter.apply("Re")).isEqualTo(Color.RED);
+        assertThat(converter.apply("green")).isEqualTo(Color.GREEN);
+        assertThat(converter.apply("greeni")).isEqualTo(Color.GREENISH);
+        assertThat(converter.apply("Blue")).isEqualTo(Color.Blue);
+        assertThat(converter.apply("BLUE")).isEqualTo(Color.BLUE);
+        assertThatThrownBy(() -> converter.apply("blue")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> converter.apply("gr")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> converter.apply("bl")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> converter.apply("")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> converter.apply("yellow")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @NutMethod
+    void methodWithLenientEnumParameter(@NutParam(value = "color", lenient = true) Color color) {
+    }
+
+    @Test
+    public void cachesConvertedValues() {
+        final var method = NutTests.getMethodByName(this, "methodWithCachedCustomParameter");
+        final var converter = NutProc.fromMethod(method).parameters().iterator().next().converter();
+        CountingConverter.count = 0;
+        assertThat(converter.apply("1")).isEqualTo(1);
+        assertThat(converter.apply("2")).isEqualTo(2);
+        assertThat(converter.apply("1")).isEqualTo(1);
+        assertThat(CountingConverter.count).isEqualTo(2);
+        converter.apply("3");
+        converter.apply("2");
+        assertThat(CountingConverter.count).as("'2' has been evicted").isEqualTo(4);
+    }
+
+    @NutMethod
+    void methodWithCachedCustomParameter(
+            @NutParam(value = "x", converterClass = CountingConverter.class, converterCacheSize = 2) Integer x) {
+    }
+
+    private static class CountingConverter {
+        static int count;
+
+        private static Integer parse(String s) {
+            count++;
+            return Integer.valueOf(s);
+        }
+    }
+
+    @Test
+    public void converterExceptionsPropagate() {
+        final var method = NutTests.getMethodByName(this, "methodWithCustomParameter");
+        final var converter = NutProc.fromMethod(method).parameters().iterator().next().converter();
+        assertThatThrownBy(() -> converter.apply("abc")).isInstanceOf(NumberFormatException.class);
+    }
+
     private enum Choice {
         CHOICE_A,
         CHOICE_B,
     }
+
+    private enum Color {
+        RED,
+        GREEN,
+        GREENISH,
+        Blue,
+        BLUE,
+    }
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+package net.smackem.nutfx.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NutScriptRunnerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String SCRIPT = """
+            add 1; add 2
+            // a comment; with a semicolon
+            add 3 // trailing comment
+              append 'a;b'
+            append "multi
+            line"; add 4
+            """;
+
+    @Test
+    public void runFromReader() throws IOException {
+        final var controller = new Controller();
+        final var runner = new NutScriptRunner(new NutProcParser(controller), controller);
+        final var result = runner.run(new StringReader(SCRIPT));
+        assertThat(result.commandCount()).isEqualTo(6);
+        assertThat(result.errors()).isEmpty();
+        assertThat(controller.sum).isEqualTo(10);
+        assertThat(controller.strings).containsExactly("a;b", "multi\nline");
+    }
+
+    @Test
+    public void runFromFile() throws IOException {
+        final Path file = this.folder.newFile("script.nut").toPath();
+        Files.writeString(file, SCRIPT + "append 'äöü'");
+        final var controller = new Controller();
+        final var runner = new NutScriptRunner(new NutProcParser(controller), controller);
+        final var result = runner.run(file);
+        assertThat(result.commandCount()).isEqualTo(7);
+        assertThat(result.errors()).isEmpty();
+        assertThat(controller.sum).isEqualTo(10);
+        assertThat(controller.strings).containsExactly("a;b", "multi\nline", "äöü");
+    }
+
+    @Test
+    public void reportsErrorsWithLineNumbers() throws IOException {
+        final var controller = new Controller();
+        final var runner = new NutScriptRunner(new NutProcParser(controller), controller);
+        final var errors = new ArrayList<NutScriptError>();
+        runner.setErrorHandler(errors::add);
+        final var result = runner.run(new StringReader("""
+                add 1
+                unknown 2
+
+                add 3; fail
+                add 4
+                """));
+        assertThat(result.commandCount()).isEqualTo(5);
+        assertThat(result.errorCount()).isEqualTo(2);
+        assertThat(result.errors()).isEmpty();
+        assertThat(errors).extracting(NutScriptError::line).containsExactly(2L, 4L);
+        assertThat(errors).extracting(NutScriptError::source).containsExactly("unknown 2", "fail");
+        assertThat(controller.sum).isEqualTo(8);
+    }
+
+    @Test
+    public void stopOnError() throws IOException {
+        final var controller = new Controller();
+        final var runner = new NutScriptRunner(new NutProcParser(controller), controller);
+        runner.setStopOnError(true);
+        final var result = runner.run(new StringReader("add 1; fail; add 2"));
+        assertThat(result.commandCount()).isEqualTo(2);
+        assertThat(result.errors()).hasSize(1);
+        assertThat(controller.sum).isEqualTo(1);
+    }
+
+    @Test
+    public void strayQuoteFailsOnlyItsLine() throws IOException {
+        final var controller = new Controller();
+        final var runner = new NutScriptRunner(new NutProcParser(controller), controller);
+        final var result = runner.run(new StringReader("""
+                add 1
+                append 'stray
+                add 2
+                add 3
+                """));
+        assertThat(result.commandCount()).isEqualTo(4);
+        assertThat(result.errors()).extracting(NutScriptError::line).containsExactly(2L);
+        assertThat(result.errors()).extracting(NutScriptError::source).containsExactly("append 'stray");
+        assertThat(controller.sum).isEqualTo(6);
+    }
+
+    @Test
+    public void failsCommandsExceedingMaxLength() throws IOException {
+        final var controller = new Controller();
+        final var runner = new NutScriptRunner(new NutProcParser(controller), controller);
+        runner.setMaxCommandLength(20);
+        final var result = runner.run(new StringReader("""
+                add 1
+                append "stray
+                add 2
+                add 3
+                append 'a very long string'; add 100
+                add 4; append "multi
+                line"
+                """ + "add 5\n".repeat(10)));
+        assertThat(result.errors()).extracting(NutScriptError::line).containsExactly(2L, 5L);
+        assertThat(controller.sum).isEqualTo(60);
+        assertThat(controller.strings).containsExactly("multi\nline");
+    }
+
+    private static class Controller {
+        int sum;
+        final List<String> strings = new ArrayList<>();
+
+        @NutMethod
+        void add(@NutParam("n") int n) {
+            this.sum += n;
+        }
+
+        @NutMethod
+        void append(@NutParam("s") String s) {
+            this.strings.add(s);
+        }
+
+        @NutMethod
+        void fail() {
+            throw new IllegalStateException("failed");
+        }
+    }
+}
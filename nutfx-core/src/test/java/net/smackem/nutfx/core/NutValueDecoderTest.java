@@ -0,0 +1,69 @@
+package net.smackem.nutfx.core;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NutValueDecoderTest {
+
+    @Test
+    public void parsesIntegersLikeIntegerParseInt() {
+        final List<String> valid = List.of("0", "7", "123", "-42", "+42", "0007",
+                "2147483647", "-2147483648");
+        for (final String s : valid) {
+            final String source = "x " + s + " y";
+            assertThat(NutValueDecoder.parseInt(source, 2, 2 + s.length())).isEqualTo(Integer.parseInt(s));
+        }
+        final List<String> invalid = List.of("", "-", "+", "2147483648", "-2147483649", "99999999999",
+                "1a", "1.0", " 1");
+        for (final String s : invalid) {
+            assertThatThrownBy(() -> Integer.parseInt(s)).isInstanceOf(NumberFormatException.class);
+            assertThatThrownBy(() -> NutValueDecoder.parseInt("(" + s + ")", 1, 1 + s.length()))
+                    .isInstanceOf(NumberFormatException.class)
+                    .hasMessage("For input string: \"" + s + "\"");
+        }
+    }
+
+    @Test
+    public void parsesDoublesLikeDoubleParseDouble() {
+        final List<String> valid = List.of("0.0", "1.5", "0.1", "-0.0", "123.4", "1.", ".5", "7",
+                "0.3", "9007199254740993.5", "123456789012345.6", "1.7976931348623157E308", "NaN", "1e3");
+        for (final String s : valid) {
+            final String source = "x " + s + " y";
+            assertThat(NutValueDecoder.parseDouble(source, 2, 2 + s.length()))
+                    .as(s)
+                    .isEqualTo(Double.parseDouble(s));
+        }
+        for (int i = 0; i < 10000; i++) {
+            final String s = i / 10 + "." + i % 10;
+            assertThat(NutValueDecoder.parseDouble(s, 0, s.length())).isEqualTo(Double.parseDouble(s));
+        }
+        assertThatThrownBy(() -> NutValueDecoder.parseDouble("x.y", 1, 2)).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> NutValueDecoder.parseDouble("1a", 0, 2)).isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    public void parsesBooleansLikeBooleanParseBoolean() {
+        final String source = "true TRUE tRuE false yes truex";
+        int start = 0;
+        for (final String s : source.split(" ")) {
+            assertThat(NutValueDecoder.parseBoolean(source, start, start + s.length()))
+                    .as(s)
+                    .isEqualTo(Boolean.parseBoolean(s));
+            start += s.length() + 1;
+        }
+    }
+
+    @Test
+    public void unquotesByIndex() {
+        final String source = "say 'hello world' \"x\" abc '' '";
+        assertThat(NutValueDecoder.unquote(source, 4, 17)).isEqualTo("hello world");
+        assertThat(NutValueDecoder.unquote(source, 18, 21)).isEqualTo("x");
+        assertThat(NutValueDecoder.unquote(source, 22, 25)).isEqualTo("abc");
+        assertThat(NutValueDecoder.unquote(source, 26, 28)).isEmpty();
+        assertThat(NutValueDecoder.unquote(source, 29, 30)).isEmpty();
+    }
+}
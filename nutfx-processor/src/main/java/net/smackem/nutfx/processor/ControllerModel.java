@@ -0,0 +1,380 @@
+package net.smackem.nutfx.processor;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The {@code @NutMethod}s of one controller class, validated and converted to the source code
+ * of a {@code NutProcRegistry}.
+ * Mirrors the reflective conversion done by {@code NutProc.fromMethod}.
+ */
+final class ControllerModel {
+    private static final String CORE_PACKAGE = "net.smackem.nutfx.core.";
+    private static final String[] CONVERTER_METHOD_NAMES = {"parse", "valueOf"};
+
+    private final Elements elements;
+    private final Types types;
+    private final TypeElement controller;
+    private final PackageElement packageElement;
+    private final List<ProcModel> procs = new ArrayList<>();
+
+    private ControllerModel(ProcessingEnvironment env, TypeElement controller) {
+        this.elements = env.getElementUtils();
+        this.types = env.getTypeUtils();
+        this.controller = controller;
+        this.packageElement = this.elements.getPackageOf(controller);
+    }
+
+    /**
+     * @return The model or {@code null} if no registry can be generated for {@code controller}.
+     *      Errors have been reported to the {@link Messager} in that case.
+     */
+    static ControllerModel create(ProcessingEnvironment env, TypeElement controller, List<ExecutableElement> methods) {
+        if (controller.getNestingKind() == NestingKind.LOCAL || controller.getNestingKind() == NestingKind.ANONYMOUS) {
+            // not addressable by name - NutProcParser falls back to reflection
+            return null;
+        }
+        final var model = new ControllerModel(env, controller);
+        final Messager messager = env.getMessager();
+        boolean valid = true;
+        final Set<String> procNames = new HashSet<>();
+        for (final ExecutableElement method : methods) {
+            final ProcModel proc = model.convertMethod(method, messager);
+            if (proc == null) {
+                valid = false;
+                continue;
+            }
+            if (procNames.add(proc.name) == false) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "duplicate NutMethod name '" + proc.name + "'", method);
+                valid = false;
+                continue;
+            }
+            model.procs.add(proc);
+        }
+        return valid ? model : null;
+    }
+
+    String qualifiedRegistryName() {
+        final String packageName = this.packageElement.getQualifiedName().toString();
+        return packageName.isEmpty()
+                ? registryName()
+                : packageName + "." + registryName();
+    }
+
+    private String registryName() {
+        final String binaryName = this.elements.getBinaryName(this.controller).toString();
+        final String packageName = this.packageElement.getQualifiedName().toString();
+        final String simpleBinaryName = packageName.isEmpty()
+                ? binaryName
+                : binaryName.substring(packageName.length() + 1);
+        return simpleBinaryName.replace('$', '_') + NutRegistryProcessor.REGISTRY_SUFFIX;
+    }
+
+    String generateSource() {
+        final var sb = new StringBuilder();
+        if (this.packageElement.isUnnamed() == false) {
+            sb.append("package ").append(this.packageElement.getQualifiedName()).append(";\n\n");
+        }
+        sb.append("@javax.annotation.processing.Generated(\"").append(NutRegistryProcessor.class.getName()).append("\")\n");
+        sb.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        sb.append("public final class ").append(registryName())
+                .append(" implements " + CORE_PACKAGE + "NutProcRegistry {\n");
+        sb.append("    @Override\n");
+        sb.append("    public java.util.List<" + CORE_PACKAGE + "NutProc> nutProcs() {\n");
+        sb.append("        final Class<?> controllerClass = ").append(typeLiteral(this.controller.asType())).append(";\n");
+        sb.append("        return java.util.List.of(");
+        sb.append(this.procs.stream()
+                .map(this::generateProc)
+                .collect(Collectors.joining(",")));
+        sb.append(");\n");
+        sb.append("    }\n\n");
+        sb.append("    private static Class<?> type(String binaryName) {\n");
+        sb.append("        try {\n");
+        sb.append("            return Class.forName(binaryName, false, ").append(registryName()).append(".class.getClassLoader());\n");
+        sb.append("        } catch (ClassNotFoundException e) {\n");
+        sb.append("            throw new IllegalStateException(e);\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private String generateProc(ProcModel proc) {
+        final var sb = new StringBuilder();
+        sb.append("\n                " + CORE_PACKAGE + "NutProc.of(").append(literal(proc.name)).append(",");
+        sb.append("\n                        " + CORE_PACKAGE + "NutProcRegistry.declaredMethod(controllerClass, ")
+                .append(literal(proc.method.getSimpleName().toString()));
+        for (final VariableElement parameter : proc.method.getParameters()) {
+            sb.append(", ").append(typeLiteral(parameter.asType()));
+        }
+        sb.append("),");
+        sb.append("\n                        java.util.List.of(");
+        sb.append(proc.parameters.stream()
+                .map(p -> "\n                                " + p.factoryExpression)
+                .collect(Collectors.joining(",")));
+        sb.append("),");
+        sb.append("\n                        ").append(generateInvoker(proc)).append(",");
+        sb.append("\n                        ").append(proc.background).append(",");
+        sb.append("\n                        ").append(proc.pipeInputIndex).append(")");
+        return sb.toString();
+    }
+
+    private String generateInvoker(ProcModel proc) {
+        final boolean accessible = proc.method.getModifiers().contains(Modifier.PRIVATE) == false
+                && isAccessible(this.controller.asType())
+                && proc.method.getParameters().stream().allMatch(p -> isAccessible(p.asType()));
+        if (accessible == false) {
+            // let NutInvoker derive an invoker from the method
+            return "null";
+        }
+        final String target = proc.method.getModifiers().contains(Modifier.STATIC)
+                ? erasure(this.controller.asType())
+                : "((" + erasure(this.controller.asType()) + ") controller)";
+        final var args = new ArrayList<String>();
+        for (final VariableElement parameter : proc.method.getParameters()) {
+            args.add("(" + erasure(parameter.asType()) + ") args[" + args.size() + "]");
+        }
+        final String call = target + "." + proc.method.getSimpleName() + "(" + String.join(", ", args) + ")";
+        return proc.method.getReturnType().getKind() == TypeKind.VOID
+                ? "(controller, args) -> { " + call + "; return null; }"
+                : "(controller, args) -> " + call;
+    }
+
+    private ProcModel convertMethod(ExecutableElement method, Messager messager) {
+        final AnnotationMirror nutMethod = findAnnotation(method, NutRegistryProcessor.NUT_METHOD);
+        final String value = (String) annotationValue(nutMethod, "value");
+        final String name = value.isBlank()
+                ? method.getSimpleName().toString()
+                : value;
+        final var proc = new ProcModel(name, method, (Boolean) annotationValue(nutMethod, "background"));
+        final Set<String> parameterNames = new HashSet<>();
+        boolean valid = true;
+        for (final VariableElement parameter : method.getParameters()) {
+            if (findAnnotation(parameter, NutRegistryProcessor.NUT_PIPE_INPUT) != null) {
+                if (proc.pipeInputIndex >= 0) {
+                    messager.printMessage(Diagnostic.Kind.ERROR,
+                            "controller method '" + method.getSimpleName() + "' has more than one pipe input", parameter);
+                    valid = false;
+                }
+                proc.pipeInputIndex = method.getParameters().indexOf(parameter);
+                continue;
+            }
+            final ParameterModel parameterModel = convertParameter(parameter, messager);
+            if (parameterModel == null) {
+                valid = false;
+                continue;
+            }
+            if (parameterNames.add(parameterModel.name) == false) {
+                messager.printMessage(Diagnostic.Kind.ERROR,
+                        "method '" + name + "': parameter name '" + parameterModel.name + "' is not unique", parameter);
+                valid = false;
+                continue;
+            }
+            proc.parameters.add(parameterModel);
+        }
+        return valid ? proc : null;
+    }
+
+    private ParameterModel convertParameter(VariableElement parameter, Messager messager) {
+        final AnnotationMirror nutParam = findAnnotation(parameter, NutRegistryProcessor.NUT_PARAM);
+        if (nutParam == null) {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                    "parameter '" + parameter.getSimpleName() + "' is not annotated with NutParam", parameter);
+            return null;
+        }
+        final TypeMirror type = this.types.erasure(parameter.asType());
+        final String name = literal((String) annotationValue(nutParam, "value"));
+        final boolean isRequired = (Boolean) annotationValue(nutParam, "isRequired");
+        final TypeMirror converterClass = (TypeMirror) annotationValue(nutParam, "converterClass");
+        final boolean lenient = (Boolean) annotationValue(nutParam, "lenient");
+        final int converterCacheSize = (Integer) annotationValue(nutParam, "converterCacheSize");
+        final String converterCache = converterCacheSize > 0
+                ? ".withConverterCache(" + converterCacheSize + ")"
+                : "";
+        final boolean optional = type.getKind().isPrimitive() == false && isRequired == false;
+        final String factory = CORE_PACKAGE + "NutProcParameter.";
+        final String expression;
+        if (converterClass.getKind() != TypeKind.VOID) {
+            final String converter = converterExpression(converterClass, type);
+            if (converter == null) {
+                messager.printMessage(Diagnostic.Kind.ERROR,
+                        "no matching converter method found. must be 'public static PARAM_TYPE parse|valueOf (String)'",
+                        parameter);
+                return null;
+            }
+            expression = factory + "custom(" + name + ", " + converter + ", " + optional + ")" + converterCache;
+        } else if (isType(type, TypeKind.INT, Integer.class)) {
+            expression = factory + "integer(" + name + ", " + optional + ")";
+        } else if (isType(type, TypeKind.BOOLEAN, Boolean.class)) {
+            expression = factory + "bool(" + name + ", " + optional + ")";
+        } else if (isType(type, TypeKind.DOUBLE, Double.class)) {
+            expression = factory + "float64(" + name + ", " + optional + ")";
+        } else if (isClass(type, String.class)) {
+            expression = factory + "string(" + name + ", " + optional + ")";
+        } else if (type.getKind() == TypeKind.DECLARED
+                && ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM) {
+            expression = factory + "enumeration(" + name + ", " + typeLiteral(type) + ", " + optional + ", "
+                         + lenient + ")";
+        } else {
+            final String converter = converterExpression(type, type);
+            if (converter == null) {
+                messager.printMessage(Diagnostic.Kind.ERROR,
+                        "parameter '" + parameter.getSimpleName() + "' is of unsupported type", parameter);
+                return null;
+            }
+            expression = factory + "custom(" + name + ", " + converter + ", " + optional + ")" + converterCache;
+        }
+        return new ParameterModel((String) annotationValue(nutParam, "value"), expression);
+    }
+
+    private String converterExpression(TypeMirror converterClass, TypeMirror parameterType) {
+        if (converterClass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        final var converterElement = (TypeElement) ((DeclaredType) converterClass).asElement();
+        for (final String methodName : CONVERTER_METHOD_NAMES) {
+            final var method = ElementFilter.methodsIn(converterElement.getEnclosedElements()).stream()
+                    .filter(m -> m.getSimpleName().contentEquals(methodName))
+                    .filter(m -> m.getModifiers().contains(Modifier.STATIC))
+                    .filter(m -> this.types.isSameType(this.types.erasure(m.getReturnType()), parameterType))
+                    .filter(m -> m.getParameters().size() == 1
+                            && isClass(this.types.erasure(m.getParameters().get(0).asType()), String.class))
+                    .findFirst();
+            if (method.isEmpty()) {
+                continue;
+            }
+            if (method.get().getModifiers().contains(Modifier.PRIVATE) == false && isAccessible(converterClass)) {
+                return erasure(converterClass) + "::" + methodName;
+            }
+            return CORE_PACKAGE + "NutProc.converter(" + typeLiteral(converterClass) + ", " + typeLiteral(parameterType) + ")";
+        }
+        return null;
+    }
+
+    private static boolean isType(TypeMirror type, TypeKind primitiveKind, Class<?> boxedClass) {
+        return type.getKind() == primitiveKind || isClass(type, boxedClass);
+    }
+
+    private static boolean isClass(TypeMirror type, Class<?> cls) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(cls.getName());
+    }
+
+    /**
+     * @return A class literal for {@code type} if it is accessible from the registry,
+     *      otherwise an expression loading the class by name.
+     */
+    private String typeLiteral(TypeMirror type) {
+        final TypeMirror erasure = this.types.erasure(type);
+        if (isAccessible(erasure)) {
+            return erasure + ".class";
+        }
+        if (erasure.getKind() == TypeKind.ARRAY) {
+            return "java.lang.reflect.Array.newInstance("
+                    + typeLiteral(((ArrayType) erasure).getComponentType()) + ", 0).getClass()";
+        }
+        final var element = (TypeElement) ((DeclaredType) erasure).asElement();
+        return "type(" + literal(this.elements.getBinaryName(element).toString()) + ")";
+    }
+
+    private String erasure(TypeMirror type) {
+        return this.types.erasure(type).toString();
+    }
+
+    private boolean isAccessible(TypeMirror type) {
+        final TypeMirror erasure = this.types.erasure(type);
+        switch (erasure.getKind()) {
+            case ARRAY:
+                return isAccessible(((ArrayType) erasure).getComponentType());
+            case DECLARED:
+                break;
+            default:
+                return erasure.getKind().isPrimitive();
+        }
+        final boolean samePackage = this.elements.getPackageOf(((DeclaredType) erasure).asElement())
+                .equals(this.packageElement);
+        for (Element e = ((DeclaredType) erasure).asElement(); e instanceof TypeElement; e = e.getEnclosingElement()) {
+            final Set<Modifier> modifiers = e.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (samePackage == false && modifiers.contains(Modifier.PUBLIC) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String literal(String s) {
+        return this.elements.getConstantExpression(s);
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (final AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            final var annotationElement = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationElement.getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private Object annotationValue(AnnotationMirror mirror, String name) {
+        final Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                this.elements.getElementValuesWithDefaults(mirror);
+        for (final var entry : values.entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        throw new IllegalArgumentException("annotation " + mirror + " has no element '" + name + "'");
+    }
+
+    private static final class ProcModel {
+        final String name;
+        final ExecutableElement method;
+        final boolean background;
+        final List<ParameterModel> parameters = new ArrayList<>();
+        int pipeInputIndex = -1;
+
+        ProcModel(String name, ExecutableElement method, boolean background) {
+            this.name = name;
+            this.method = method;
+            this.background = background;
+        }
+    }
+
+    private static final class ParameterModel {
+        final String name;
+        final String factoryExpression;
+
+        ParameterModel(String name, String factoryExpression) {
+            this.name = name;
+            this.factoryExpression = factoryExpression;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package net.smackem.nutfx.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a {@code NutProcRegistry} for each class declaring {@code @NutMethod}s, so that
+ * {@code NutProcParser} does not need to scan and reflect over the controller at runtime.
+ * <p>
+ * The processor does not depend on {@code nutfx-core} - it refers to the annotations by name.
+ */
+@SupportedAnnotationTypes(NutRegistryProcessor.NUT_METHOD)
+public class NutRegistryProcessor extends AbstractProcessor {
+    static final String NUT_METHOD = "net.smackem.nutfx.core.NutMethod";
+    static final String NUT_PARAM = "net.smackem.nutfx.core.NutParam";
+    static final String NUT_PIPE_INPUT = "net.smackem.nutfx.core.NutPipeInput";
+    static final String REGISTRY_SUFFIX = "_NutRegistry";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        final TypeElement nutMethod = processingEnv.getElementUtils().getTypeElement(NUT_METHOD);
+        if (nutMethod == null) {
+            return false;
+        }
+        final Map<TypeElement, List<ExecutableElement>> methodsByController = new LinkedHashMap<>();
+        for (final Element element : roundEnv.getElementsAnnotatedWith(nutMethod)) {
+            if (element.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+            methodsByController
+                    .computeIfAbsent((TypeElement) element.getEnclosingElement(), ignored -> new ArrayList<>())
+                    .add((ExecutableElement) element);
+        }
+        for (final var entry : methodsByController.entrySet()) {
+            final var model = ControllerModel.create(processingEnv, entry.getKey(), entry.getValue());
+            if (model != null) {
+                writeRegistry(entry.getKey(), model);
+            }
+        }
+        return false;
+    }
+
+    private void writeRegistry(TypeElement controller, ControllerModel model) {
+        try {
+            final var file = processingEnv.getFiler().createSourceFile(model.qualifiedRegistryName(), controller);
+            try (final Writer writer = file.openWriter()) {
+                writer.write(model.generateSource());
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "could not write " + model.qualifiedRegistryName() + ": " + e.getMessage(), controller);
+        }
+    }
+}
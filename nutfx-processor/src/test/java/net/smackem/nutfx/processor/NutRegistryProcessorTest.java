@@ -0,0 +1,210 @@
+package net.smackem.nutfx.processor;
+
+import net.smackem.nutfx.core.NutProc;
+import net.smackem.nutfx.core.NutProcParameter;
+import net.smackem.nutfx.core.NutProcParser;
+import net.smackem.nutfx.core.NutProcRegistry;
+import net.smackem.nutfx.core.ParameterType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NutRegistryProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String CONTROLLER_SOURCE = """
+            package sample;
+
+            import net.smackem.nutfx.core.NutMethod;
+            import net.smackem.nutfx.core.NutParam;
+            import net.smackem.nutfx.core.NutPipeInput;
+
+            public class SampleController {
+                public String string;
+
+                @NutMethod("do-it")
+                void doIt(@NutParam("n") int n,
+                          @NutParam("s") String s,
+                          @NutParam(value = "c", isRequired = true, lenient = true) Color c,
+                          @NutParam(value = "p", converterCacheSize = 16) Point p) {
+                    this.string = n + " " + s + " " + c + " " + p.x;
+                }
+
+                @NutMethod(background = true)
+                private void hidden(@NutParam("b") Boolean b) {
+                    this.string = "hidden " + b;
+                }
+
+                @NutMethod
+                java.util.List<String> words(@NutParam("text") String text) {
+                    return java.util.List.of(text.split(" "));
+                }
+
+                @NutMethod
+                String upper(@NutPipeInput String word, @NutParam("suffix") String suffix) {
+                    return word.toUpperCase() + suffix;
+                }
+
+                private enum Color {
+                    RED,
+                    GREEN,
+                }
+
+                public static class Point {
+                    final int x;
+
+                    Point(int x) {
+                        this.x = x;
+                    }
+
+                    static Point parse(String s) {
+                        return new Point(Integer.parseInt(s));
+                    }
+                }
+
+                public static class Nested {
+                    @NutMethod
+                    public void nested() {
+                    }
+                }
+            }
+            """;
+
+    @Test
+    public void generatesRegistry() throws Exception {
+        final ClassLoader loader = compile("sample/SampleController.java", CONTROLLER_SOURCE);
+        final Class<?> controllerClass = loader.loadClass("sample.SampleController");
+        final NutProcRegistry registry = NutProcRegistry.forClass(controllerClass);
+        assertThat(registry).isNotNull();
+        assertThat(registry.nutProcs())
+                .extracting(NutProc::name)
+                .containsExactlyInAnyOrder("do-it", "hidden", "words", "upper");
+        final NutProc doIt = registry.nutProcs().stream()
+                .filter(proc -> proc.name().equals("do-it"))
+                .findFirst()
+                .orElseThrow();
+        assertThat(doIt.parameters())
+                .extracting(NutProcParameter::name)
+                .containsExactly("n", "s", "c", "p");
+        assertThat(doIt.parameters())
+                .extracting(NutProcParameter::type)
+                .containsExactly(ParameterType.INTEGER, ParameterType.STRING, ParameterType.ENUM, ParameterType.CUSTOM);
+        assertThat(doIt.parameters())
+                .extracting(NutProcParameter::isOptional)
+                .containsExactly(false, true, false, true);
+        assertThat(doIt.method().getName()).isEqualTo("doIt");
+        assertThat(doIt.isBackground()).isFalse();
+        assertThat(registry.nutProcs())
+                .filteredOn(proc -> proc.name().equals("hidden"))
+                .extracting(NutProc::isBackground)
+                .containsExactly(true);
+        assertThat(NutProcRegistry.forClass(loader.loadClass("sample.SampleController$Nested")))
+                .isNotNull();
+    }
+
+    @Test
+    public void parserUsesRegistry() throws Exception {
+        final ClassLoader loader = compile("sample/SampleController.java", CONTROLLER_SOURCE);
+        final Object controller = newInstance(loader.loadClass("sample.SampleController"));
+        final var parser = new NutProcParser(controller);
+        parser.parse("do-it 12 'abc' GREEN -p=7").invoke(controller);
+        assertThat(controller.getClass().getField("string").get(controller)).isEqualTo("12 abc GREEN 7");
+        parser.parse("do-it 12 'abc' gr -p=7").invoke(controller);
+        assertThat(controller.getClass().getField("string").get(controller)).isEqualTo("12 abc GREEN 7");
+        parser.parse("hidden -b").invoke(controller);
+        assertThat(controller.getClass().getField("string").get(controller)).isEqualTo("hidden true");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void pipelineUsesRegistry() throws Exception {
+        final ClassLoader loader = compile("sample/SampleController.java", CONTROLLER_SOURCE);
+        final Object controller = newInstance(loader.loadClass("sample.SampleController"));
+        final var parser = new NutProcParser(controller);
+        assertThat(parser.nutProcs().get("upper").acceptsPipeInput()).isTrue();
+        final var result = (List<Object>) parser.parse("words 'a b' | upper -suffix='!'").invoke(controller);
+        assertThat(result).containsExactly("A!", "B!");
+    }
+
+    @Test
+    public void reportsInvalidMethods() throws IOException {
+        final var diagnostics = new DiagnosticCollector<JavaFileObject>();
+        final boolean success = tryCompile("sample/InvalidController.java", """
+                package sample;
+
+                import net.smackem.nutfx.core.NutMethod;
+                import net.smackem.nutfx.core.NutParam;
+                import net.smackem.nutfx.core.NutPipeInput;
+
+                class InvalidController {
+                    @NutMethod
+                    void twoInputs(@NutPipeInput String a, @NutPipeInput String b) {
+                    }
+
+                    @NutMethod
+                    void ambiguous(@NutParam("x") int x, @NutParam("x") int y) {
+                    }
+
+                    @NutMethod
+                    void unsupported(@NutParam("x") Void x) {
+                    }
+                }
+                """, diagnostics);
+        assertThat(success).isFalse();
+        assertThat(diagnostics.getDiagnostics())
+                .extracting(d -> d.getMessage(null))
+                .anyMatch(m -> m.contains("more than one pipe input"))
+                .anyMatch(m -> m.contains("is not unique"))
+                .anyMatch(m -> m.contains("unsupported type"));
+    }
+
+    private ClassLoader compile(String fileName, String source) throws IOException {
+        final var diagnostics = new DiagnosticCollector<JavaFileObject>();
+        final boolean success = tryCompile(fileName, source, diagnostics);
+        assertThat(success).as(diagnostics.getDiagnostics().toString()).isTrue();
+        return new URLClassLoader(new URL[] { outputDir().toUri().toURL() }, getClass().getClassLoader());
+    }
+
+    private boolean tryCompile(String fileName, String source, DiagnosticCollector<JavaFileObject> diagnostics) throws IOException {
+        final Path sourceFile = this.folder.getRoot().toPath().resolve("src").resolve(fileName);
+        Files.createDirectories(sourceFile.getParent());
+        Files.writeString(sourceFile, source);
+        Files.createDirectories(outputDir());
+        final var compiler = ToolProvider.getSystemJavaCompiler();
+        try (final var fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            final var task = compiler.getTask(null, fileManager, diagnostics,
+                    List.of("-d", outputDir().toString(),
+                            "-classpath", System.getProperty("java.class.path"),
+                            "-implicit:class"),
+                    null,
+                    fileManager.getJavaFileObjectsFromFiles(List.of(new File(sourceFile.toString()))));
+            task.setProcessors(List.of(new NutRegistryProcessor()));
+            return task.call();
+        }
+    }
+
+    private Path outputDir() {
+        return this.folder.getRoot().toPath().resolve("out");
+    }
+
+    private static Object newInstance(Class<?> cls) throws ReflectiveOperationException {
+        final var ctor = cls.getDeclaredConstructor();
+        ctor.setAccessible(true);
+        return ctor.newInstance();
+    }
+}